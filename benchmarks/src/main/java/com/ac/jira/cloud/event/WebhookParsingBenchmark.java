@@ -0,0 +1,81 @@
+package com.ac.jira.cloud.event;
+
+import com.ac.jira.cloud.rest.bean.CommentEventBean;
+import com.ac.jira.cloud.rest.bean.IssueEventBean;
+import com.ac.jira.cloud.rest.bean.VersionEventBean;
+import com.ac.jira.cloud.rest.bean.WorklogEventBean;
+import org.codehaus.jackson.map.DeserializationConfig;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.xc.JaxbAnnotationIntrospector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading of the webhook fixtures from {@code src/test/resources/events}: streaming parse which the listener does
+ * for every webhook, and full bean binding which is done only when a handler needs the whole payload.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WebhookParsingBenchmark {
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .setAnnotationIntrospector(new JaxbAnnotationIntrospector())
+            .configure(DeserializationConfig.Feature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    @Param({"issue_created", "issue_updated", "comment_created", "worklog_updated", "version_created"})
+    public String fixture;
+
+    private String body;
+    private Class<?> beanType;
+
+    @Setup
+    public void setUp() throws IOException {
+        body = read("events/" + fixture + ".json");
+        if (fixture.startsWith("issue_")) {
+            beanType = IssueEventBean.class;
+        } else if (fixture.startsWith("comment_")) {
+            beanType = CommentEventBean.class;
+        } else if (fixture.startsWith("worklog_")) {
+            beanType = WorklogEventBean.class;
+        } else {
+            beanType = VersionEventBean.class;
+        }
+    }
+
+    @Benchmark
+    public WebhookEvent parse() throws IOException {
+        return WebhookEventParser.parse(body);
+    }
+
+    @Benchmark
+    public Object bind() throws IOException {
+        return MAPPER.readValue(body, beanType);
+    }
+
+    static String read(String resource) throws IOException {
+        try (InputStream in = WebhookParsingBenchmark.class.getClassLoader().getResourceAsStream(resource)) {
+            if (null == in) {
+                throw new IOException("Fixture " + resource + " isn't on classpath");
+            }
+            return new Scanner(in, StandardCharsets.UTF_8.name()).useDelimiter("\\A").next();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.ai.jira.portal.issue;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static com.atlassian.jira.event.type.EventType.ISSUE_UPDATED_ID;
+
+/**
+ * Echo suppression under contention: {@code isProcess} checks done for every listener event and
+ * {@code doLock} registrations done before every mirrored write, from many sync lanes at once.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EchoSuppressionBenchmark {
+    private static final int SUBJECTS = 4096;
+
+    @State(Scope.Group)
+    public static class Store {
+        final EchoSuppressionStore store = new EchoSuppressionStore();
+    }
+
+    /**
+     * Most events aren't echoes, so the check usually misses
+     */
+    @Benchmark
+    @Threads(8)
+    public boolean isProcess(SynchronizerState state) {
+        return state.synchronizer.isProcess(state.issue, ISSUE_UPDATED_ID);
+    }
+
+    @Benchmark
+    @Group("lockAndConsume")
+    @GroupThreads(4)
+    public void doLock(Store store) {
+        store.store.suppress(ISSUE_UPDATED_ID, subject());
+    }
+
+    @Benchmark
+    @Group("lockAndConsume")
+    @GroupThreads(4)
+    public boolean consume(Store store) {
+        return store.store.consume(ISSUE_UPDATED_ID, subject());
+    }
+
+    private static String subject() {
+        return Long.toString(ThreadLocalRandom.current().nextInt(SUBJECTS));
+    }
+}
@@ -0,0 +1,90 @@
+package com.ai.jira.portal.issue;
+
+import com.atlassian.jira.event.issue.IssueEvent;
+import com.atlassian.jira.issue.MutableIssue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.ai.jira.portal.issue.SynchronizerState.stub;
+import static org.mockito.AdditionalAnswers.returnsArgAt;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.when;
+
+/**
+ * Dispatch of Jira issue events by {@link IssueEventListener} through {@link IssueSyncExecutor} to a stubbed
+ * synchronizer. Once the executor queue is full the publishing threads wait for lanes, so the result is
+ * the end to end rate at which events are handed over and routed. Update events are coalesced per issue
+ * unless the benchmark runs with {@code -Dportal.sync.coalesceMillis=0}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IssueEventListenerBenchmark {
+    private static final int ISSUES = 64;
+
+    /**
+     * 1 - created, 2 - updated, 6 - commented
+     */
+    @Param({"1", "2", "6"})
+    public long eventTypeId;
+
+    @Param({"4"})
+    public int lanes;
+
+    private IssueSyncExecutor executor;
+    private IssueEventListener listener;
+    private IssueEvent[] events;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Setup
+    public void setUp(SynchronizerState state) {
+        IssueSynchronizer synchronizer = stub(IssueSynchronizer.class);
+        when(synchronizer.getRelatedIssue(anyBoolean(), any(MutableIssue.class))).thenReturn(state.relatedIssue);
+        when(synchronizer.getPortalIssueId(anyBoolean(), anyLong())).then(returnsArgAt(1));
+
+        executor = new IssueSyncExecutor(lanes, 1000);
+        listener = new IssueEventListener(state.projectExtraCache, synchronizer, executor);
+        events = new IssueEvent[ISSUES];
+        for (int i = 0; i < ISSUES; i++) {
+            MutableIssue issue = SynchronizerState.issue(100L + i, state.portalProject);
+            when(state.issueManager.getIssueObject(issue.getId())).thenReturn(issue);
+            IssueEvent event = stub(IssueEvent.class);
+            when(event.getEventTypeId()).thenReturn(eventTypeId);
+            when(event.getIssue()).thenReturn(issue);
+            events[i] = event;
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        executor.destroy();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void onIssueEvent(Cursor cursor) {
+        listener.onIssueEvent(events[cursor.next++ & (ISSUES - 1)]);
+    }
+}
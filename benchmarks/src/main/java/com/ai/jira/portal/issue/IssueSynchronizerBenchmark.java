@@ -0,0 +1,104 @@
+package com.ai.jira.portal.issue;
+
+import com.ai.jira.portal.ao.attachment.AttachmentLinkManager.AttachmentType;
+import com.atlassian.jira.issue.attachment.Attachment;
+import com.atlassian.jira.issue.fields.CustomField;
+import com.atlassian.jira.user.ApplicationUser;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.ai.jira.portal.issue.SynchronizerState.stub;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * Field and attachment copying of {@link IssueSynchronizer}. Managers are Mockito mocks, so absolute numbers include
+ * mock dispatch, compare runs before and after a change rather than with production timings.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IssueSynchronizerBenchmark {
+    @Param({"10", "100"})
+    public int customFields;
+
+    @Param({"1", "20"})
+    public int attachments;
+
+    private ApplicationUser user;
+
+    @Setup
+    public void setUp(SynchronizerState state) {
+        user = stub(ApplicationUser.class);
+
+        List<CustomField> fields = new ArrayList<>(customFields);
+        for (int i = 0; i < customFields; i++) {
+            CustomField field = stub(CustomField.class);
+            when(field.getId()).thenReturn("customfield_" + (10000 + i));
+            when(field.getName()).thenReturn("Field " + i);
+            when(field.getNameKey()).thenReturn("field." + i);
+            when(state.issue.getCustomFieldValue(field)).thenReturn("value " + i);
+            fields.add(field);
+        }
+        when(state.customFieldManager.getCustomFieldObjects(anyLong(), anyString())).thenReturn(fields);
+
+        List<Attachment> sourceAttachments = new ArrayList<>(attachments);
+        List<Attachment> mirrorAttachments = new ArrayList<>(attachments);
+        final Map<Long, Long> links = new HashMap<>();
+        for (long i = 1; i <= attachments; i++) {
+            sourceAttachments.add(attachment(i));
+            mirrorAttachments.add(attachment(1000 + i));
+            links.put(i, 1000 + i);
+        }
+        when(state.attachmentManager.getAttachments(state.issue)).thenReturn(sourceAttachments);
+        when(state.attachmentManager.getAttachments(state.relatedIssue)).thenReturn(mirrorAttachments);
+        when(state.attachmentLinkManager.getLinkedAttachments(AttachmentType.PORTAL, state.issue.getId())).thenAnswer(new Answer<Map<Long, Long>>() {
+            @Override
+            public Map<Long, Long> answer(InvocationOnMock invocation) {
+                return new HashMap<>(links);
+            }
+        });
+    }
+
+    @Benchmark
+    public void populateCustomFields(SynchronizerState state) {
+        state.synchronizer.populateCustomFields(state.issue, state.relatedIssue);
+    }
+
+    /**
+     * Full comparison done for events without change history, all attachments are already mirrored
+     */
+    @Benchmark
+    public void syncAttachments(SynchronizerState state) {
+        state.synchronizer.syncAttachments(state.issue, state.relatedIssue, user, null);
+    }
+
+    private static Attachment attachment(long id) {
+        Attachment attachment = stub(Attachment.class);
+        when(attachment.getId()).thenReturn(id);
+        when(attachment.getFilename()).thenReturn("file-" + id + ".txt");
+        when(attachment.getFilesize()).thenReturn(1024L);
+        return attachment;
+    }
+}
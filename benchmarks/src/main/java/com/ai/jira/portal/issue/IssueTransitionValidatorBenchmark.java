@@ -0,0 +1,82 @@
+package com.ai.jira.portal.issue;
+
+import com.ai.jira.portal.WorkflowTransitionTable;
+import com.atlassian.jira.bc.issue.DefaultIssueService;
+import com.atlassian.jira.bc.issue.IssueService;
+import com.atlassian.jira.issue.Issue;
+import com.atlassian.jira.issue.IssueInputParameters;
+import com.atlassian.jira.issue.IssueInputParametersImpl;
+import com.atlassian.jira.issue.IssueManager;
+import com.atlassian.jira.issue.MutableIssue;
+import com.atlassian.jira.issue.fields.screen.FieldScreenRendererFactory;
+import com.atlassian.jira.mock.component.MockComponentWorker;
+import com.atlassian.jira.user.ApplicationUser;
+import com.atlassian.jira.util.I18nHelper;
+import com.atlassian.jira.workflow.TransitionOptions;
+import com.opensymphony.workflow.loader.ActionDescriptor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.ai.jira.portal.issue.SynchronizerState.stub;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.when;
+
+/**
+ * Transition validation done before every mirrored transition. The transition has no screen, so this measures
+ * the validator's own work: action lookup and the calls into {@code DefaultIssueService} internals.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IssueTransitionValidatorBenchmark {
+    private static final long ISSUE_ID = 1L;
+    private static final int ACTION_ID = 11;
+
+    private IssueTransitionValidator validator;
+    private ApplicationUser user;
+    private IssueInputParameters parameters;
+    private TransitionOptions options;
+
+    @Setup
+    public void setUp() {
+        IssueManager issueManager = stub(IssueManager.class);
+        MutableIssue issue = stub(MutableIssue.class);
+        when(issue.getId()).thenReturn(ISSUE_ID);
+        when(issueManager.getIssueObject(ISSUE_ID)).thenReturn(issue);
+        I18nHelper.BeanFactory i18nFactory = stub(I18nHelper.BeanFactory.class);
+        when(i18nFactory.getInstance(any(ApplicationUser.class))).thenReturn(stub(I18nHelper.class));
+        new MockComponentWorker()
+                .addMock(IssueManager.class, issueManager)
+                .addMock(IssueService.class, stub(DefaultIssueService.class))
+                .addMock(FieldScreenRendererFactory.class, stub(FieldScreenRendererFactory.class))
+                .addMock(I18nHelper.BeanFactory.class, i18nFactory)
+                .init();
+
+        WorkflowTransitionTable transitionTable = stub(WorkflowTransitionTable.class);
+        when(transitionTable.getAction(any(Issue.class), anyInt())).thenReturn(stub(ActionDescriptor.class));
+        validator = new IssueTransitionValidator(transitionTable);
+        user = stub(ApplicationUser.class);
+        parameters = new IssueInputParametersImpl();
+        parameters.setComment("Resolved in portal");
+        options = TransitionOptions.defaults();
+    }
+
+    @Benchmark
+    public IssueService.TransitionValidationResult validateTransition() {
+        return validator.validateTransition(user, ISSUE_ID, ACTION_ID, parameters, options);
+    }
+}
@@ -0,0 +1,101 @@
+package com.ai.jira.portal.issue;
+
+import com.ai.jira.portal.ActionResolverManager;
+import com.ai.jira.portal.WorkflowTransitionTable;
+import com.ai.jira.portal.ao.attachment.AttachmentLinkManager;
+import com.ai.jira.portal.ao.comment.CommentLinkManager;
+import com.ai.jira.portal.ao.issue.IssueLinkIndex;
+import com.ai.jira.portal.ao.project.ProjectExtraFields;
+import com.ai.jira.portal.ao.project.ProjectExtraFieldsCache;
+import com.ai.jira.portal.ao.version.VersionMappingCache;
+import com.ai.jira.portal.mapping.PriorityMapperCache;
+import com.atlassian.event.api.EventPublisher;
+import com.atlassian.jira.bc.project.component.ProjectComponent;
+import com.atlassian.jira.issue.AttachmentManager;
+import com.atlassian.jira.issue.CustomFieldManager;
+import com.atlassian.jira.issue.IssueManager;
+import com.atlassian.jira.issue.MutableIssue;
+import com.atlassian.jira.issue.issuetype.IssueType;
+import com.atlassian.jira.mock.component.MockComponentWorker;
+import com.atlassian.jira.project.Project;
+import com.atlassian.jira.security.JiraAuthenticationContext;
+import com.atlassian.jira.security.roles.ProjectRoleManager;
+import com.atlassian.jira.util.thread.JiraThreadLocalUtil;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Collections;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * {@link IssueSynchronizer} wired to mocked Jira managers, with a portal issue and its internal mirror.
+ */
+@State(Scope.Benchmark)
+public class SynchronizerState {
+    static final long PORTAL_PROJECT_ID = 10000L;
+    static final long INTERNAL_PROJECT_ID = 10001L;
+
+    final IssueManager issueManager = stub(IssueManager.class);
+    final AttachmentManager attachmentManager = stub(AttachmentManager.class);
+    final CustomFieldManager customFieldManager = stub(CustomFieldManager.class);
+    final ProjectExtraFieldsCache projectExtraCache = stub(ProjectExtraFieldsCache.class);
+    final AttachmentLinkManager attachmentLinkManager = stub(AttachmentLinkManager.class);
+    final Project portalProject = project(PORTAL_PROJECT_ID);
+    final Project internalProject = project(INTERNAL_PROJECT_ID);
+    final MutableIssue issue = issue(1L, portalProject);
+    final MutableIssue relatedIssue = issue(2L, internalProject);
+    IssueSynchronizer synchronizer;
+
+    @Setup
+    public void setUp() {
+        new MockComponentWorker()
+                .addMock(IssueManager.class, issueManager)
+                .addMock(AttachmentManager.class, attachmentManager)
+                .addMock(CustomFieldManager.class, customFieldManager)
+                .addMock(JiraAuthenticationContext.class, stub(JiraAuthenticationContext.class))
+                .addMock(JiraThreadLocalUtil.class, stub(JiraThreadLocalUtil.class))
+                .init();
+
+        ProjectExtraFields portalExtra = stub(ProjectExtraFields.class);
+        when(portalExtra.isPortal()).thenReturn(true);
+        when(portalExtra.isBidirectional()).thenReturn(true);
+        when(projectExtraCache.getProjectExtra(PORTAL_PROJECT_ID)).thenReturn(portalExtra);
+        when(projectExtraCache.getRelatedProject(PORTAL_PROJECT_ID)).thenReturn(internalProject);
+
+        synchronizer = new IssueSynchronizer(stub(ProjectRoleManager.class), stub(IssueLinkIndex.class), stub(VersionMappingCache.class),
+                stub(ActionResolverManager.class), stub(CommentLinkManager.class), stub(PriorityMapperCache.class),
+                stub(IssueTransitionValidator.class), issueManager, stub(CustomFieldIndex.class), projectExtraCache,
+                stub(IssueReindexQueue.class), attachmentLinkManager, stub(WorkflowTransitionTable.class),
+                new CustomFieldMappingPlans(customFieldManager, stub(EventPublisher.class)));
+    }
+
+    /**
+     * Mock which doesn't record invocations, benchmarks call it millions of times
+     */
+    static <T> T stub(Class<T> type) {
+        return mock(type, withSettings().stubOnly());
+    }
+
+    private static Project project(long id) {
+        Project project = stub(Project.class);
+        when(project.getId()).thenReturn(id);
+        when(project.getProjectComponents()).thenReturn(Collections.<ProjectComponent>emptyList());
+        return project;
+    }
+
+    static MutableIssue issue(long id, Project project) {
+        IssueType issueType = stub(IssueType.class);
+        when(issueType.getId()).thenReturn("1");
+        MutableIssue issue = stub(MutableIssue.class);
+        when(issue.getId()).thenReturn(id);
+        when(issue.getSummary()).thenReturn("Issue " + id);
+        when(issue.getProjectObject()).thenReturn(project);
+        when(issue.getIssueTypeObject()).thenReturn(issueType);
+        when(issue.getComponentObjects()).thenReturn(Collections.<ProjectComponent>emptyList());
+        return issue;
+    }
+}
@@ -0,0 +1,95 @@
+package com.ac.jira.cloud;
+
+import com.ac.jira.cloud.event.WebhookEventLog;
+import com.ac.jira.cloud.journal.JournalRecord;
+import com.ac.jira.cloud.journal.JournalRecordHandler;
+import com.ai.jira.portal.metrics.SyncMetrics;
+import com.atlassian.jira.component.ComponentAccessor;
+import com.atlassian.jira.issue.MutableIssue;
+import com.atlassian.jira.project.Project;
+import com.atlassian.jira.user.ApplicationUser;
+import com.atlassian.jira.util.thread.JiraThreadLocalUtil;
+import org.apache.log4j.Logger;
+
+import static com.atlassian.jira.util.ImportUtils.isIndexIssues;
+import static com.atlassian.jira.util.ImportUtils.setIndexIssues;
+
+/**
+ * Applies webhooks replayed from the journal to Jira through {@link CloudIssueSynchronizer}.
+ * <p>
+ * A record which can't be applied is logged with its payload and the failure is passed on, so the journal
+ * retries it and keeps it as a dead letter when attempts run out.
+ * <p>
+ * Records which change Jira are reported as applied, so the journal persists its cursor right after them
+ * and doesn't hand them over again after restart. Records which are only logged may be replayed.
+ */
+public class CloudEventDispatcher implements JournalRecordHandler {
+    private static final Logger LOG = Logger.getLogger(CloudEventDispatcher.class);
+
+    private final CloudIssueSynchronizer synchronizer;
+    private final JiraThreadLocalUtil threadLocalUtil;
+    private final WebhookEventLog eventLog;
+    private MutableIssue issueToClone;
+
+    public CloudEventDispatcher(CloudIssueSynchronizer synchronizer, JiraThreadLocalUtil threadLocalUtil, WebhookEventLog eventLog) {
+        this.synchronizer = synchronizer;
+        this.threadLocalUtil = threadLocalUtil;
+        this.eventLog = eventLog;
+    }
+
+    @Override
+    public boolean handle(JournalRecord record) {
+        long start = System.nanoTime();
+        threadLocalUtil.preCall();
+        try {
+            boolean applied;
+            switch (WebhookEventType.valueOf(record.getType())) {
+                case ISSUE_CREATED:
+                    createInternalIssue(record.getProjectKey());
+                    applied = true;
+                    break;
+                default:
+                    // not synchronized yet, the webhook is only logged
+                    applied = false;
+                    break;
+            }
+            long took = System.nanoTime() - start;
+            SyncMetrics.timer("journal.apply." + record.getType()).record(took);
+            eventLog.log(record, took, "handled");
+            return applied;
+        } catch (RuntimeException e) {
+            SyncMetrics.counter("journal.failed").increment();
+            eventLog.failed(record.getType(), record.getBody(), record + " can't be applied", e);
+            throw e;
+        } finally {
+            threadLocalUtil.postCall(LOG, null);
+        }
+    }
+
+    private void createInternalIssue(String projectKey) {
+        Project project = getProjectByExternalProjectKey(projectKey);
+        ApplicationUser user = getClientUserByProjectKey(projectKey);
+
+        boolean oldIndexIssuesValue = isIndexIssues();
+        setIndexIssues(true);
+
+        synchronizer.createInternalIssue(user, getIssueToClone(), project);
+
+        setIndexIssues(oldIndexIssuesValue);
+    }
+
+    private MutableIssue getIssueToClone() {
+        if (null == issueToClone) {
+            issueToClone = ComponentAccessor.getIssueManager().getIssueObject("SAP-27606");
+        }
+        return issueToClone;
+    }
+
+    private Project getProjectByExternalProjectKey(String projectKey) {
+        return ComponentAccessor.getProjectManager().getProjectObjByKey("SAP");
+    }
+
+    private ApplicationUser getClientUserByProjectKey(String projectKey) {
+        return ComponentAccessor.getUserManager().getUserByName("dm.ulanovych");
+    }
+}
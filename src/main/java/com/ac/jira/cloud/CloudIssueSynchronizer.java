@@ -1,7 +1,8 @@
 package com.ac.jira.cloud;
 
-import com.ai.jira.portal.ao.issue.CustomIssueLinkManager;
-import com.ai.jira.portal.ao.version.VersionLinkManager;
+import com.ai.jira.portal.ao.issue.IssueLinkIndex;
+import com.ai.jira.portal.ao.version.VersionMappingCache;
+import com.ai.jira.portal.issue.IssueReindexQueue;
 import com.atlassian.jira.bc.project.component.ProjectComponent;
 import com.atlassian.jira.component.ComponentAccessor;
 import com.atlassian.jira.exception.CreateException;
@@ -10,7 +11,6 @@ import com.atlassian.jira.issue.IssueManager;
 import com.atlassian.jira.issue.MutableIssue;
 import com.atlassian.jira.issue.UpdateIssueRequest;
 import com.atlassian.jira.issue.fields.CustomField;
-import com.atlassian.jira.issue.index.IndexException;
 import com.atlassian.jira.project.Project;
 import com.atlassian.jira.project.version.Version;
 import com.atlassian.jira.user.ApplicationUser;
@@ -21,8 +21,6 @@ import java.util.*;
 
 import static com.atlassian.jira.component.ComponentAccessor.*;
 import static com.atlassian.jira.event.type.EventDispatchOption.DO_NOT_DISPATCH;
-import static com.atlassian.jira.util.ImportUtils.isIndexIssues;
-import static com.atlassian.jira.util.ImportUtils.setIndexIssues;
 
 public class CloudIssueSynchronizer {
     private static final Logger LOG = Logger.getLogger(CloudIssueSynchronizer.class);
@@ -32,13 +30,15 @@ public class CloudIssueSynchronizer {
     private static final ApplicationUser SUPPORT = ComponentAccessor.getUserManager().getUserByName("support");
     private static final UpdateIssueRequest SILENT_ISSUE_UPDATE = UpdateIssueRequest.builder().sendMail(false).eventDispatchOption(DO_NOT_DISPATCH).build();
 
-    private final CustomIssueLinkManager customIssueLinkManager;
-    private final VersionLinkManager versionLinkManager;
+    private final IssueLinkIndex issueLinkIndex;
+    private final VersionMappingCache versionMappingCache;
+    private final IssueReindexQueue reindexQueue;
 
 
-    public CloudIssueSynchronizer(CustomIssueLinkManager customIssueLinkManager, VersionLinkManager versionLinkManager) {
-        this.customIssueLinkManager = customIssueLinkManager;
-        this.versionLinkManager = versionLinkManager;
+    public CloudIssueSynchronizer(IssueLinkIndex issueLinkIndex, VersionMappingCache versionMappingCache, IssueReindexQueue reindexQueue) {
+        this.issueLinkIndex = issueLinkIndex;
+        this.versionMappingCache = versionMappingCache;
+        this.reindexQueue = reindexQueue;
     }
 
 
@@ -55,9 +55,8 @@ public class CloudIssueSynchronizer {
             context.put("issue", internalIssue);
             internalIssue = (MutableIssue) issueManager.createIssueObject(client.getDirectoryUser(), context);
             //createAttachments(remoteIssue, internalIssue, client); - should be investigated
-            reindexIssue(internalIssue);
 
-            customIssueLinkManager.save(remoteIssue.getId(), internalIssue.getId());
+            issueLinkIndex.save(remoteIssue.getId(), internalIssue.getId());
 
             CustomField portalKey = getCustomFieldManager().getCustomFieldObject(PORTAL_KEY_CF_ID);
             internalIssue.setCustomFieldValue(portalKey, remoteIssue.getKey());
@@ -66,11 +65,9 @@ public class CloudIssueSynchronizer {
             //updatePriority(remoteIssue, internalIssue); - to investigate
             issueManager.updateIssue(client, internalIssue, SILENT_ISSUE_UPDATE);
 
-            reindexIssue(internalIssue);
+            reindexQueue.schedule(internalIssue);
         } catch (CreateException e) {
             LOG.error("Cannot create issue, details ", e);
-        } catch (IndexException e) {
-            LOG.error("Failed to reindex issue ", e);
         }
     }
 
@@ -101,13 +98,6 @@ public class CloudIssueSynchronizer {
     }
 
 
-    private void reindexIssue(Issue issue) throws IndexException {
-        boolean oldIndexIssuesValue = isIndexIssues();
-        setIndexIssues(true);
-        getIssueIndexManager().reIndex(issue);
-        setIndexIssues(oldIndexIssuesValue);
-    }
-
     private void correctVersions(MutableIssue internalIssue) {
         correctAffectedVersions(internalIssue);
         correctFixVersions(internalIssue);
@@ -126,16 +116,7 @@ public class CloudIssueSynchronizer {
     }
 
     private Collection<Version> restoreVersions(Collection<Version> versions) {
-        Collection<Version> internalVersions = new ArrayList<>();
-        for (Version versionToConvert : versions) {
-            Version restoredVersion = versionLinkManager.restoreVersion(versionToConvert.getId(), false);
-            if (restoredVersion != null) {
-                internalVersions.add(restoredVersion);
-            } else {
-                LOG.error("Version with id '" + versionToConvert.getId() + "' can't be restored..");
-            }
-        }
-        return internalVersions;
+        return versionMappingCache.restoreVersions(versions, false);
     }
 
 }
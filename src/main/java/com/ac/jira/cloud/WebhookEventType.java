@@ -0,0 +1,52 @@
+package com.ac.jira.cloud;
+
+/**
+ * Webhooks accepted by {@link com.ac.jira.cloud.rest.CloudListener}.
+ */
+public enum WebhookEventType {
+    ISSUE_CREATED,
+    ISSUE_UPDATED,
+    ISSUE_DELETED,
+    COMMENT_CREATED,
+    COMMENT_UPDATED,
+    COMMENT_DELETED,
+    WORKLOG_CREATED,
+    WORKLOG_UPDATED,
+    WORKLOG_DELETED,
+    VERSION;
+
+    /**
+     * @param webhookEvent - {@code webhookEvent} field of the payload, e.g. {@code jira:issue_updated}
+     * @return type of the webhook, null if it isn't accepted
+     */
+    public static WebhookEventType forWebhookEvent(String webhookEvent) {
+        if (null == webhookEvent) {
+            return null;
+        }
+        if (webhookEvent.startsWith("jira:version_")) {
+            return VERSION;
+        }
+        switch (webhookEvent) {
+            case "jira:issue_created":
+                return ISSUE_CREATED;
+            case "jira:issue_updated":
+                return ISSUE_UPDATED;
+            case "jira:issue_deleted":
+                return ISSUE_DELETED;
+            case "comment_created":
+                return COMMENT_CREATED;
+            case "comment_updated":
+                return COMMENT_UPDATED;
+            case "comment_deleted":
+                return COMMENT_DELETED;
+            case "worklog_created":
+                return WORKLOG_CREATED;
+            case "worklog_updated":
+                return WORKLOG_UPDATED;
+            case "worklog_deleted":
+                return WORKLOG_DELETED;
+            default:
+                return null;
+        }
+    }
+}
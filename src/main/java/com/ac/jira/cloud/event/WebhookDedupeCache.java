@@ -0,0 +1,124 @@
+package com.ac.jira.cloud.event;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Identities of recently accepted webhooks, so a webhook which the cloud redelivers after a slow response
+ * is acknowledged without being journaled and applied again.
+ * <p>
+ * A webhook is identified by {@code webhookEvent}, id of the issue, comment, worklog or version and {@code timestamp}.
+ * Identities are kept for {@code portal.webhook.dedupeWindowMillis} (default: 10 minutes), at most
+ * {@code portal.webhook.dedupeEntries} (default: 100000) of them, the oldest are dropped first.
+ */
+public class WebhookDedupeCache {
+    private static final int MAX_ENTRIES = Integer.getInteger("portal.webhook.dedupeEntries", 100000);
+    private static final long WINDOW_MILLIS = Long.getLong("portal.webhook.dedupeWindowMillis", 10 * 60 * 1000L);
+
+    private final int maxEntries;
+    private final long windowMillis;
+    // in claim order, so expired entries are at the head
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    public WebhookDedupeCache() {
+        this(MAX_ENTRIES, WINDOW_MILLIS);
+    }
+
+    /**
+     * @param maxEntries - 0 turns deduplication off
+     */
+    public WebhookDedupeCache(int maxEntries, long windowMillis) {
+        this.maxEntries = maxEntries;
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * @return identity of the webhook, null if the payload has no timestamp or entity id and can't be deduplicated
+     */
+    public static String key(WebhookEvent event) {
+        String entityId = event.getCommentId();
+        if (null == entityId) {
+            entityId = event.getWorklogId();
+        }
+        if (null == entityId) {
+            entityId = event.getVersionId();
+        }
+        if (null == entityId) {
+            entityId = event.getIssueId();
+        }
+        if (null == event.getWebhookEvent() || null == entityId || null == event.getTimestamp()) {
+            return null;
+        }
+        return event.getWebhookEvent() + "/" + entityId + "/" + event.getTimestamp();
+    }
+
+    /**
+     * Claims the webhook for the caller if it wasn't seen within the window. The caller has to
+     * {@link #complete(String)} it once the webhook is durable or {@link #release(String)} it if it failed.
+     *
+     * @param key - identity from {@link #key(WebhookEvent)}, null is never a duplicate
+     * @return {@link State#NEW} if the webhook is claimed by the caller, otherwise state of the earlier delivery
+     */
+    public synchronized State claim(String key) {
+        if (null == key || maxEntries <= 0) {
+            return State.NEW;
+        }
+        long now = System.currentTimeMillis();
+        expire(now);
+        Entry entry = entries.get(key);
+        if (null != entry) {
+            return entry.done ? State.DONE : State.IN_PROGRESS;
+        }
+        entries.put(key, new Entry(now));
+        if (entries.size() > maxEntries) {
+            Iterator<Entry> eldest = entries.values().iterator();
+            eldest.next();
+            eldest.remove();
+        }
+        return State.NEW;
+    }
+
+    /**
+     * Marks the claimed webhook accepted, its redeliveries are acknowledged from now on
+     */
+    public synchronized void complete(String key) {
+        Entry entry = null == key ? null : entries.get(key);
+        if (null != entry) {
+            entry.done = true;
+        }
+    }
+
+    /**
+     * Forgets the claimed webhook, so its redelivery is accepted again
+     */
+    public synchronized void release(String key) {
+        if (null != key) {
+            entries.remove(key);
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void expire(long now) {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext() && iterator.next().getValue().claimedAt <= now - windowMillis) {
+            iterator.remove();
+        }
+    }
+
+    public enum State {
+        NEW, IN_PROGRESS, DONE
+    }
+
+    private static class Entry {
+        private final long claimedAt;
+        private boolean done;
+
+        Entry(long claimedAt) {
+            this.claimedAt = claimedAt;
+        }
+    }
+}
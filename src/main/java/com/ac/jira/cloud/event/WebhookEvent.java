@@ -0,0 +1,209 @@
+package com.ac.jira.cloud.event;
+
+import com.ac.jira.cloud.rest.bean.CommentEventBean;
+import com.ac.jira.cloud.rest.bean.IssueEventBean;
+import com.ac.jira.cloud.rest.bean.VersionEventBean;
+import com.ac.jira.cloud.rest.bean.WorklogEventBean;
+import org.codehaus.jackson.map.DeserializationConfig;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.xc.JaxbAnnotationIntrospector;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Fields of a cloud webhook which synchronization needs, read by {@link WebhookEventParser}.
+ * <p>
+ * The rest of the payload isn't bound, {@link #getIssueEvent()} and the other bean getters bind the whole payload
+ * on first call when it's really needed.
+ */
+public class WebhookEvent {
+    private static final ObjectMapper BEAN_MAPPER = new ObjectMapper()
+            .setAnnotationIntrospector(new JaxbAnnotationIntrospector())
+            .configure(DeserializationConfig.Feature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private final String body;
+    private Long timestamp;
+    private String webhookEvent;
+    private String issueId;
+    private String issueKey;
+    private final List<ChangeItem> changeItems = new ArrayList<>();
+    private String commentId;
+    private String commentBody;
+    private String worklogId;
+    private String worklogIssueId;
+    private String versionId;
+    private Object bean;
+
+    WebhookEvent(String body) {
+        this.body = body;
+    }
+
+    public Long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getWebhookEvent() {
+        return webhookEvent;
+    }
+
+    public String getIssueId() {
+        return issueId;
+    }
+
+    public String getIssueKey() {
+        return issueKey;
+    }
+
+    public List<ChangeItem> getChangeItems() {
+        return Collections.unmodifiableList(changeItems);
+    }
+
+    public String getCommentId() {
+        return commentId;
+    }
+
+    public String getCommentBody() {
+        return commentBody;
+    }
+
+    public String getWorklogId() {
+        return worklogId;
+    }
+
+    public String getWorklogIssueId() {
+        return worklogIssueId;
+    }
+
+    public String getVersionId() {
+        return versionId;
+    }
+
+    /**
+     * @return raw payload
+     */
+    public String getBody() {
+        return body;
+    }
+
+    public IssueEventBean getIssueEvent() throws IOException {
+        return bind(IssueEventBean.class);
+    }
+
+    public CommentEventBean getCommentEvent() throws IOException {
+        return bind(CommentEventBean.class);
+    }
+
+    public WorklogEventBean getWorklogEvent() throws IOException {
+        return bind(WorklogEventBean.class);
+    }
+
+    public VersionEventBean getVersionEvent() throws IOException {
+        return bind(VersionEventBean.class);
+    }
+
+    private synchronized <T> T bind(Class<T> beanType) throws IOException {
+        if (!beanType.isInstance(bean)) {
+            bean = BEAN_MAPPER.readValue(body, beanType);
+        }
+        return beanType.cast(bean);
+    }
+
+    void setTimestamp(Long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    void setWebhookEvent(String webhookEvent) {
+        this.webhookEvent = webhookEvent;
+    }
+
+    void setIssueId(String issueId) {
+        this.issueId = issueId;
+    }
+
+    void setIssueKey(String issueKey) {
+        this.issueKey = issueKey;
+    }
+
+    void addChangeItem(ChangeItem changeItem) {
+        changeItems.add(changeItem);
+    }
+
+    void setCommentId(String commentId) {
+        this.commentId = commentId;
+    }
+
+    void setCommentBody(String commentBody) {
+        this.commentBody = commentBody;
+    }
+
+    void setWorklogId(String worklogId) {
+        this.worklogId = worklogId;
+    }
+
+    void setWorklogIssueId(String worklogIssueId) {
+        this.worklogIssueId = worklogIssueId;
+    }
+
+    void setVersionId(String versionId) {
+        this.versionId = versionId;
+    }
+
+    @Override
+    public String toString() {
+        return webhookEvent + " [timestamp=" + timestamp + ", issue=" + issueKey + "/" + issueId + ", comment=" + commentId
+                + ", worklog=" + worklogId + ", version=" + versionId + ", changeItems=" + changeItems.size() + "]";
+    }
+
+    /**
+     * Changelog item of an issue webhook
+     */
+    public static class ChangeItem {
+        private final String field;
+        private final String fieldType;
+        private final String from;
+        private final String fromString;
+        private final String to;
+        private final String toString;
+
+        ChangeItem(String field, String fieldType, String from, String fromString, String to, String toString) {
+            this.field = field;
+            this.fieldType = fieldType;
+            this.from = from;
+            this.fromString = fromString;
+            this.to = to;
+            this.toString = toString;
+        }
+
+        public String getField() {
+            return field;
+        }
+
+        public String getFieldType() {
+            return fieldType;
+        }
+
+        public String getFrom() {
+            return from;
+        }
+
+        public String getFromString() {
+            return fromString;
+        }
+
+        public String getTo() {
+            return to;
+        }
+
+        public String getToString() {
+            return toString;
+        }
+
+        @Override
+        public String toString() {
+            return field + ": " + fromString + " -> " + toString;
+        }
+    }
+}
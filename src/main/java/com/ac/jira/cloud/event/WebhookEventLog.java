@@ -0,0 +1,184 @@
+package com.ac.jira.cloud.event;
+
+import com.ac.jira.cloud.journal.JournalRecord;
+import com.ai.jira.portal.metrics.Gauge;
+import com.ai.jira.portal.metrics.SyncMetrics;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compact log of received webhooks, one line with key fields per webhook.
+ * <p>
+ * Only {@code portal.webhookLog.sampleRate} (default: 1.0) of webhooks are logged. Lines are written by a background
+ * thread from a queue of {@code portal.webhookLog.queueSize} (default: 10000) lines, when the queue is full lines
+ * are dropped and counted. Full payload is logged only at debug level or when a webhook fails. The thread is
+ * stopped when the plugin is disabled, lines still queued are written first.
+ */
+public class WebhookEventLog implements DisposableBean {
+    private static final Logger LOG = Logger.getLogger(WebhookEventLog.class);
+    private static final double SAMPLE_RATE = Double.parseDouble(System.getProperty("portal.webhookLog.sampleRate", "1.0"));
+    private static final int QUEUE_SIZE = Integer.getInteger("portal.webhookLog.queueSize", 10000);
+    private static final String DROPPED_GAUGE = "webhookLog.dropped";
+
+    private final BlockingQueue<String> lines = new ArrayBlockingQueue<>(QUEUE_SIZE);
+    private final AtomicLong dropped = new AtomicLong();
+    private final Gauge droppedGauge = new Gauge() {
+        @Override
+        public long getValue() {
+            return dropped.get();
+        }
+    };
+    private final Thread appender;
+
+    public WebhookEventLog() {
+        appender = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                append();
+            }
+        }, "portal-webhook-log");
+        appender.setDaemon(true);
+        appender.start();
+        SyncMetrics.gauge(DROPPED_GAUGE, droppedGauge);
+    }
+
+    /**
+     * @param type          - webhook type as it was received
+     * @param event         - parsed webhook
+     * @param handlingNanos - time spent handling the webhook
+     * @param outcome       - short result, e.g. HTTP status
+     */
+    public void log(String type, WebhookEvent event, long handlingNanos, Object outcome) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(line(type, event, handlingNanos, outcome) + "\n" + event.getBody());
+            return;
+        }
+        if (SAMPLE_RATE < 1.0 && ThreadLocalRandom.current().nextDouble() >= SAMPLE_RATE) {
+            return;
+        }
+        offer(line(type, event, handlingNanos, outcome));
+    }
+
+    /**
+     * Logs journaled webhook from the fields it was journaled with, the payload isn't parsed again
+     *
+     * @param record        - journaled webhook
+     * @param handlingNanos - time spent handling the webhook
+     * @param outcome       - short result
+     */
+    public void log(JournalRecord record, long handlingNanos, Object outcome) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(line(record, handlingNanos, outcome) + "\n" + record.getBody());
+            return;
+        }
+        if (SAMPLE_RATE < 1.0 && ThreadLocalRandom.current().nextDouble() >= SAMPLE_RATE) {
+            return;
+        }
+        offer(line(record, handlingNanos, outcome));
+    }
+
+    /**
+     * Logs the webhook with full payload, regardless of sampling
+     */
+    public void failed(String type, String body, String message, Throwable cause) {
+        LOG.error("Webhook " + type + " failed: " + message + ", payload:\n" + body, cause);
+    }
+
+    /**
+     * @return number of lines dropped because the queue was full
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        SyncMetrics.removeGauge(DROPPED_GAUGE, droppedGauge);
+        appender.interrupt();
+        appender.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    private void offer(String line) {
+        if (!lines.offer(line)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    private static String line(String type, WebhookEvent event, long handlingNanos, Object outcome) {
+        return new StringBuilder(128)
+                .append("type=").append(type)
+                .append(" event=").append(event.getWebhookEvent())
+                .append(" issue=").append(event.getIssueKey())
+                .append(" timestamp=").append(event.getTimestamp())
+                .append(" bytes=").append(utf8Length(event.getBody()))
+                .append(" tookMicros=").append(TimeUnit.NANOSECONDS.toMicros(handlingNanos))
+                .append(" outcome=").append(outcome)
+                .toString();
+    }
+
+    private static String line(JournalRecord record, long handlingNanos, Object outcome) {
+        return new StringBuilder(128)
+                .append("type=").append(record.getType())
+                .append(" project=").append(record.getProjectKey())
+                .append(" entity=").append(record.getEntityKey())
+                .append(" bytes=").append(utf8Length(record.getBody()))
+                .append(" tookMicros=").append(TimeUnit.NANOSECONDS.toMicros(handlingNanos))
+                .append(" outcome=").append(outcome)
+                .toString();
+    }
+
+    /**
+     * @return number of bytes of the payload as it's sent, UTF-8 encoded, counted without encoding it
+     */
+    static int utf8Length(String value) {
+        if (null == value) {
+            return 0;
+        }
+        int bytes = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                // unpaired surrogate is encoded as '?'
+                bytes++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    private void append() {
+        long reportedDrops = 0;
+        while (true) {
+            String line;
+            try {
+                line = lines.take();
+            } catch (InterruptedException e) {
+                // plugin is stopping, lines already queued are still written
+                for (String queued = lines.poll(); null != queued; queued = lines.poll()) {
+                    LOG.info(queued);
+                }
+                return;
+            }
+            LOG.info(line);
+            long droppedNow = dropped.get();
+            if (droppedNow != reportedDrops) {
+                LOG.warn((droppedNow - reportedDrops) + " webhook log line(s) dropped, queue is full");
+                reportedDrops = droppedNow;
+            }
+        }
+    }
+}
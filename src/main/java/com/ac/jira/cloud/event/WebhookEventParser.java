@@ -0,0 +1,254 @@
+package com.ac.jira.cloud.event;
+
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonParseException;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming parser of cloud webhooks.
+ * <p>
+ * Only fields exposed by {@link WebhookEvent} are read, every other value, including large nested sections
+ * like issue fields or users, is skipped token by token without building objects.
+ */
+public class WebhookEventParser {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private WebhookEventParser() {
+    }
+
+    /**
+     * @throws IOException if body isn't a JSON object
+     */
+    public static WebhookEvent parse(String body) throws IOException {
+        WebhookEvent event = new WebhookEvent(body);
+        JsonParser parser = JSON_FACTORY.createJsonParser(body);
+        try {
+            expectObject(parser, parser.nextToken());
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                switch (name) {
+                    case "timestamp":
+                        event.setTimestamp(value == JsonToken.VALUE_NULL ? null : parser.getLongValue());
+                        break;
+                    case "webhookEvent":
+                        event.setWebhookEvent(text(parser));
+                        break;
+                    case "issue":
+                        parseIssue(parser, event);
+                        break;
+                    case "changelog":
+                        parseChangeLog(parser, event);
+                        break;
+                    case "comment":
+                        parseComment(parser, event);
+                        break;
+                    case "worklog":
+                        parseWorklog(parser, event);
+                        break;
+                    case "version":
+                        parseVersion(parser, event);
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+        } finally {
+            parser.close();
+        }
+        return event;
+    }
+
+    /**
+     * Splits a batch of webhooks into payloads of single webhooks, in batch order. Elements are copied token by token,
+     * an element which isn't an object is returned as well and rejected by {@link #parse(String)}.
+     *
+     * @throws IOException if body isn't a JSON array
+     */
+    public static List<String> split(String body) throws IOException {
+        return split(body, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Splits a batch like {@link #split(String)}, stops as soon as the batch turns out to be larger than allowed,
+     * so elements past the limit aren't copied
+     *
+     * @param maxElements - most elements the batch may have
+     * @return payloads of single webhooks, null if the batch has more than {@code maxElements} elements
+     * @throws IOException if body isn't a JSON array
+     */
+    public static List<String> split(String body, int maxElements) throws IOException {
+        List<String> bodies = new ArrayList<>();
+        JsonParser parser = JSON_FACTORY.createJsonParser(body);
+        try {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new JsonParseException("Webhook batch isn't a JSON array", parser.getCurrentLocation());
+            }
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (null == parser.getCurrentToken()) {
+                    throw new JsonParseException("Webhook batch isn't closed", parser.getCurrentLocation());
+                }
+                if (bodies.size() >= maxElements) {
+                    return null;
+                }
+                StringWriter element = new StringWriter();
+                JsonGenerator generator = JSON_FACTORY.createJsonGenerator(element);
+                generator.copyCurrentStructure(parser);
+                generator.close();
+                bodies.add(element.toString());
+            }
+        } finally {
+            parser.close();
+        }
+        return bodies;
+    }
+
+    private static void parseIssue(JsonParser parser, WebhookEvent event) throws IOException {
+        if (!isObject(parser)) return;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            parser.nextToken();
+            if ("id".equals(name)) {
+                event.setIssueId(text(parser));
+            } else if ("key".equals(name)) {
+                event.setIssueKey(text(parser));
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private static void parseChangeLog(JsonParser parser, WebhookEvent event) throws IOException {
+        if (!isObject(parser)) return;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            if (parser.nextToken() == JsonToken.START_ARRAY && "items".equals(name)) {
+                JsonToken item;
+                while ((item = parser.nextToken()) != JsonToken.END_ARRAY) {
+                    if (item == JsonToken.START_OBJECT) {
+                        event.addChangeItem(parseChangeItem(parser));
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private static WebhookEvent.ChangeItem parseChangeItem(JsonParser parser) throws IOException {
+        String field = null;
+        String fieldType = null;
+        String from = null;
+        String fromString = null;
+        String to = null;
+        String toString = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            parser.nextToken();
+            switch (name) {
+                case "field":
+                    field = text(parser);
+                    break;
+                case "fieldtype":
+                    fieldType = text(parser);
+                    break;
+                case "from":
+                    from = text(parser);
+                    break;
+                case "fromString":
+                    fromString = text(parser);
+                    break;
+                case "to":
+                    to = text(parser);
+                    break;
+                case "toString":
+                    toString = text(parser);
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        return new WebhookEvent.ChangeItem(field, fieldType, from, fromString, to, toString);
+    }
+
+    private static void parseComment(JsonParser parser, WebhookEvent event) throws IOException {
+        if (!isObject(parser)) return;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            parser.nextToken();
+            if ("id".equals(name)) {
+                event.setCommentId(text(parser));
+            } else if ("body".equals(name)) {
+                event.setCommentBody(text(parser));
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private static void parseWorklog(JsonParser parser, WebhookEvent event) throws IOException {
+        if (!isObject(parser)) return;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            parser.nextToken();
+            if ("id".equals(name)) {
+                event.setWorklogId(text(parser));
+            } else if ("issueId".equals(name)) {
+                event.setWorklogIssueId(text(parser));
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private static void parseVersion(JsonParser parser, WebhookEvent event) throws IOException {
+        if (!isObject(parser)) return;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            parser.nextToken();
+            if ("id".equals(name)) {
+                event.setVersionId(text(parser));
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * @return true if current token starts an object, any other value is skipped
+     */
+    private static boolean isObject(JsonParser parser) throws IOException {
+        if (parser.getCurrentToken() == JsonToken.START_OBJECT) {
+            return true;
+        }
+        parser.skipChildren();
+        return false;
+    }
+
+    private static void expectObject(JsonParser parser, JsonToken token) throws JsonParseException {
+        if (token != JsonToken.START_OBJECT) {
+            throw new JsonParseException("Webhook payload isn't a JSON object", parser.getCurrentLocation());
+        }
+    }
+
+    private static String text(JsonParser parser) throws IOException {
+        JsonToken token = parser.getCurrentToken();
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return null;
+        }
+        return parser.getText();
+    }
+}
@@ -0,0 +1,45 @@
+package com.ac.jira.cloud.journal;
+
+/**
+ * Webhook received from the cloud, as stored in {@link WebhookJournal}.
+ */
+public class JournalRecord {
+    private final String type;
+    private final String projectKey;
+    private final String entityKey;
+    private final String body;
+
+    /**
+     * @param type       - webhook type
+     * @param projectKey - cloud project key
+     * @param entityKey  - key of the issue / comment / worklog / version the webhook is about, may be null
+     * @param body       - raw webhook payload
+     */
+    public JournalRecord(String type, String projectKey, String entityKey, String body) {
+        this.type = type;
+        this.projectKey = projectKey;
+        this.entityKey = entityKey;
+        this.body = body;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getProjectKey() {
+        return projectKey;
+    }
+
+    public String getEntityKey() {
+        return entityKey;
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + projectKey + "/" + entityKey;
+    }
+}
@@ -0,0 +1,15 @@
+package com.ac.jira.cloud.journal;
+
+/**
+ * Consumer of records replayed from {@link WebhookJournal}.
+ */
+public interface JournalRecordHandler {
+    /**
+     * Called from the single journal consumer thread, in append order. A record which isn't reported as applied
+     * may be handed over again after restart, the cursor is persisted only every few records.
+     *
+     * @return true if the record changed Jira, the cursor is then persisted right after the record,
+     * so the record isn't applied again after restart
+     */
+    boolean handle(JournalRecord record);
+}
@@ -0,0 +1,707 @@
+package com.ac.jira.cloud.journal;
+
+import com.ac.jira.cloud.CloudEventDispatcher;
+import com.ai.jira.portal.metrics.Gauge;
+import com.ai.jira.portal.metrics.SyncMetrics;
+import com.atlassian.jira.config.util.JiraHome;
+import com.atlassian.sal.api.lifecycle.LifecycleAware;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Append-only on-disk journal of received webhooks.
+ * <p>
+ * Records are appended to segment files named by the journal position they start at, a new segment is started
+ * once the current one exceeds {@code portal.journal.segmentBytes} (default: 64 MB). A record is
+ * {@code [length][crc32][payload]}. Appended records are forced to disk by a single flusher thread, so appends
+ * arriving while a force runs share the next one. {@link #awaitDurable(long)} blocks until a position is on disk.
+ * <p>
+ * A single consumer thread hands durable records to {@link JournalRecordHandler} in append order and persists
+ * its position in the {@code cursor} file every {@code portal.journal.cursorSaveInterval} (default: 100) records
+ * and right after every record the handler applied to Jira, segments behind the cursor are deleted. On start a torn tail of the
+ * last segment is truncated and consumption resumes from the cursor. If the consumer fails on I/O it retries
+ * with a growing delay, up to {@code portal.journal.consumerRetryMaxMillis} (default: 30000), and appends are
+ * rejected until it's running again, so webhooks aren't acknowledged while nothing applies them.
+ * <p>
+ * A record the handler fails on is retried with the same growing delay, at most {@code portal.journal.applyAttempts}
+ * (default: 5) times. Then it's moved to the {@code dead-letters} file and the consumer goes on,
+ * {@link #replayDeadLetters()} appends dead letters to the journal again once the cause is fixed.
+ */
+public class WebhookJournal implements LifecycleAware, DisposableBean {
+    private static final Logger LOG = Logger.getLogger(WebhookJournal.class);
+    private static final String DIRECTORY = "portal-webhook-journal";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CURSOR_FILE = "cursor";
+    private static final String DEAD_LETTER_FILE = "dead-letters";
+    private static final long DEFAULT_SEGMENT_BYTES = Long.getLong("portal.journal.segmentBytes", 64L * 1024 * 1024);
+    private static final long ACK_TIMEOUT_MILLIS = Long.getLong("portal.journal.ackTimeoutMillis", 5000);
+    private static final int CURSOR_SAVE_INTERVAL = Integer.getInteger("portal.journal.cursorSaveInterval", 100);
+    private static final long CONSUMER_RETRY_MILLIS = Long.getLong("portal.journal.consumerRetryMillis", 500);
+    private static final long CONSUMER_RETRY_MAX_MILLIS = Long.getLong("portal.journal.consumerRetryMaxMillis", 30000);
+    private static final int APPLY_ATTEMPTS = Integer.getInteger("portal.journal.applyAttempts", 5);
+    private static final int HEADER_BYTES = 8;
+    private static final int MAX_RECORD_BYTES = 64 * 1024 * 1024;
+    private static final String BACKLOG_GAUGE = "journal.backlogBytes";
+
+    private final File directory;
+    private final JournalRecordHandler handler;
+    private final long segmentBytes;
+    private final int applyAttempts;
+    private final long retryMillis;
+    private final Object lock = new Object();
+    private final Object deadLetterLock = new Object();
+    // segment base position -> file, guarded by lock
+    private final TreeMap<Long, File> segments = new TreeMap<>();
+    private FileChannel segment;
+    private long segmentBase;
+    private long writePosition;
+    private volatile long durablePosition;
+    private volatile long cursor;
+    private IOException flushFailure;
+    // set while the consumer waits to retry after a failure, guarded by lock
+    private volatile IOException consumerFailure;
+    private volatile boolean started;
+    private volatile boolean closed;
+    private Thread flusher;
+    private Thread consumer;
+    private final Gauge backlogGauge = new Gauge() {
+        @Override
+        public long getValue() {
+            return getBacklog();
+        }
+    };
+
+    public WebhookJournal(JiraHome jiraHome, CloudEventDispatcher dispatcher) {
+        this(new File(jiraHome.getDataDirectory(), DIRECTORY), dispatcher, DEFAULT_SEGMENT_BYTES);
+    }
+
+    WebhookJournal(File directory, JournalRecordHandler handler, long segmentBytes) {
+        this(directory, handler, segmentBytes, APPLY_ATTEMPTS, CONSUMER_RETRY_MILLIS);
+    }
+
+    WebhookJournal(File directory, JournalRecordHandler handler, long segmentBytes, int applyAttempts, long retryMillis) {
+        this.directory = directory;
+        this.handler = handler;
+        this.segmentBytes = segmentBytes;
+        this.applyAttempts = applyAttempts;
+        this.retryMillis = retryMillis;
+    }
+
+    @Override
+    public void onStart() {
+        try {
+            start();
+        } catch (IOException e) {
+            LOG.error("Webhook journal can't be opened in " + directory.getAbsolutePath() + ", webhooks are rejected", e);
+        }
+    }
+
+    void start() throws IOException {
+        synchronized (lock) {
+            if (started) {
+                return;
+            }
+            open();
+            started = true;
+        }
+        SyncMetrics.gauge(BACKLOG_GAUGE, backlogGauge);
+        flusher = startThread("portal-webhook-journal-flusher", new Runnable() {
+            @Override
+            public void run() {
+                flushLoop();
+            }
+        });
+        consumer = startThread("portal-webhook-journal-consumer", new Runnable() {
+            @Override
+            public void run() {
+                consumeLoop();
+            }
+        });
+    }
+
+    /**
+     * Appends record to the journal, the record isn't durable until {@link #awaitDurable(long)} returns.
+     *
+     * @return journal position right after the record
+     * @throws IOException if journal isn't open or record can't be written
+     */
+    public long append(JournalRecord record) throws IOException {
+        ByteBuffer buffer = encode(record);
+        synchronized (lock) {
+            if (!started || closed) {
+                throw new IOException("Webhook journal isn't open");
+            }
+            if (null != consumerFailure) {
+                throw new IOException("Webhook journal consumer is down", consumerFailure);
+            }
+            if (writePosition > segmentBase && writePosition - segmentBase + buffer.remaining() > segmentBytes) {
+                roll();
+            }
+            while (buffer.hasRemaining()) {
+                segment.write(buffer);
+            }
+            writePosition += buffer.limit();
+            lock.notifyAll();
+            return writePosition;
+        }
+    }
+
+    /**
+     * Blocks until journal is durable up to the position, at most {@code portal.journal.ackTimeoutMillis} (default: 5000).
+     *
+     * @throws IOException if position didn't become durable
+     */
+    public void awaitDurable(long position) throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + ACK_TIMEOUT_MILLIS;
+        synchronized (lock) {
+            while (durablePosition < position) {
+                if (null != flushFailure) {
+                    throw new IOException("Webhook journal can't be forced to disk", flushFailure);
+                }
+                long remaining = deadline - System.currentTimeMillis();
+                if (closed || remaining <= 0) {
+                    throw new IOException("Webhook journal position " + position + " isn't durable, durable up to " + durablePosition);
+                }
+                lock.wait(remaining);
+            }
+        }
+    }
+
+    /**
+     * @return number of bytes appended but not consumed yet
+     */
+    public long getBacklog() {
+        return durablePosition - cursor;
+    }
+
+    private void open() throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Directory " + directory.getAbsolutePath() + " can't be created");
+        }
+        File[] files = directory.listFiles();
+        if (null != files) {
+            for (File file : files) {
+                String name = file.getName();
+                if (name.endsWith(SEGMENT_SUFFIX)) {
+                    segments.put(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())), file);
+                }
+            }
+        }
+        if (segments.isEmpty()) {
+            segments.put(0L, segmentFile(0L));
+        }
+        Map.Entry<Long, File> last = segments.lastEntry();
+        segmentBase = last.getKey();
+        segment = FileChannel.open(last.getValue().toPath(), CREATE, READ, WRITE);
+        long validBytes = recover(segment);
+        if (validBytes < segment.size()) {
+            LOG.warn("Webhook journal segment " + last.getValue().getName() + " has a torn tail, truncated from " + segment.size() + " to " + validBytes + " bytes");
+            segment.truncate(validBytes);
+            segment.force(true);
+        }
+        segment.position(validBytes);
+        writePosition = segmentBase + validBytes;
+        durablePosition = writePosition;
+        cursor = Math.min(Math.max(readCursor(), segments.firstKey()), writePosition);
+        LOG.info("Webhook journal opened in " + directory.getAbsolutePath() + ", " + (writePosition - cursor) + " bytes to replay");
+    }
+
+    /**
+     * @return number of bytes of the segment which hold complete records
+     */
+    private static long recover(FileChannel channel) throws IOException {
+        long position = 0;
+        long size = channel.size();
+        while (true) {
+            byte[] payload = readRecord(channel, position, size);
+            if (null == payload) {
+                return position;
+            }
+            position += HEADER_BYTES + payload.length;
+        }
+    }
+
+    /**
+     * @return payload of the record at position, null if there is no complete valid record
+     */
+    private static byte[] readRecord(FileChannel channel, long position, long limit) throws IOException {
+        if (limit - position < HEADER_BYTES) {
+            return null;
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        readFully(channel, header, position);
+        int length = header.getInt(0);
+        long checksum = header.getInt(4) & 0xffffffffL;
+        if (length < 0 || length > MAX_RECORD_BYTES || limit - position - HEADER_BYTES < length) {
+            return null;
+        }
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        readFully(channel, payload, position + HEADER_BYTES);
+        CRC32 crc = new CRC32();
+        crc.update(payload.array(), 0, length);
+        return crc.getValue() == checksum ? payload.array() : null;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of journal segment");
+            }
+        }
+    }
+
+    // called with lock held
+    private void roll() throws IOException {
+        segment.force(false);
+        durablePosition = writePosition;
+        lock.notifyAll();
+        segment.close();
+        segmentBase = writePosition;
+        File file = segmentFile(segmentBase);
+        segment = FileChannel.open(file.toPath(), CREATE, READ, WRITE);
+        segments.put(segmentBase, file);
+    }
+
+    private void flushLoop() {
+        while (true) {
+            FileChannel channel;
+            long target;
+            synchronized (lock) {
+                while (!closed && writePosition == durablePosition) {
+                    waitQuietly();
+                }
+                if (writePosition == durablePosition) {
+                    return;
+                }
+                channel = segment;
+                target = writePosition;
+            }
+            try {
+                channel.force(false);
+            } catch (ClosedChannelException e) {
+                // segment was rolled or journal closed, both force the segment themselves
+                continue;
+            } catch (IOException e) {
+                LOG.error("Webhook journal can't be forced to disk", e);
+                synchronized (lock) {
+                    flushFailure = e;
+                    lock.notifyAll();
+                }
+                return;
+            }
+            synchronized (lock) {
+                durablePosition = Math.max(durablePosition, target);
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private void consumeLoop() {
+        long retryMillis = this.retryMillis;
+        while (true) {
+            try {
+                if (null != consumerFailure) {
+                    // cursor must be writable again before appends are accepted
+                    saveCursor();
+                    synchronized (lock) {
+                        consumerFailure = null;
+                    }
+                    LOG.info("Webhook journal consumer recovered at " + cursor);
+                }
+                consume();
+                break;
+            } catch (IOException e) {
+                synchronized (lock) {
+                    retryMillis = null == consumerFailure ? this.retryMillis : Math.min(2 * retryMillis, CONSUMER_RETRY_MAX_MILLIS);
+                    consumerFailure = e;
+                    if (closed) {
+                        break;
+                    }
+                    LOG.error("Webhook journal consumer failed at " + cursor + ", webhooks are rejected until it recovers, retry in " + retryMillis + " ms", e);
+                    waitQuietly(retryMillis);
+                }
+            }
+        }
+        saveCursorQuietly();
+    }
+
+    /**
+     * Hands records over to the handler until the journal is closed
+     */
+    private void consume() throws IOException {
+        int unsaved = 0;
+        FileChannel reader = null;
+        long readerBase = -1;
+        try {
+            while (true) {
+                synchronized (lock) {
+                    while (!closed && durablePosition <= cursor) {
+                        if (unsaved > 0) {
+                            break;
+                        }
+                        waitQuietly();
+                    }
+                    if (closed) {
+                        break;
+                    }
+                }
+                if (durablePosition <= cursor) {
+                    saveCursor();
+                    unsaved = 0;
+                    continue;
+                }
+                Map.Entry<Long, File> entry = floorSegment(cursor);
+                if (entry.getKey() != readerBase) {
+                    closeQuietly(reader);
+                    reader = FileChannel.open(entry.getValue().toPath(), READ);
+                    readerBase = entry.getKey();
+                }
+                long limit = Math.min(durablePosition, nextSegmentBase(readerBase)) - readerBase;
+                byte[] payload = readRecord(reader, cursor - readerBase, limit);
+                if (null == payload) {
+                    LOG.error("Webhook journal record at " + cursor + " is corrupted, skipping rest of segment " + entry.getValue().getName());
+                    cursor = readerBase + limit;
+                    continue;
+                }
+                Outcome outcome = dispatch(payload);
+                if (Outcome.STOPPED == outcome) {
+                    // the record is handed over again after restart
+                    break;
+                }
+                cursor += HEADER_BYTES + payload.length;
+                // the cursor is the applied-up-to marker, a replay must not apply the record again
+                if (Outcome.APPLIED == outcome || ++unsaved >= CURSOR_SAVE_INTERVAL) {
+                    saveCursor();
+                    unsaved = 0;
+                }
+            }
+        } finally {
+            closeQuietly(reader);
+        }
+    }
+
+    /**
+     * Hands the record over to the handler, retries it while it fails and moves it to dead letters
+     * when attempts run out
+     *
+     * @throws IOException if the record can't be written to dead letters
+     */
+    private Outcome dispatch(byte[] payload) throws IOException {
+        JournalRecord record;
+        try {
+            record = decode(payload);
+        } catch (IOException e) {
+            LOG.error("Webhook journal record at " + cursor + " can't be decoded, skipped", e);
+            return Outcome.HANDLED;
+        }
+        long retryMillis = this.retryMillis;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return handler.handle(record) ? Outcome.APPLIED : Outcome.HANDLED;
+            } catch (RuntimeException e) {
+                if (attempt >= applyAttempts) {
+                    LOG.error("Webhook " + record + " at " + cursor + " failed " + attempt + " times, moved to dead letters", e);
+                    deadLetter(payload);
+                    SyncMetrics.counter("journal.deadLetters").increment();
+                    return Outcome.HANDLED;
+                }
+                LOG.warn("Webhook " + record + " at " + cursor + " failed, retry in " + retryMillis + " ms", e);
+            }
+            if (!sleepUnlessClosed(retryMillis)) {
+                return Outcome.STOPPED;
+            }
+            retryMillis = Math.min(2 * retryMillis, CONSUMER_RETRY_MAX_MILLIS);
+        }
+    }
+
+    /**
+     * @return false if the journal was closed meanwhile
+     */
+    private boolean sleepUnlessClosed(long millis) {
+        long deadline = System.currentTimeMillis() + millis;
+        synchronized (lock) {
+            for (long remaining = millis; !closed && remaining > 0; remaining = deadline - System.currentTimeMillis()) {
+                waitQuietly(remaining);
+            }
+            return !closed;
+        }
+    }
+
+    private void deadLetter(byte[] payload) throws IOException {
+        ByteBuffer buffer = frame(payload);
+        synchronized (deadLetterLock) {
+            try (FileChannel channel = FileChannel.open(deadLetterFile().toPath(), CREATE, WRITE, APPEND)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(false);
+            }
+        }
+    }
+
+    /**
+     * Appends dead letters to the journal again, after the records already waiting. Dead letters which can't
+     * be appended stay in the file.
+     *
+     * @return number of records appended
+     * @throws IOException if the journal rejects appends or dead letters can't be read
+     */
+    public int replayDeadLetters() throws IOException, InterruptedException {
+        synchronized (deadLetterLock) {
+            File file = deadLetterFile();
+            if (!file.exists()) {
+                return 0;
+            }
+            int count = 0;
+            long position = 0;
+            try (FileChannel channel = FileChannel.open(file.toPath(), READ)) {
+                long size = channel.size();
+                try {
+                    long appended = -1;
+                    for (byte[] payload = readRecord(channel, position, size); null != payload; payload = readRecord(channel, position, size)) {
+                        appended = append(decode(payload));
+                        position += HEADER_BYTES + payload.length;
+                        count++;
+                    }
+                    if (appended >= 0) {
+                        awaitDurable(appended);
+                    }
+                } catch (IOException e) {
+                    if (position > 0) {
+                        keepTail(channel, position, size);
+                    }
+                    throw e;
+                }
+            }
+            Files.delete(file.toPath());
+            LOG.info(count + " webhook dead letter(s) appended to the journal again");
+            return count;
+        }
+    }
+
+    /**
+     * Rewrites dead letters file with records after the position only
+     */
+    private void keepTail(FileChannel channel, long position, long size) throws IOException {
+        Path tmp = new File(directory, DEAD_LETTER_FILE + ".tmp").toPath();
+        try (FileChannel tail = FileChannel.open(tmp, CREATE, WRITE, TRUNCATE_EXISTING)) {
+            channel.transferTo(position, size - position, tail);
+            tail.force(true);
+        }
+        Files.move(tmp, deadLetterFile().toPath(), ATOMIC_MOVE, REPLACE_EXISTING);
+        forceDirectory();
+    }
+
+    private File deadLetterFile() {
+        return new File(directory, DEAD_LETTER_FILE);
+    }
+
+    private Map.Entry<Long, File> floorSegment(long position) {
+        synchronized (lock) {
+            return segments.floorEntry(position);
+        }
+    }
+
+    private long nextSegmentBase(long base) {
+        synchronized (lock) {
+            Long next = segments.higherKey(base);
+            return null != next ? next : Long.MAX_VALUE;
+        }
+    }
+
+    private long readCursor() throws IOException {
+        File file = new File(directory, CURSOR_FILE);
+        if (!file.exists()) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(new String(Files.readAllBytes(file.toPath()), StandardCharsets.US_ASCII).trim());
+        } catch (NumberFormatException e) {
+            LOG.warn("Webhook journal cursor can't be read, journal is replayed from the oldest segment", e);
+            return 0;
+        }
+    }
+
+    /**
+     * Replaces the cursor file, the new cursor is on disk before segments behind it are deleted
+     */
+    private void saveCursor() throws IOException {
+        long position = cursor;
+        Path tmp = new File(directory, CURSOR_FILE + ".tmp").toPath();
+        try (FileChannel channel = FileChannel.open(tmp, CREATE, WRITE, TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(Long.toString(position).getBytes(StandardCharsets.US_ASCII));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(tmp, new File(directory, CURSOR_FILE).toPath(), ATOMIC_MOVE, REPLACE_EXISTING);
+        forceDirectory();
+        deleteConsumedSegments(position);
+    }
+
+    /**
+     * Makes the cursor rename durable. Not every platform can open a directory, there the rename is left
+     * to the file system.
+     */
+    private void forceDirectory() {
+        try (FileChannel channel = FileChannel.open(directory.toPath(), READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            LOG.debug("Webhook journal directory " + directory.getAbsolutePath() + " can't be forced to disk", e);
+        }
+    }
+
+    private void saveCursorQuietly() {
+        try {
+            saveCursor();
+        } catch (IOException e) {
+            LOG.error("Webhook journal cursor can't be saved, records after " + cursor + " may be replayed", e);
+        }
+    }
+
+    private void deleteConsumedSegments(long position) {
+        synchronized (lock) {
+            while (segments.size() > 1) {
+                Map.Entry<Long, File> first = segments.firstEntry();
+                Long next = segments.higherKey(first.getKey());
+                if (next > position) {
+                    return;
+                }
+                if (!first.getValue().delete()) {
+                    LOG.warn("Consumed webhook journal segment " + first.getValue().getName() + " can't be deleted");
+                }
+                segments.remove(first.getKey());
+            }
+        }
+    }
+
+    private File segmentFile(long base) {
+        return new File(directory, String.format("%020d", base) + SEGMENT_SUFFIX);
+    }
+
+    static ByteBuffer encode(JournalRecord record) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(nullToEmpty(record.getType()));
+        out.writeUTF(nullToEmpty(record.getProjectKey()));
+        out.writeUTF(nullToEmpty(record.getEntityKey()));
+        byte[] body = nullToEmpty(record.getBody()).getBytes(StandardCharsets.UTF_8);
+        out.writeInt(body.length);
+        out.write(body);
+        out.flush();
+        return frame(bytes.toByteArray());
+    }
+
+    /**
+     * @return {@code [length][crc32][payload]} ready to be written
+     */
+    private static ByteBuffer frame(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+        buffer.putInt(payload.length);
+        buffer.putInt((int) crc.getValue());
+        buffer.put(payload);
+        buffer.flip();
+        return buffer;
+    }
+
+    static JournalRecord decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        String type = emptyToNull(in.readUTF());
+        String projectKey = emptyToNull(in.readUTF());
+        String entityKey = emptyToNull(in.readUTF());
+        byte[] body = new byte[in.readInt()];
+        in.readFully(body);
+        return new JournalRecord(type, projectKey, entityKey, new String(body, StandardCharsets.UTF_8));
+    }
+
+    private static String nullToEmpty(String value) {
+        return null == value ? "" : value;
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+
+    private void waitQuietly() {
+        waitQuietly(0);
+    }
+
+    private void waitQuietly(long millis) {
+        try {
+            lock.wait(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            closed = true;
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (null == channel) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOG.debug("Journal segment reader can't be closed", e);
+        }
+    }
+
+    private static Thread startThread(String name, Runnable runnable) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private enum Outcome {
+        APPLIED, HANDLED, STOPPED
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        SyncMetrics.removeGauge(BACKLOG_GAUGE, backlogGauge);
+        synchronized (lock) {
+            if (!started || closed) {
+                return;
+            }
+            closed = true;
+            lock.notifyAll();
+        }
+        flusher.join(TimeUnit.SECONDS.toMillis(30));
+        consumer.join(TimeUnit.SECONDS.toMillis(30));
+        synchronized (lock) {
+            segment.force(false);
+            durablePosition = writePosition;
+            segment.close();
+            lock.notifyAll();
+        }
+    }
+}
@@ -1,150 +1,350 @@
 package com.ac.jira.cloud.rest;
 
-import com.ac.jira.cloud.CloudIssueSynchronizer;
-import com.ac.jira.cloud.rest.bean.CommentEventBean;
-import com.ac.jira.cloud.rest.bean.IssueEventBean;
-import com.ac.jira.cloud.rest.bean.WorklogEventBean;
+import com.ac.jira.cloud.WebhookEventType;
+import com.ac.jira.cloud.event.WebhookDedupeCache;
+import com.ac.jira.cloud.event.WebhookEvent;
+import com.ac.jira.cloud.event.WebhookEventLog;
+import com.ac.jira.cloud.event.WebhookEventParser;
+import com.ac.jira.cloud.journal.JournalRecord;
+import com.ac.jira.cloud.journal.WebhookJournal;
+import com.ai.jira.portal.metrics.Counter;
+import com.ai.jira.portal.metrics.SyncMetrics;
 import com.atlassian.jira.component.ComponentAccessor;
-import com.atlassian.jira.issue.MutableIssue;
-import com.atlassian.jira.project.Project;
-import com.atlassian.jira.rest.v2.issue.IssueBean;
-import com.atlassian.jira.user.ApplicationUser;
 import com.atlassian.plugins.rest.common.security.AnonymousAllowed;
-import org.apache.log4j.Logger;
+import org.apache.commons.lang.StringUtils;
 
 import javax.ws.rs.*;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
-import static com.atlassian.jira.util.ImportUtils.isIndexIssues;
-import static com.atlassian.jira.util.ImportUtils.setIndexIssues;
+import static com.ac.jira.cloud.WebhookEventType.*;
 import static javax.ws.rs.core.Response.Status.BAD_REQUEST;
+import static javax.ws.rs.core.Response.Status.OK;
+import static javax.ws.rs.core.Response.Status.REQUEST_ENTITY_TOO_LARGE;
+import static javax.ws.rs.core.Response.Status.SERVICE_UNAVAILABLE;
 import static javax.ws.rs.core.Response.ok;
 import static javax.ws.rs.core.Response.status;
 
+/**
+ * Receives cloud webhooks. A webhook is acknowledged once it's durable in {@link WebhookJournal},
+ * it's applied to Jira later by the journal consumer.
+ * <p>
+ * A webhook redelivered by the cloud is recognized by {@link WebhookDedupeCache} and acknowledged without journaling
+ * it again, or rejected with 503 while the first delivery is still being journaled.
+ * <p>
+ * Bulk producers post an array of webhooks to {@code /batch}, at most {@code portal.webhook.batchMaxEvents}
+ * (default: 5000) per request.
+ */
 @Path("/project/{projectKey}")
 @Consumes({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML})
 @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML})
 @AnonymousAllowed
 public class CloudListener {
-    private static final Logger LOG = Logger.getLogger(CloudListener.class);
-    private static final MutableIssue ISSUE_TO_CLONE = ComponentAccessor.getIssueManager().getIssueObject("SAP-27606");
-    private CloudIssueSynchronizer synchronizer;
+    private static final Counter REJECTED = SyncMetrics.counter("webhook.rejected");
+    private static final Counter UNAVAILABLE = SyncMetrics.counter("webhook.unavailable");
+    private static final Counter DUPLICATE = SyncMetrics.counter("webhook.duplicate");
+    private static final Counter BATCH_EVENTS = SyncMetrics.counter("webhook.batch.events");
+    private static final int BATCH_MAX_EVENTS = Integer.getInteger("portal.webhook.batchMaxEvents", 5000);
+    private WebhookJournal journal;
+    private WebhookDedupeCache dedupeCache;
+    private WebhookEventLog eventLog;
 
     public CloudListener() {
-        this.synchronizer = ComponentAccessor.getComponentOfType(CloudIssueSynchronizer.class);
+        this.journal = ComponentAccessor.getComponentOfType(WebhookJournal.class);
+        this.dedupeCache = ComponentAccessor.getComponentOfType(WebhookDedupeCache.class);
+        this.eventLog = ComponentAccessor.getComponentOfType(WebhookEventLog.class);
     }
 
     @POST
     @Path("/issue/{issueKey}/create")
     public Response issueCreated(@PathParam("projectKey") String projectKey,
                                  @PathParam("issueKey") String issueKey,
-                                 IssueEventBean issueCreated) {
-        Project project = getProjectByExternalProjectKey(projectKey);
-        ApplicationUser user = getClientUserByProjectKey(projectKey);
-
-        createInternalIssue(issueCreated.getIssue(), project, user);
-
-        logEvent(issueCreated);
-        return buildOKResponseIfEventNotNull(issueCreated);
-    }
-
-    private Project getProjectByExternalProjectKey(String projectKey) {
-        return ComponentAccessor.getProjectManager().getProjectObjByKey("SAP");
-    }
-
-    private ApplicationUser getClientUserByProjectKey(String projectKey) {
-        return ComponentAccessor.getUserManager().getUserByName("dm.ulanovych");
-    }
-
-    private void createInternalIssue(IssueBean issueBean, Project project, ApplicationUser user) {
-        boolean oldIndexIssuesValue = isIndexIssues();
-        setIndexIssues(true);
-
-        synchronizer.createInternalIssue(user, ISSUE_TO_CLONE, project);
-
-        setIndexIssues(oldIndexIssuesValue);
+                                 String issueCreated) {
+        return accept(ISSUE_CREATED, projectKey, issueKey, issueCreated);
     }
 
     @POST
     @Path("/issue/{issueKey}/update")
-    public Response issueUpdated(@PathParam("issueKey") String issueKey,
-                                 IssueEventBean issueUpdated) {
-        logEvent(issueUpdated);
-        return buildOKResponseIfEventNotNull(issueUpdated);
+    public Response issueUpdated(@PathParam("projectKey") String projectKey,
+                                 @PathParam("issueKey") String issueKey,
+                                 String issueUpdated) {
+        return accept(ISSUE_UPDATED, projectKey, issueKey, issueUpdated);
     }
 
     @POST
     @Path("/issue/{issueKey}/delete")
-    public Response issueDeleted(@PathParam("issueKey") String issueKey,
+    public Response issueDeleted(@PathParam("projectKey") String projectKey,
+                                 @PathParam("issueKey") String issueKey,
                                  String issueDeleted) {
-        logEvent(issueDeleted);
-        return buildOKResponseIfEventNotNull(issueDeleted);
+        return accept(ISSUE_DELETED, projectKey, issueKey, issueDeleted);
     }
 
     @POST
     @Path("/issue/{issueKey}/comment/{commentId}/create")
-    public Response createComment(@PathParam("issueKey") String issueKey,
+    public Response createComment(@PathParam("projectKey") String projectKey,
+                                  @PathParam("issueKey") String issueKey,
                                   @PathParam("commentId") String commentId,
-                                  CommentEventBean commentCreated) {
-
-        logEvent(commentCreated);
-        return buildOKResponseIfEventNotNull(commentCreated);
+                                  String commentCreated) {
+        return accept(COMMENT_CREATED, projectKey, commentId, commentCreated);
     }
 
     @POST
     @Path("/issue/{issueKey}/comment/{commentId}/update")
-    public Response updateComment(@PathParam("issueKey") String issueKey,
+    public Response updateComment(@PathParam("projectKey") String projectKey,
+                                  @PathParam("issueKey") String issueKey,
                                   @PathParam("commentId") String commentId,
-                                  CommentEventBean commentUpdated) {
-        logEvent(commentUpdated);
-        return buildOKResponseIfEventNotNull(commentUpdated);
+                                  String commentUpdated) {
+        return accept(COMMENT_UPDATED, projectKey, commentId, commentUpdated);
     }
 
     @POST
     @Path("/issue/{issueKey}/comment/{commentId}/delete")
-    public Response deleteComment(@PathParam("issueKey") String issueKey,
+    public Response deleteComment(@PathParam("projectKey") String projectKey,
+                                  @PathParam("issueKey") String issueKey,
                                   @PathParam("commentId") String commentId,
-                                  CommentEventBean commentDeleted) {
-        logEvent(commentDeleted);
-        return buildOKResponseIfEventNotNull(commentDeleted);
+                                  String commentDeleted) {
+        return accept(COMMENT_DELETED, projectKey, commentId, commentDeleted);
     }
 
     @POST
     @Path("/worklog/create")
-    public Response worklogCreated(WorklogEventBean worklogCreated) {
-        logEvent(worklogCreated);
-        return buildOKResponseIfEventNotNull(worklogCreated);
+    public Response worklogCreated(@PathParam("projectKey") String projectKey,
+                                   String worklogCreated) {
+        return accept(WORKLOG_CREATED, projectKey, null, worklogCreated);
     }
 
     @POST
     @Path("/worklog/update")
-    public Response worklogUpdated(WorklogEventBean worklogUpdated) {
-        logEvent(worklogUpdated);
-        return buildOKResponseIfEventNotNull(worklogUpdated);
+    public Response worklogUpdated(@PathParam("projectKey") String projectKey,
+                                   String worklogUpdated) {
+        return accept(WORKLOG_UPDATED, projectKey, null, worklogUpdated);
     }
 
     @POST
     @Path("/worklog/delete")
-    public Response worklogDeleted(WorklogEventBean worklogDeleted) {
-        logEvent(worklogDeleted);
-        return buildOKResponseIfEventNotNull(worklogDeleted);
+    public Response worklogDeleted(@PathParam("projectKey") String projectKey,
+                                   String worklogDeleted) {
+        return accept(WORKLOG_DELETED, projectKey, null, worklogDeleted);
     }
 
     @POST
     @Path("/version/{versionId}")
     public Response versionEvent(@PathParam("projectKey") String projectKey,
                                  @PathParam("versionId") String versionId,
-                                 String versionEventBean) {
-        logEvent(versionEventBean);
-        return ok().build();
+                                 String versionEvent) {
+        return accept(VERSION, projectKey, versionId, versionEvent);
     }
 
-    private Response buildOKResponseIfEventNotNull(Object event) {
-        return event == null ? status(BAD_REQUEST).build() : ok().build();
+    /**
+     * Accepts an array of issue, comment, worklog and version webhooks of the project. Webhooks are journaled
+     * in array order and replayed by the single journal consumer, so they're handed over in that order. The batch
+     * waits for the disk once, after the last webhook is appended.
+     * <p>
+     * Webhooks are applied asynchronously, the response only tells which ones are durable. Of the journaled
+     * webhooks only issue creation is applied to Jira today, the others are only logged, see
+     * {@link com.ac.jira.cloud.CloudEventDispatcher}.
+     * <p>
+     * Responds with 200 and a result per webhook: its index, type and {@code accepted} code. 200 means the webhook
+     * is journaled, 400 means it's invalid and is dropped, 503 means it isn't durable and has to be sent again.
+     * Redelivered webhooks are deduplicated the same way as single ones, a webhook repeated within the batch gets
+     * the code of its first occurrence.
+     */
+    @POST
+    @Path("/batch")
+    public Response batch(@PathParam("projectKey") String projectKey,
+                          String batch) {
+        if (StringUtils.isBlank(batch)) {
+            REJECTED.increment();
+            return status(BAD_REQUEST).build();
+        }
+        long start = System.nanoTime();
+        List<String> bodies;
+        try {
+            bodies = WebhookEventParser.split(batch, BATCH_MAX_EVENTS);
+        } catch (IOException e) {
+            eventLog.failed("BATCH", batch, "payload isn't a JSON array", e);
+            REJECTED.increment();
+            return status(BAD_REQUEST).build();
+        }
+        if (null == bodies) {
+            REJECTED.increment();
+            return status(REQUEST_ENTITY_TOO_LARGE).build();
+        }
+        BATCH_EVENTS.add(bodies.size());
+
+        WebhookEvent[] events = new WebhookEvent[bodies.size()];
+        WebhookEventType[] types = new WebhookEventType[bodies.size()];
+        String[] claimed = new String[bodies.size()];
+        int[] sameAs = new int[bodies.size()];
+        int[] statuses = new int[bodies.size()];
+        Map<String, Integer> claimedAt = new HashMap<>();
+        long lastPosition = -1;
+        Arrays.fill(sameAs, -1);
+        for (int i = 0; i < bodies.size(); i++) {
+            String body = bodies.get(i);
+            try {
+                events[i] = WebhookEventParser.parse(body);
+            } catch (IOException e) {
+                eventLog.failed("BATCH", body, "webhook " + i + " isn't a valid JSON object", e);
+                statuses[i] = BAD_REQUEST.getStatusCode();
+                continue;
+            }
+            types[i] = WebhookEventType.forWebhookEvent(events[i].getWebhookEvent());
+            if (null == types[i]) {
+                eventLog.failed("BATCH", body, "webhook " + i + " of type " + events[i].getWebhookEvent() + " isn't accepted", null);
+                statuses[i] = BAD_REQUEST.getStatusCode();
+                continue;
+            }
+            String key = WebhookDedupeCache.key(events[i]);
+            WebhookDedupeCache.State earlier = dedupeCache.claim(key);
+            if (WebhookDedupeCache.State.NEW != earlier) {
+                DUPLICATE.increment();
+                Integer original = claimedAt.get(key);
+                if (null != original) {
+                    // repeated within the batch, accepted together with its first occurrence
+                    sameAs[i] = original;
+                } else {
+                    statuses[i] = (WebhookDedupeCache.State.DONE == earlier ? OK : SERVICE_UNAVAILABLE).getStatusCode();
+                }
+                continue;
+            }
+            if (null != key) {
+                claimed[i] = key;
+                claimedAt.put(key, i);
+            }
+            try {
+                lastPosition = journal.append(new JournalRecord(types[i].name(), projectKey, entityKey(types[i], events[i]), body));
+                statuses[i] = OK.getStatusCode();
+            } catch (IOException e) {
+                eventLog.failed(types[i].name(), body, projectKey + " webhook " + i + " can't be journaled", e);
+                // webhooks after this one are left out, or they would be applied before it when it's sent again
+                for (int j = i; j < statuses.length; j++) {
+                    statuses[j] = SERVICE_UNAVAILABLE.getStatusCode();
+                }
+                break;
+            }
+        }
+        if (lastPosition >= 0) {
+            try {
+                journal.awaitDurable(lastPosition);
+            } catch (IOException e) {
+                eventLog.failed("BATCH", batch, projectKey + " batch can't be made durable", e);
+                markUnavailable(statuses);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                markUnavailable(statuses);
+            }
+        }
+        for (int i = 0; i < statuses.length; i++) {
+            if (sameAs[i] >= 0) {
+                statuses[i] = statuses[sameAs[i]];
+            }
+            if (null != claimed[i]) {
+                if (OK.getStatusCode() == statuses[i]) {
+                    dedupeCache.complete(claimed[i]);
+                } else {
+                    dedupeCache.release(claimed[i]);
+                }
+            }
+        }
+
+        long took = System.nanoTime() - start;
+        SyncMetrics.timer("webhook.batch").record(took);
+        List<Map<String, Object>> results = new ArrayList<>(statuses.length);
+        for (int i = 0; i < statuses.length; i++) {
+            if (BAD_REQUEST.getStatusCode() == statuses[i]) {
+                REJECTED.increment();
+            } else if (SERVICE_UNAVAILABLE.getStatusCode() == statuses[i]) {
+                UNAVAILABLE.increment();
+            } else {
+                eventLog.log(types[i].name(), events[i], took, statuses[i]);
+            }
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("index", i);
+            result.put("type", null == types[i] ? null : types[i].name());
+            result.put("accepted", statuses[i]);
+            results.add(result);
+        }
+        return ok(results).build();
     }
 
-    private void logEvent(Object eventBean) {
-        LOG.warn(eventBean);
+    /**
+     * @return key journaled with the webhook, the same the single webhook resources take from their path
+     */
+    private static String entityKey(WebhookEventType type, WebhookEvent event) {
+        switch (type) {
+            case ISSUE_CREATED:
+            case ISSUE_UPDATED:
+            case ISSUE_DELETED:
+                return event.getIssueKey();
+            case COMMENT_CREATED:
+            case COMMENT_UPDATED:
+            case COMMENT_DELETED:
+                return event.getCommentId();
+            case VERSION:
+                return event.getVersionId();
+            default:
+                return null;
+        }
+    }
+
+    private static void markUnavailable(int[] statuses) {
+        for (int i = 0; i < statuses.length; i++) {
+            if (OK.getStatusCode() == statuses[i]) {
+                statuses[i] = SERVICE_UNAVAILABLE.getStatusCode();
+            }
+        }
+    }
+
+    /**
+     * Journals the webhook, responds with 503 if it can't be made durable so the cloud retries it
+     */
+    private Response accept(WebhookEventType type, String projectKey, String entityKey, String body) {
+        if (StringUtils.isBlank(body)) {
+            REJECTED.increment();
+            return status(BAD_REQUEST).build();
+        }
+        long start = System.nanoTime();
+        WebhookEvent event;
+        try {
+            event = WebhookEventParser.parse(body);
+        } catch (IOException e) {
+            eventLog.failed(type.name(), body, "payload isn't valid JSON", e);
+            REJECTED.increment();
+            return status(BAD_REQUEST).build();
+        }
+        String key = WebhookDedupeCache.key(event);
+        WebhookDedupeCache.State earlier = dedupeCache.claim(key);
+        if (WebhookDedupeCache.State.NEW != earlier) {
+            DUPLICATE.increment();
+            Response.Status duplicateStatus = WebhookDedupeCache.State.DONE == earlier ? OK : SERVICE_UNAVAILABLE;
+            eventLog.log(type.name(), event, System.nanoTime() - start, "duplicate " + duplicateStatus.getStatusCode());
+            return status(duplicateStatus).build();
+        }
+        try {
+            journal.awaitDurable(journal.append(new JournalRecord(type.name(), projectKey, entityKey, body)));
+        } catch (IOException e) {
+            dedupeCache.release(key);
+            eventLog.failed(type.name(), body, projectKey + "/" + entityKey + " can't be journaled", e);
+            UNAVAILABLE.increment();
+            return status(SERVICE_UNAVAILABLE).build();
+        } catch (InterruptedException e) {
+            dedupeCache.release(key);
+            Thread.currentThread().interrupt();
+            UNAVAILABLE.increment();
+            return status(SERVICE_UNAVAILABLE).build();
+        }
+        dedupeCache.complete(key);
+        long took = System.nanoTime() - start;
+        SyncMetrics.timer("webhook." + type.name()).record(took);
+        eventLog.log(type.name(), event, took, OK.getStatusCode());
+        return ok().build();
     }
 }
@@ -0,0 +1,50 @@
+package com.ac.jira.cloud.rest;
+
+import com.ac.jira.cloud.journal.WebhookJournal;
+import com.atlassian.jira.component.ComponentAccessor;
+import com.atlassian.jira.security.Permissions;
+import com.atlassian.jira.user.ApplicationUser;
+
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.util.Collections;
+
+import static javax.ws.rs.core.Response.Status.FORBIDDEN;
+import static javax.ws.rs.core.Response.Status.SERVICE_UNAVAILABLE;
+import static javax.ws.rs.core.Response.ok;
+import static javax.ws.rs.core.Response.status;
+
+/**
+ * Hands dead letters of {@link WebhookJournal} over to the journal again, once the cause of their failure is fixed.
+ * Available to administrators.
+ */
+@Path("/journal")
+@Produces(MediaType.APPLICATION_JSON)
+public class JournalResource {
+    private final WebhookJournal journal;
+
+    public JournalResource() {
+        this.journal = ComponentAccessor.getComponentOfType(WebhookJournal.class);
+    }
+
+    @POST
+    @Path("/dead-letters/replay")
+    public Response replayDeadLetters() {
+        ApplicationUser user = ComponentAccessor.getJiraAuthenticationContext().getUser();
+        if (null == user || !ComponentAccessor.getPermissionManager().hasPermission(Permissions.ADMINISTER, user)) {
+            return status(FORBIDDEN).build();
+        }
+        try {
+            return ok(Collections.singletonMap("replayed", journal.replayDeadLetters())).build();
+        } catch (IOException e) {
+            return status(SERVICE_UNAVAILABLE).build();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return status(SERVICE_UNAVAILABLE).build();
+        }
+    }
+}
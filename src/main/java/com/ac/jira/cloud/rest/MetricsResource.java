@@ -0,0 +1,33 @@
+package com.ac.jira.cloud.rest;
+
+import com.ai.jira.portal.metrics.SyncMetrics;
+import com.atlassian.jira.component.ComponentAccessor;
+import com.atlassian.jira.security.Permissions;
+import com.atlassian.jira.user.ApplicationUser;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import static javax.ws.rs.core.Response.Status.FORBIDDEN;
+import static javax.ws.rs.core.Response.ok;
+import static javax.ws.rs.core.Response.status;
+
+/**
+ * Read-only view of {@link SyncMetrics}: counters, latency timers and gauges. Available to administrators.
+ */
+@Path("/metrics")
+@Produces(MediaType.APPLICATION_JSON)
+public class MetricsResource {
+
+    @GET
+    public Response getMetrics() {
+        ApplicationUser user = ComponentAccessor.getJiraAuthenticationContext().getUser();
+        if (null == user || !ComponentAccessor.getPermissionManager().hasPermission(Permissions.ADMINISTER, user)) {
+            return status(FORBIDDEN).build();
+        }
+        return ok(SyncMetrics.snapshot()).build();
+    }
+}
@@ -0,0 +1,94 @@
+package com.ai.jira.portal;
+
+import com.atlassian.jira.issue.Issue;
+import com.atlassian.jira.workflow.JiraWorkflow;
+import com.atlassian.jira.workflow.WorkflowManager;
+import com.opensymphony.workflow.loader.ActionDescriptor;
+import com.opensymphony.workflow.loader.StepDescriptor;
+import com.opensymphony.workflow.loader.WorkflowDescriptor;
+import org.apache.log4j.Logger;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Actions of workflows indexed by id.
+ * <p>
+ * {@link com.ai.jira.portal.issue.IssueTransitionValidator} looks up the descriptor of every mirrored transition,
+ * {@link WorkflowDescriptor#getAction(int)} scans all steps for it. The index is built on first use of the workflow
+ * and built again only when the workflow is published (Jira then hands out a new descriptor). Which action is
+ * taken is still resolved by {@link ActionResolverManager}.
+ */
+public class WorkflowTransitionTable {
+    private static final Logger LOG = Logger.getLogger(WorkflowTransitionTable.class);
+
+    private final ConcurrentMap<String, CompiledWorkflow> workflows = new ConcurrentHashMap<>();
+    private final WorkflowManager workflowManager;
+
+    public WorkflowTransitionTable(WorkflowManager workflowManager) {
+        this.workflowManager = workflowManager;
+    }
+
+    /**
+     * @return action of issue's workflow, null if workflow has no such action
+     */
+    public ActionDescriptor getAction(Issue issue, int actionId) {
+        CompiledWorkflow workflow = getWorkflow(issue);
+        if (null == workflow) {
+            return null;
+        }
+        ActionDescriptor action = workflow.actions.get(actionId);
+        // the index holds global, initial and step actions, anything else is left to the descriptor
+        return null != action ? action : workflow.descriptor.getAction(actionId);
+    }
+
+    private CompiledWorkflow getWorkflow(Issue issue) {
+        JiraWorkflow workflow = workflowManager.getWorkflow(issue);
+        if (null == workflow || null == workflow.getDescriptor()) {
+            return null;
+        }
+        CompiledWorkflow compiled = workflows.get(workflow.getName());
+        if (null == compiled || compiled.descriptor != workflow.getDescriptor()) {
+            compiled = compile(workflow);
+            workflows.put(workflow.getName(), compiled);
+        }
+        return compiled;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static CompiledWorkflow compile(JiraWorkflow workflow) {
+        long start = System.currentTimeMillis();
+        WorkflowDescriptor descriptor = workflow.getDescriptor();
+        CompiledWorkflow compiled = new CompiledWorkflow(descriptor);
+        index(compiled.actions, (List<ActionDescriptor>) descriptor.getGlobalActions());
+        index(compiled.actions, (List<ActionDescriptor>) descriptor.getInitialActions());
+        for (StepDescriptor step : (List<StepDescriptor>) descriptor.getSteps()) {
+            index(compiled.actions, (List<ActionDescriptor>) step.getActions());
+        }
+        LOG.debug("Action index of workflow '" + workflow.getName() + "' built in " + (System.currentTimeMillis() - start) + " ms");
+        return compiled;
+    }
+
+    /**
+     * Adds actions not indexed yet, the first action of an id wins as in {@link WorkflowDescriptor#getAction(int)}
+     */
+    private static void index(Map<Integer, ActionDescriptor> index, List<ActionDescriptor> actions) {
+        for (ActionDescriptor action : actions) {
+            if (!index.containsKey(action.getId())) {
+                index.put(action.getId(), action);
+            }
+        }
+    }
+
+    private static final class CompiledWorkflow {
+        private final WorkflowDescriptor descriptor;
+        private final Map<Integer, ActionDescriptor> actions = new HashMap<>();
+
+        CompiledWorkflow(WorkflowDescriptor descriptor) {
+            this.descriptor = descriptor;
+        }
+    }
+}
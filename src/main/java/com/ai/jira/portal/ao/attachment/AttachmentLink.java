@@ -0,0 +1,37 @@
+package com.ai.jira.portal.ao.attachment;
+
+import net.java.ao.Entity;
+import net.java.ao.Preload;
+import net.java.ao.schema.Indexed;
+import net.java.ao.schema.NotNull;
+
+/**
+ * Pair of attachments kept in sync between a portal issue and its internal issue
+ */
+@Preload
+public interface AttachmentLink extends Entity {
+
+    @NotNull
+    @Indexed
+    Long getPortalIssueId();
+
+    void setPortalIssueId(Long portalIssueId);
+
+    @NotNull
+    @Indexed
+    Long getInternalIssueId();
+
+    void setInternalIssueId(Long internalIssueId);
+
+    @NotNull
+    @Indexed
+    Long getPortalAttachmentId();
+
+    void setPortalAttachmentId(Long portalAttachmentId);
+
+    @NotNull
+    @Indexed
+    Long getInternalAttachmentId();
+
+    void setInternalAttachmentId(Long internalAttachmentId);
+}
@@ -0,0 +1,81 @@
+package com.ai.jira.portal.ao.attachment;
+
+import com.atlassian.activeobjects.external.ActiveObjects;
+import net.java.ao.DBParam;
+import net.java.ao.Query;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class AttachmentLinkManager {
+    private static final String PORTAL_ISSUE_ID = "PORTAL_ISSUE_ID";
+    private static final String INTERNAL_ISSUE_ID = "INTERNAL_ISSUE_ID";
+    private static final String PORTAL_ATTACHMENT_ID = "PORTAL_ATTACHMENT_ID";
+    private static final String INTERNAL_ATTACHMENT_ID = "INTERNAL_ATTACHMENT_ID";
+
+    private final ActiveObjects ao;
+
+    public AttachmentLinkManager(ActiveObjects ao) {
+        this.ao = ao;
+    }
+
+    public AttachmentLink save(Long portalIssueId, Long internalIssueId, Long portalAttachmentId, Long internalAttachmentId) {
+        return ao.create(AttachmentLink.class,
+                new DBParam(PORTAL_ISSUE_ID, portalIssueId),
+                new DBParam(INTERNAL_ISSUE_ID, internalIssueId),
+                new DBParam(PORTAL_ATTACHMENT_ID, portalAttachmentId),
+                new DBParam(INTERNAL_ATTACHMENT_ID, internalAttachmentId));
+    }
+
+    /**
+     * @param type         - side the attachment belongs to
+     * @param attachmentId - attachment id
+     * @return link of the attachment, null if it isn't linked
+     */
+    public AttachmentLink getAttachmentByTypeAndId(AttachmentType type, Long attachmentId) {
+        AttachmentLink[] links = ao.find(AttachmentLink.class, Query.select().where(type.attachmentColumn + " = ?", attachmentId));
+        return links.length > 0 ? links[0] : null;
+    }
+
+    /**
+     * @param type    - side the issue belongs to
+     * @param issueId - issue id
+     * @return attachment id of the issue to linked attachment id of the other side
+     */
+    public Map<Long, Long> getLinkedAttachments(AttachmentType type, Long issueId) {
+        AttachmentLink[] links = ao.find(AttachmentLink.class, Query.select().where(type.issueColumn + " = ?", issueId));
+        Map<Long, Long> linkedAttachments = new HashMap<>(links.length * 2);
+        for (AttachmentLink link : links) {
+            if (AttachmentType.PORTAL.equals(type)) {
+                linkedAttachments.put(link.getPortalAttachmentId(), link.getInternalAttachmentId());
+            } else {
+                linkedAttachments.put(link.getInternalAttachmentId(), link.getPortalAttachmentId());
+            }
+        }
+        return linkedAttachments;
+    }
+
+    public void removeByAttachment(AttachmentType type, Long attachmentId) {
+        ao.deleteWithSQL(AttachmentLink.class, type.attachmentColumn + " = ?", attachmentId);
+    }
+
+    /**
+     * Removes all attachment links of the issue, whichever side it is
+     */
+    public void remove(Long issueId) {
+        ao.deleteWithSQL(AttachmentLink.class, PORTAL_ISSUE_ID + " = ? OR " + INTERNAL_ISSUE_ID + " = ?", issueId, issueId);
+    }
+
+    public enum AttachmentType {
+        PORTAL(PORTAL_ISSUE_ID, PORTAL_ATTACHMENT_ID),
+        INTERNAL(INTERNAL_ISSUE_ID, INTERNAL_ATTACHMENT_ID);
+
+        private final String issueColumn;
+        private final String attachmentColumn;
+
+        AttachmentType(String issueColumn, String attachmentColumn) {
+            this.issueColumn = issueColumn;
+            this.attachmentColumn = attachmentColumn;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package com.ai.jira.portal.ao.issue;
+
+import com.atlassian.activeobjects.external.ActiveObjects;
+import com.atlassian.sal.api.lifecycle.LifecycleAware;
+import net.java.ao.EntityStreamCallback;
+import net.java.ao.Query;
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory index of {@link CustomIssueLink} in both directions (portal issue to internal issue and back).
+ * <p>
+ * The index is loaded once on plugin start, until it's loaded lookups go to {@link CustomIssueLinkManager}.
+ * All link changes must go through {@link #save(Long, Long)} and {@link #remove(Long, boolean)} to keep it consistent. Loading doesn't block them, links changed meanwhile are applied again on top of the loaded
+ * snapshot before it replaces the index.
+ */
+public class IssueLinkIndex implements LifecycleAware {
+    private static final Logger LOG = Logger.getLogger(IssueLinkIndex.class);
+    // marks removals in changesDuringLoad, issue ids are positive
+    private static final long REMOVED_PORTAL = -1;
+    private static final long REMOVED_INTERNAL = -2;
+
+    private final CustomIssueLinkManager customIssueLinkManager;
+    private final ActiveObjects ao;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicBoolean loadStarted = new AtomicBoolean();
+    // guarded by lock
+    private LongLongHashMap targetBySource = new LongLongHashMap();
+    private LongLongHashMap sourceByTarget = new LongLongHashMap();
+    // link changes made while the index is loading, {source, target} or {issue id, REMOVED_*}
+    private List<long[]> changesDuringLoad;
+    private volatile boolean loaded;
+
+    public IssueLinkIndex(CustomIssueLinkManager customIssueLinkManager, ActiveObjects ao) {
+        this.customIssueLinkManager = customIssueLinkManager;
+        this.ao = ao;
+    }
+
+    @Override
+    public void onStart() {
+        startLoading();
+    }
+
+    /**
+     * @param source - portal issue id
+     * @return linked internal issue id, null if there is no link
+     */
+    public Long getTarget(Long source) {
+        if (!loaded) {
+            startLoading();
+            CustomIssueLink link = customIssueLinkManager.getLinkBySource(source);
+            return null != link ? link.getTarget() : null;
+        }
+        lock.readLock().lock();
+        try {
+            return toId(targetBySource.get(source));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param target - internal issue id
+     * @return linked portal issue id, null if there is no link
+     */
+    public Long getSource(Long target) {
+        if (!loaded) {
+            startLoading();
+            CustomIssueLink link = customIssueLinkManager.getLinkByTarget(target);
+            return null != link ? link.getSource() : null;
+        }
+        lock.readLock().lock();
+        try {
+            return toId(sourceByTarget.get(target));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return true if the issue is either side of a link
+     */
+    public boolean isLinked(Long issueId) {
+        return null != getTarget(issueId) || null != getSource(issueId);
+    }
+
+    public void save(Long source, Long target) {
+        customIssueLinkManager.save(source, target);
+        lock.writeLock().lock();
+        try {
+            put(targetBySource, sourceByTarget, source, target);
+            if (null != changesDuringLoad) {
+                changesDuringLoad.add(new long[]{source, target});
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param issueId  - issue which link is removed
+     * @param isPortal - true if issue is the portal (source) side of the link
+     */
+    public void remove(Long issueId, boolean isPortal) {
+        customIssueLinkManager.remove(issueId, isPortal);
+        lock.writeLock().lock();
+        try {
+            remove(targetBySource, sourceByTarget, issueId, isPortal);
+            if (null != changesDuringLoad) {
+                changesDuringLoad.add(new long[]{issueId, isPortal ? REMOVED_PORTAL : REMOVED_INTERNAL});
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return targetBySource.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void startLoading() {
+        if (!loadStarted.compareAndSet(false, true)) {
+            return;
+        }
+        Thread loader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                load();
+            }
+        }, "portal-issue-link-index-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    private void load() {
+        long start = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            changesDuringLoad = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        // streamed without the lock, so writers aren't blocked, readers use the database until the swap
+        final LongLongHashMap loadedTargetBySource = new LongLongHashMap();
+        final LongLongHashMap loadedSourceByTarget = new LongLongHashMap();
+        try {
+            ao.stream(CustomIssueLink.class, Query.select("ID, SOURCE, TARGET"), new EntityStreamCallback<CustomIssueLink, Integer>() {
+                @Override
+                public void onRowRead(CustomIssueLink link) {
+                    put(loadedTargetBySource, loadedSourceByTarget, link.getSource(), link.getTarget());
+                }
+            });
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                changesDuringLoad = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            loadStarted.set(false);
+            LOG.error("Issue link index can't be loaded, links are read from database", e);
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            // the stream may have missed links changed while it ran, they are applied again on top of it
+            for (long[] change : changesDuringLoad) {
+                if (REMOVED_PORTAL == change[1] || REMOVED_INTERNAL == change[1]) {
+                    remove(loadedTargetBySource, loadedSourceByTarget, change[0], REMOVED_PORTAL == change[1]);
+                } else {
+                    put(loadedTargetBySource, loadedSourceByTarget, change[0], change[1]);
+                }
+            }
+            changesDuringLoad = null;
+            targetBySource = loadedTargetBySource;
+            sourceByTarget = loadedSourceByTarget;
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        LOG.info("Issue link index loaded " + loadedTargetBySource.size() + " links in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Links the pair, previous links of either issue are dropped in both directions
+     */
+    private static void put(LongLongHashMap targetBySource, LongLongHashMap sourceByTarget, long source, long target) {
+        long previousTarget = targetBySource.put(source, target);
+        if (previousTarget != LongLongHashMap.NO_VALUE && previousTarget != target) {
+            sourceByTarget.remove(previousTarget);
+        }
+        long previousSource = sourceByTarget.put(target, source);
+        if (previousSource != LongLongHashMap.NO_VALUE && previousSource != source) {
+            targetBySource.remove(previousSource);
+        }
+    }
+
+    private static void remove(LongLongHashMap targetBySource, LongLongHashMap sourceByTarget, long issueId, boolean isPortal) {
+        if (isPortal) {
+            long target = targetBySource.remove(issueId);
+            if (target != LongLongHashMap.NO_VALUE) {
+                sourceByTarget.remove(target);
+            }
+        } else {
+            long source = sourceByTarget.remove(issueId);
+            if (source != LongLongHashMap.NO_VALUE) {
+                targetBySource.remove(source);
+            }
+        }
+    }
+
+    private static Long toId(long value) {
+        return value == LongLongHashMap.NO_VALUE ? null : value;
+    }
+}
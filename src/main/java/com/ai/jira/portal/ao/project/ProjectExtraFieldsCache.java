@@ -0,0 +1,124 @@
+package com.ai.jira.portal.ao.project;
+
+import com.atlassian.event.api.EventListener;
+import com.atlassian.event.api.EventPublisher;
+import com.atlassian.jira.event.ClearCacheEvent;
+import com.atlassian.jira.event.ProjectDeletedEvent;
+import com.atlassian.jira.event.ProjectUpdatedEvent;
+import com.atlassian.jira.project.Project;
+import com.atlassian.jira.project.ProjectManager;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read-through cache of {@link ProjectExtraFields} and of the related project they point to.
+ * <p>
+ * Entries are dropped on {@link ProjectExtraFieldsChangedEvent} and project update/delete events.
+ * As a safety net entries also expire after {@code portal.projectExtra.ttlSeconds} (default: 300).
+ */
+public class ProjectExtraFieldsCache implements InitializingBean, DisposableBean {
+    private static final long TTL_MILLIS = TimeUnit.SECONDS.toMillis(Long.getLong("portal.projectExtra.ttlSeconds", 300));
+
+    private final ConcurrentMap<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final ProjectExtraFieldsService extraFieldsService;
+    private final ProjectManager projectManager;
+    private final EventPublisher eventPublisher;
+
+    public ProjectExtraFieldsCache(ProjectExtraFieldsService extraFieldsService, ProjectManager projectManager, EventPublisher eventPublisher) {
+        this.extraFieldsService = extraFieldsService;
+        this.projectManager = projectManager;
+        this.eventPublisher = eventPublisher;
+    }
+
+    public ProjectExtraFields getProjectExtra(Long projectId) {
+        Entry entry = getEntry(projectId);
+        return null != entry ? entry.extraFields : null;
+    }
+
+    /**
+     * @param projectId - project which settings point to the related one
+     * @return related project, null if project isn't linked or related project doesn't exist
+     */
+    public Project getRelatedProject(Long projectId) {
+        Entry entry = getEntry(projectId);
+        return null != entry ? entry.relatedProject : null;
+    }
+
+    public void invalidate(Long projectId) {
+        if (null == projectId) {
+            invalidateAll();
+        } else {
+            entries.remove(projectId);
+        }
+    }
+
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    private Entry getEntry(Long projectId) {
+        Entry entry = entries.get(projectId);
+        if (null == entry || entry.isExpired()) {
+            ProjectExtraFields extraFields = extraFieldsService.getProjectExtra(projectId);
+            if (null == extraFields) {
+                entries.remove(projectId);
+                return null;
+            }
+            Long relatedProjectId = extraFields.getRelatedProjectId();
+            Project relatedProject = null != relatedProjectId ? projectManager.getProjectObj(relatedProjectId) : null;
+            entry = new Entry(extraFields, relatedProject);
+            entries.put(projectId, entry);
+        }
+        return entry;
+    }
+
+    @EventListener
+    public void onProjectExtraFieldsChanged(ProjectExtraFieldsChangedEvent event) {
+        invalidate(event.getProjectId());
+    }
+
+    @EventListener
+    public void onProjectUpdated(ProjectUpdatedEvent event) {
+        // the project may be referenced as a related one by other projects
+        invalidateAll();
+    }
+
+    @EventListener
+    public void onProjectDeleted(ProjectDeletedEvent event) {
+        invalidateAll();
+    }
+
+    @EventListener
+    public void onClearCache(ClearCacheEvent event) {
+        invalidateAll();
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        eventPublisher.register(this);
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        eventPublisher.unregister(this);
+    }
+
+    private static final class Entry {
+        private final ProjectExtraFields extraFields;
+        private final Project relatedProject;
+        private final long expiresAt = System.currentTimeMillis() + TTL_MILLIS;
+
+        Entry(ProjectExtraFields extraFields, Project relatedProject) {
+            this.extraFields = extraFields;
+            this.relatedProject = relatedProject;
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() > expiresAt;
+        }
+    }
+}
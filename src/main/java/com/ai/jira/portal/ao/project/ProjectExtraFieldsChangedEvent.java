@@ -0,0 +1,19 @@
+package com.ai.jira.portal.ao.project;
+
+/**
+ * Published when portal settings ({@link ProjectExtraFields}) of a project are saved or removed.
+ */
+public class ProjectExtraFieldsChangedEvent {
+    private final Long projectId;
+
+    public ProjectExtraFieldsChangedEvent(Long projectId) {
+        this.projectId = projectId;
+    }
+
+    /**
+     * @return id of changed project, null when settings of several projects have changed
+     */
+    public Long getProjectId() {
+        return projectId;
+    }
+}
@@ -0,0 +1,108 @@
+package com.ai.jira.portal.ao.version;
+
+import com.atlassian.event.api.EventListener;
+import com.atlassian.event.api.EventPublisher;
+import com.atlassian.jira.event.ClearCacheEvent;
+import com.atlassian.jira.event.project.VersionCreateEvent;
+import com.atlassian.jira.event.project.VersionDeleteEvent;
+import com.atlassian.jira.event.project.VersionMergeEvent;
+import com.atlassian.jira.project.version.Version;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Caching front of {@link VersionLinkManager#restoreVersion(Long, boolean)}.
+ * <p>
+ * Resolved version pairs are kept until a version is created, merged or deleted. Versions without
+ * a pair are not cached, their link can be created at any moment.
+ */
+public class VersionMappingCache implements InitializingBean, DisposableBean {
+    private static final Logger LOG = Logger.getLogger(VersionMappingCache.class);
+
+    private final ConcurrentMap<Long, Version> portalVersions = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, Version> internalVersions = new ConcurrentHashMap<>();
+    private final VersionLinkManager versionLinkManager;
+    private final EventPublisher eventPublisher;
+
+    public VersionMappingCache(VersionLinkManager versionLinkManager, EventPublisher eventPublisher) {
+        this.versionLinkManager = versionLinkManager;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * @return version linked with given one, null if there is no link
+     */
+    public Version restoreVersion(Long versionId, boolean isPortal) {
+        ConcurrentMap<Long, Version> versions = isPortal ? portalVersions : internalVersions;
+        Version restoredVersion = versions.get(versionId);
+        if (null == restoredVersion) {
+            restoredVersion = versionLinkManager.restoreVersion(versionId, isPortal);
+            if (null != restoredVersion) {
+                versions.putIfAbsent(versionId, restoredVersion);
+            }
+        }
+        return restoredVersion;
+    }
+
+    /**
+     * Resolves linked versions of the whole collection, versions without a link are logged and skipped
+     *
+     * @param versions - versions to convert
+     * @param isPortal - direction of conversion, same as for {@link #restoreVersion(Long, boolean)}
+     * @return linked versions in the same order
+     */
+    public List<Version> restoreVersions(Collection<Version> versions, boolean isPortal) {
+        List<Version> restoredVersions = new ArrayList<>(versions.size());
+        for (Version versionToConvert : versions) {
+            Version restoredVersion = restoreVersion(versionToConvert.getId(), isPortal);
+            if (restoredVersion != null) {
+                restoredVersions.add(restoredVersion);
+            } else {
+                LOG.error("Version with id '" + versionToConvert.getId() + "' can't be restored..");
+            }
+        }
+        return restoredVersions;
+    }
+
+    public void invalidate() {
+        portalVersions.clear();
+        internalVersions.clear();
+    }
+
+    @EventListener
+    public void onVersionCreated(VersionCreateEvent event) {
+        invalidate();
+    }
+
+    @EventListener
+    public void onVersionMerged(VersionMergeEvent event) {
+        invalidate();
+    }
+
+    @EventListener
+    public void onVersionDeleted(VersionDeleteEvent event) {
+        invalidate();
+    }
+
+    @EventListener
+    public void onClearCache(ClearCacheEvent event) {
+        invalidate();
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        eventPublisher.register(this);
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        eventPublisher.unregister(this);
+    }
+}
@@ -0,0 +1,66 @@
+package com.ai.jira.portal.issue;
+
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Prepares a replica of an attachment file which Jira can move into the mirror issue.
+ * <p>
+ * The replica is created next to the original, so it's on the same file system and the move is a rename.
+ * When possible the replica is a hard link, mirror and source then share the same content on disk.
+ * Otherwise the content is copied channel to channel. Hard links can be switched off with
+ * {@code -Dportal.attachments.hardLinks=false}.
+ */
+class AttachmentReplicator {
+    private static final Logger LOG = Logger.getLogger(AttachmentReplicator.class);
+    private static final boolean HARD_LINKS = Boolean.parseBoolean(System.getProperty("portal.attachments.hardLinks", "true"));
+    private static final String REPLICA_PREFIX = ".portal-replica-";
+
+    private AttachmentReplicator() {
+    }
+
+    /**
+     * @param source - attachment file
+     * @return replica which the caller must hand over to Jira or delete
+     * @throws IOException if replica can't be created
+     */
+    static File replicate(File source) throws IOException {
+        Path sourcePath = source.toPath();
+        Path replica = sourcePath.resolveSibling(REPLICA_PREFIX + UUID.randomUUID());
+        if (HARD_LINKS) {
+            try {
+                return Files.createLink(replica, sourcePath).toFile();
+            } catch (UnsupportedOperationException | IOException e) {
+                LOG.debug("Hard link to '" + source.getAbsolutePath() + "' can't be created, content is copied", e);
+            }
+        }
+        try {
+            transfer(sourcePath, replica);
+        } catch (IOException e) {
+            Files.deleteIfExists(replica);
+            throw e;
+        }
+        return replica.toFile();
+    }
+
+    private static void transfer(Path source, Path target) throws IOException {
+        try (FileChannel in = FileChannel.open(source, READ);
+             FileChannel out = FileChannel.open(target, CREATE_NEW, WRITE)) {
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+        }
+    }
+}
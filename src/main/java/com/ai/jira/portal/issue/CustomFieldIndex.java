@@ -0,0 +1,153 @@
+package com.ai.jira.portal.issue;
+
+import com.atlassian.event.api.EventListener;
+import com.atlassian.event.api.EventPublisher;
+import com.atlassian.jira.event.ClearCacheEvent;
+import com.atlassian.jira.event.issue.field.CustomFieldCreatedEvent;
+import com.atlassian.jira.event.issue.field.CustomFieldDeletedEvent;
+import com.atlassian.jira.event.issue.field.CustomFieldUpdatedEvent;
+import com.atlassian.jira.issue.CustomFieldManager;
+import com.atlassian.jira.issue.Issue;
+import com.atlassian.jira.issue.fields.CustomField;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Name to custom field index per project and issue type.
+ * <p>
+ * Index of a project / issue type pair is built on first lookup and dropped whenever
+ * custom field configuration changes. Adding a field to a context or a field configuration scheme fires none
+ * of these events, so entries also expire after {@code portal.customFields.ttlSeconds} (default: 300).
+ * <p>
+ * Every invalidation starts a new generation, an entry loaded in an older one is never used, so a lookup racing
+ * an invalidation doesn't leave the index it loaded before the change cached.
+ */
+public class CustomFieldIndex implements InitializingBean, DisposableBean {
+    static final long TTL_MILLIS = TimeUnit.SECONDS.toMillis(Long.getLong("portal.customFields.ttlSeconds", 300));
+
+    private final ConcurrentMap<Context, Entry> fieldsByContext = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final CustomFieldManager customFieldManager;
+    private final EventPublisher eventPublisher;
+
+    public CustomFieldIndex(CustomFieldManager customFieldManager, EventPublisher eventPublisher) {
+        this.customFieldManager = customFieldManager;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Resolves custom field definition, null if field with this name can't be resolved
+     *
+     * @param issue - which has expected field definition
+     * @param name  - name key of field to resolve
+     * @return CustomField
+     */
+    public CustomField getCustomFieldByName(Issue issue, String name) {
+        return getFields(issue.getProjectObject().getId(), issue.getIssueTypeObject().getId()).get(name);
+    }
+
+    private Map<String, CustomField> getFields(Long projectId, String issueTypeId) {
+        Context context = new Context(projectId, issueTypeId);
+        long current = generation.get();
+        Entry entry = fieldsByContext.get(context);
+        if (null == entry || entry.isExpired() || entry.generation != current) {
+            entry = new Entry(load(projectId, issueTypeId), current);
+            fieldsByContext.put(context, entry);
+        }
+        return entry.fields;
+    }
+
+    private Map<String, CustomField> load(Long projectId, String issueTypeId) {
+        List<CustomField> customFields = customFieldManager.getCustomFieldObjects(projectId, issueTypeId);
+        Map<String, CustomField> fields = new HashMap<>(customFields.size() * 2);
+        for (CustomField customField : customFields) {
+            // first definition wins, the same way the list was scanned before
+            if (!fields.containsKey(customField.getNameKey())) {
+                fields.put(customField.getNameKey(), customField);
+            }
+        }
+        return Collections.unmodifiableMap(fields);
+    }
+
+    public void invalidate() {
+        generation.incrementAndGet();
+        fieldsByContext.clear();
+    }
+
+    @EventListener
+    public void onCustomFieldCreated(CustomFieldCreatedEvent event) {
+        invalidate();
+    }
+
+    @EventListener
+    public void onCustomFieldUpdated(CustomFieldUpdatedEvent event) {
+        invalidate();
+    }
+
+    @EventListener
+    public void onCustomFieldDeleted(CustomFieldDeletedEvent event) {
+        invalidate();
+    }
+
+    @EventListener
+    public void onClearCache(ClearCacheEvent event) {
+        invalidate();
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        eventPublisher.register(this);
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        eventPublisher.unregister(this);
+    }
+
+    private static final class Entry {
+        private final Map<String, CustomField> fields;
+        private final long generation;
+        private final long expiresAt = System.currentTimeMillis() + TTL_MILLIS;
+
+        Entry(Map<String, CustomField> fields, long generation) {
+            this.fields = fields;
+            this.generation = generation;
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() > expiresAt;
+        }
+    }
+
+    private static final class Context {
+        private final Long projectId;
+        private final String issueTypeId;
+
+        Context(Long projectId, String issueTypeId) {
+            this.projectId = projectId;
+            this.issueTypeId = issueTypeId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Context)) return false;
+            Context context = (Context) o;
+            return projectId.equals(context.projectId) && issueTypeId.equals(context.issueTypeId);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * projectId.hashCode() + issueTypeId.hashCode();
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.ai.jira.portal.issue;
+
+import com.atlassian.event.api.EventListener;
+import com.atlassian.event.api.EventPublisher;
+import com.atlassian.jira.event.ClearCacheEvent;
+import com.atlassian.jira.event.issue.field.CustomFieldCreatedEvent;
+import com.atlassian.jira.event.issue.field.CustomFieldDeletedEvent;
+import com.atlassian.jira.event.issue.field.CustomFieldUpdatedEvent;
+import com.atlassian.jira.issue.CustomFieldManager;
+import com.atlassian.jira.issue.Issue;
+import com.atlassian.jira.issue.customfields.impl.CalculatedCFType;
+import com.atlassian.jira.issue.fields.CustomField;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Custom fields copied from an issue to its mirror, compiled per source and destination project / issue type.
+ * <p>
+ * A plan holds only fields which exist in both contexts and hold a stored value: calculated and watchers
+ * fields are left out. Plans are dropped whenever custom field configuration changes, and expire after
+ * the same TTL as {@link CustomFieldIndex} entries, since adding a field to a context or scheme isn't announced.
+ */
+public class CustomFieldMappingPlans implements InitializingBean, DisposableBean {
+    private final ConcurrentMap<Mapping, Plan> plans = new ConcurrentHashMap<>();
+    private final CustomFieldManager customFieldManager;
+    private final EventPublisher eventPublisher;
+
+    public CustomFieldMappingPlans(CustomFieldManager customFieldManager, EventPublisher eventPublisher) {
+        this.customFieldManager = customFieldManager;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * @return fields which values are copied from source issue to destination issue
+     */
+    public List<CustomField> getPlan(Issue sourceIssue, Issue destinationIssue) {
+        Mapping mapping = new Mapping(sourceIssue.getProjectObject().getId(), sourceIssue.getIssueTypeObject().getId(),
+                destinationIssue.getProjectObject().getId(), destinationIssue.getIssueTypeObject().getId());
+        Plan plan = plans.get(mapping);
+        if (null == plan || plan.isExpired()) {
+            plan = new Plan(compile(mapping));
+            plans.put(mapping, plan);
+        }
+        return plan.fields;
+    }
+
+    private List<CustomField> compile(Mapping mapping) {
+        List<CustomField> sourceFields = customFieldManager.getCustomFieldObjects(mapping.sourceProjectId, mapping.sourceIssueTypeId);
+        Set<String> destinationFieldIds = new HashSet<>();
+        for (CustomField customField : customFieldManager.getCustomFieldObjects(mapping.destinationProjectId, mapping.destinationIssueTypeId)) {
+            destinationFieldIds.add(customField.getId());
+        }
+        List<CustomField> plan = new ArrayList<>(sourceFields.size());
+        for (CustomField customField : sourceFields) {
+            // Do not clone calculated fields
+            if (customField.getCustomFieldType() instanceof CalculatedCFType) continue;
+            //Do not clone watchers fields
+            if (customField.getName().equalsIgnoreCase("watchers") || customField.getNameKey().equalsIgnoreCase("watchers")) continue;
+            // [CWJIRAUTIL-16] Target/Destination issue does not have a value for this field
+            if (!destinationFieldIds.contains(customField.getId())) continue;
+            plan.add(customField);
+        }
+        return Collections.unmodifiableList(plan);
+    }
+
+    public void invalidate() {
+        plans.clear();
+    }
+
+    @EventListener
+    public void onCustomFieldCreated(CustomFieldCreatedEvent event) {
+        invalidate();
+    }
+
+    @EventListener
+    public void onCustomFieldUpdated(CustomFieldUpdatedEvent event) {
+        invalidate();
+    }
+
+    @EventListener
+    public void onCustomFieldDeleted(CustomFieldDeletedEvent event) {
+        invalidate();
+    }
+
+    @EventListener
+    public void onClearCache(ClearCacheEvent event) {
+        invalidate();
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        eventPublisher.register(this);
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        eventPublisher.unregister(this);
+    }
+
+    private static final class Plan {
+        private final List<CustomField> fields;
+        private final long expiresAt = System.currentTimeMillis() + CustomFieldIndex.TTL_MILLIS;
+
+        Plan(List<CustomField> fields) {
+            this.fields = fields;
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() > expiresAt;
+        }
+    }
+
+    private static final class Mapping {
+        private final Long sourceProjectId;
+        private final String sourceIssueTypeId;
+        private final Long destinationProjectId;
+        private final String destinationIssueTypeId;
+
+        Mapping(Long sourceProjectId, String sourceIssueTypeId, Long destinationProjectId, String destinationIssueTypeId) {
+            this.sourceProjectId = sourceProjectId;
+            this.sourceIssueTypeId = sourceIssueTypeId;
+            this.destinationProjectId = destinationProjectId;
+            this.destinationIssueTypeId = destinationIssueTypeId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Mapping)) return false;
+            Mapping mapping = (Mapping) o;
+            return sourceProjectId.equals(mapping.sourceProjectId) && sourceIssueTypeId.equals(mapping.sourceIssueTypeId)
+                    && destinationProjectId.equals(mapping.destinationProjectId) && destinationIssueTypeId.equals(mapping.destinationIssueTypeId);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = sourceProjectId.hashCode();
+            result = 31 * result + sourceIssueTypeId.hashCode();
+            result = 31 * result + destinationProjectId.hashCode();
+            return 31 * result + destinationIssueTypeId.hashCode();
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package com.ai.jira.portal.issue;
+
+import com.ai.jira.portal.ao.issue.IssueLinkIndex;
+import com.ai.jira.portal.ao.project.ProjectExtraFields;
+import com.ai.jira.portal.ao.project.ProjectExtraFieldsCache;
+import com.ai.jira.portal.metrics.Counter;
+import com.ai.jira.portal.metrics.SyncMetrics;
+import com.ai.jira.portal.metrics.Timer;
+import com.atlassian.jira.bc.issue.search.SearchService;
+import com.atlassian.jira.component.ComponentAccessor;
+import com.atlassian.jira.event.type.EventType;
+import com.atlassian.jira.issue.Issue;
+import com.atlassian.jira.issue.IssueManager;
+import com.atlassian.jira.issue.MutableIssue;
+import com.atlassian.jira.issue.fields.CustomField;
+import com.atlassian.jira.issue.search.SearchException;
+import com.atlassian.jira.jql.builder.JqlQueryBuilder;
+import com.atlassian.jira.project.Project;
+import com.atlassian.jira.project.ProjectManager;
+import com.atlassian.jira.user.ApplicationUser;
+import com.atlassian.jira.util.thread.JiraThreadLocalUtil;
+import com.atlassian.jira.web.bean.PagerFilter;
+import com.atlassian.sal.api.lifecycle.LifecycleAware;
+import com.atlassian.sal.api.scheduling.PluginScheduler;
+import org.apache.log4j.Logger;
+import org.ofbiz.core.entity.GenericEntityException;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.atlassian.jira.util.ImportUtils.isIndexIssues;
+import static com.atlassian.jira.util.ImportUtils.setIndexIssues;
+
+/**
+ * Finds linked issues which drifted apart, e.g. because an event was lost or a sync failed, and syncs them again.
+ * <p>
+ * Links of a portal project are split into buckets by portal issue id. A run checks only buckets which were out of
+ * sync in the previous run or have an issue updated since then, every {@code portal.reconcile.fullAuditDays}
+ * (default: 7) and after plugin start all buckets are checked. Every pair of a checked bucket is compared by
+ * {@link IssueFingerprint}, pairs with different fingerprints are queued in {@link IssueSyncExecutor} under the portal
+ * issue id, so they are synced after events of the pair already queued. The queued task loads the pair again and syncs
+ * it from the issue updated last only if it still differs.
+ * <p>
+ * Runs every {@code portal.reconcile.intervalHours} (default: 24) starting at {@code portal.reconcile.startHour}
+ * (default: 2). Projects are reconciled on {@code portal.reconcile.threads} (default: 2) threads, each checking at most
+ * {@code portal.reconcile.issuesPerSecond} (default: 200) links per second.
+ */
+public class DriftReconciler implements LifecycleAware, DisposableBean {
+    static final String RECONCILER_KEY = "reconciler";
+    private static final Logger LOG = Logger.getLogger(DriftReconciler.class);
+    private static final String JOB_KEY = DriftReconciler.class.getName() + ":job";
+    private static final int BUCKETS = Integer.getInteger("portal.reconcile.buckets", 1024);
+    private static final int THREADS = Integer.getInteger("portal.reconcile.threads", 2);
+    private static final int ISSUES_PER_SECOND = Integer.getInteger("portal.reconcile.issuesPerSecond", 200);
+    private static final long INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(Long.getLong("portal.reconcile.intervalHours", 24));
+    private static final int START_HOUR = Integer.getInteger("portal.reconcile.startHour", 2);
+    private static final long FULL_AUDIT_MILLIS = TimeUnit.DAYS.toMillis(Long.getLong("portal.reconcile.fullAuditDays", 7));
+    private static final Timer PROJECT_TIMER = SyncMetrics.timer("reconcile.project");
+    private static final Counter CHECKED = SyncMetrics.counter("reconcile.checked");
+    private static final Counter DIVERGED = SyncMetrics.counter("reconcile.diverged");
+    private static final Counter RESYNCED = SyncMetrics.counter("reconcile.resynced");
+
+    private final ConcurrentMap<Long, ProjectState> states = new ConcurrentHashMap<>();
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final PluginScheduler pluginScheduler;
+    private final IssueSynchronizer synchronizer;
+    private final IssueSyncExecutor syncExecutor;
+    private final IssueLinkIndex issueLinkIndex;
+    private final ProjectExtraFieldsCache projectExtraCache;
+    private final ProjectManager projectManager;
+    private final IssueManager issueManager;
+    private final SearchService searchService;
+    private final CustomFieldMappingPlans fieldMappingPlans;
+    private volatile boolean stopped;
+
+    public DriftReconciler(PluginScheduler pluginScheduler, IssueSynchronizer synchronizer, IssueSyncExecutor syncExecutor, IssueLinkIndex issueLinkIndex, ProjectExtraFieldsCache projectExtraCache, ProjectManager projectManager, IssueManager issueManager, SearchService searchService, CustomFieldMappingPlans fieldMappingPlans) {
+        this.pluginScheduler = pluginScheduler;
+        this.synchronizer = synchronizer;
+        this.syncExecutor = syncExecutor;
+        this.issueLinkIndex = issueLinkIndex;
+        this.projectExtraCache = projectExtraCache;
+        this.projectManager = projectManager;
+        this.issueManager = issueManager;
+        this.searchService = searchService;
+        this.fieldMappingPlans = fieldMappingPlans;
+    }
+
+    @Override
+    public void onStart() {
+        pluginScheduler.scheduleJob(JOB_KEY, DriftReconcilerJob.class, Collections.<String, Object>singletonMap(RECONCILER_KEY, this), nextStart(), INTERVAL_MILLIS);
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        stopped = true;
+        try {
+            pluginScheduler.unscheduleJob(JOB_KEY);
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Drift reconciliation job wasn't scheduled");
+        }
+    }
+
+    /**
+     * Reconciles all portal projects in the calling thread, does nothing if reconciliation is already running
+     */
+    public void reconcile() {
+        if (!running.compareAndSet(false, true)) {
+            LOG.warn("Drift reconciliation is still running, run skipped");
+            return;
+        }
+        ExecutorService workers = Executors.newFixedThreadPool(THREADS, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "portal-reconcile-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            for (final Project project : projectManager.getProjectObjects()) {
+                ProjectExtraFields projectExtra = projectExtraCache.getProjectExtra(project.getId());
+                final Project relatedProject = projectExtraCache.getRelatedProject(project.getId());
+                if (null == projectExtra || !projectExtra.isPortal() || null == relatedProject) {
+                    continue;
+                }
+                workers.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        reconcileInJiraContext(project, relatedProject);
+                    }
+                });
+            }
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            workers.shutdownNow();
+            running.set(false);
+        }
+    }
+
+    private void reconcileInJiraContext(Project project, Project relatedProject) {
+        if (stopped) {
+            return;
+        }
+        JiraThreadLocalUtil threadLocalUtil = ComponentAccessor.getComponent(JiraThreadLocalUtil.class);
+        threadLocalUtil.preCall();
+        boolean oldIndexIssuesValue = isIndexIssues();
+        setIndexIssues(true);
+        long start = System.nanoTime();
+        try {
+            ApplicationUser user = ComponentAccessor.getUserManager().getUserByKey(project.getLeadUserKey());
+            if (null == user) {
+                LOG.warn("Project " + project.getKey() + " has no lead, drift reconciliation skipped");
+                return;
+            }
+            ComponentAccessor.getJiraAuthenticationContext().setLoggedInUser(user);
+            reconcile(project, relatedProject, user);
+        } catch (RuntimeException e) {
+            LOG.error("Drift reconciliation of project " + project.getKey() + " failed", e);
+        } finally {
+            PROJECT_TIMER.recordSince(start);
+            setIndexIssues(oldIndexIssuesValue);
+            threadLocalUtil.postCall(LOG, null);
+        }
+    }
+
+    private void reconcile(Project project, Project relatedProject, ApplicationUser user) {
+        long runStarted = System.currentTimeMillis();
+        ProjectState state = states.get(project.getId());
+        if (null == state) {
+            state = new ProjectState();
+            states.put(project.getId(), state);
+        }
+        boolean full = 0 == state.lastFullRun || runStarted - state.lastFullRun >= FULL_AUDIT_MILLIS;
+        BitSet dirty = new BitSet(BUCKETS);
+        if (full) {
+            dirty.set(0, BUCKETS);
+        } else {
+            dirty.or(state.unequal);
+            try {
+                markUpdated(dirty, project, user, state.lastRun, true);
+                markUpdated(dirty, relatedProject, user, state.lastRun, false);
+            } catch (SearchException e) {
+                LOG.error("Issues updated in " + project.getKey() + " can't be searched, all buckets are checked", e);
+                dirty.set(0, BUCKETS);
+            }
+        }
+        if (dirty.isEmpty()) {
+            state.lastRun = runStarted;
+            return;
+        }
+
+        Collection<Long> issueIds;
+        try {
+            issueIds = issueManager.getIssueIdsForProject(project.getId());
+        } catch (GenericEntityException e) {
+            LOG.error("Issues of project " + project.getKey() + " can't be read", e);
+            return;
+        }
+        BitSet unequal = new BitSet(BUCKETS);
+        // portal issue id, mirror id
+        List<long[]> diverged = new ArrayList<>();
+        Throttle throttle = new Throttle(ISSUES_PER_SECOND);
+        for (Long issueId : issueIds) {
+            int bucket = bucketOf(issueId);
+            if (stopped) {
+                return;
+            }
+            if (!dirty.get(bucket)) {
+                continue;
+            }
+            Long mirrorId = issueLinkIndex.getTarget(issueId);
+            if (null == mirrorId) {
+                continue;
+            }
+            MutableIssue issue = issueManager.getIssueObject(issueId);
+            MutableIssue mirror = issueManager.getIssueObject(mirrorId);
+            if (null == issue || null == mirror) {
+                continue;
+            }
+            if (isDiverged(issue, mirror)) {
+                diverged.add(new long[]{issueId, mirrorId});
+                unequal.set(bucket);
+            }
+            CHECKED.increment();
+            throttle.acquire();
+        }
+
+        for (long[] pair : diverged) {
+            if (stopped) {
+                return;
+            }
+            submitResync(user, pair[0], pair[1]);
+        }
+        DIVERGED.add(diverged.size());
+        // buckets synced in this run are checked again in the next one
+        state.unequal = unequal;
+        state.lastRun = runStarted;
+        if (full) {
+            state.lastFullRun = runStarted;
+        }
+        LOG.info("Drift reconciliation of project " + project.getKey() + ": " + dirty.cardinality() + " of " + BUCKETS
+                + " bucket(s) checked, " + diverged.size() + " issue(s) queued to sync again");
+    }
+
+    private void markUpdated(BitSet dirty, Project project, ApplicationUser user, long since, boolean isPortal) throws SearchException {
+        List<Issue> updated = searchService.search(user.getDirectoryUser(),
+                JqlQueryBuilder.newBuilder().where().project(project.getId()).and().updatedAfter(new Date(since)).buildQuery(),
+                PagerFilter.getUnlimitedFilter()).getIssues();
+        for (Issue issue : updated) {
+            Long portalIssueId = isPortal ? issue.getId() : issueLinkIndex.getSource(issue.getId());
+            if (null != portalIssueId) {
+                dirty.set(bucketOf(portalIssueId));
+            }
+        }
+    }
+
+    private boolean isDiverged(MutableIssue issue, MutableIssue mirror) {
+        List<CustomField> customFields = fieldMappingPlans.getPlan(issue, mirror);
+        return IssueFingerprint.of(issue, customFields) != IssueFingerprint.of(mirror, customFields);
+    }
+
+    private void submitResync(final ApplicationUser user, final long issueId, final long mirrorId) {
+        syncExecutor.submit(issueId, new Runnable() {
+            @Override
+            public void run() {
+                resync(user, issueId, mirrorId);
+            }
+        });
+    }
+
+    /**
+     * Syncs the pair from the issue updated last, unless it was unlinked or synced by an event meanwhile
+     */
+    private void resync(ApplicationUser user, long issueId, long mirrorId) {
+        boolean oldIndexIssuesValue = isIndexIssues();
+        setIndexIssues(true);
+        try {
+            Long currentMirrorId = issueLinkIndex.getTarget(issueId);
+            MutableIssue issue = issueManager.getIssueObject(issueId);
+            MutableIssue mirror = issueManager.getIssueObject(mirrorId);
+            if (null == currentMirrorId || mirrorId != currentMirrorId || null == issue || null == mirror || !isDiverged(issue, mirror)) {
+                return;
+            }
+            ComponentAccessor.getJiraAuthenticationContext().setLoggedInUser(user);
+            if (issue.getUpdated().getTime() >= mirror.getUpdated().getTime()) {
+                synchronizer.updateIssue(user, issue, mirror, null, EventType.ISSUE_UPDATED_ID, null);
+            } else {
+                synchronizer.updateIssue(user, mirror, issue, null, EventType.ISSUE_UPDATED_ID, null);
+            }
+            RESYNCED.increment();
+        } catch (RuntimeException e) {
+            LOG.error("Issues " + issueId + " and " + mirrorId + " can't be synced again", e);
+        } finally {
+            setIndexIssues(oldIndexIssuesValue);
+        }
+    }
+
+    private static int bucketOf(Long portalIssueId) {
+        long id = portalIssueId;
+        int hash = (int) (id ^ (id >>> 32));
+        hash ^= (hash >>> 16);
+        return (hash & Integer.MAX_VALUE) % BUCKETS;
+    }
+
+    private static Date nextStart() {
+        Calendar start = Calendar.getInstance();
+        start.set(Calendar.HOUR_OF_DAY, START_HOUR);
+        start.set(Calendar.MINUTE, 0);
+        start.set(Calendar.SECOND, 0);
+        start.set(Calendar.MILLISECOND, 0);
+        if (start.getTimeInMillis() <= System.currentTimeMillis()) {
+            start.add(Calendar.DAY_OF_MONTH, 1);
+        }
+        return start.getTime();
+    }
+
+    private static final class ProjectState {
+        private volatile long lastRun;
+        private volatile long lastFullRun;
+        private volatile BitSet unequal = new BitSet(BUCKETS);
+    }
+
+    /**
+     * Limits the rate of the calling thread
+     */
+    private static final class Throttle {
+        private final long start = System.nanoTime();
+        private final int permitsPerSecond;
+        private long permits;
+
+        Throttle(int permitsPerSecond) {
+            this.permitsPerSecond = permitsPerSecond;
+        }
+
+        void acquire() {
+            if (permitsPerSecond <= 0) {
+                return;
+            }
+            long due = start + ++permits * TimeUnit.SECONDS.toNanos(1) / permitsPerSecond;
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.ai.jira.portal.issue;
+
+import com.atlassian.sal.api.scheduling.PluginJob;
+
+import java.util.Map;
+
+/**
+ * Scheduled run of {@link DriftReconciler}
+ */
+public class DriftReconcilerJob implements PluginJob {
+
+    @Override
+    public void execute(Map<String, Object> jobDataMap) {
+        ((DriftReconciler) jobDataMap.get(DriftReconciler.RECONCILER_KEY)).reconcile();
+    }
+}
@@ -0,0 +1,150 @@
+package com.ai.jira.portal.issue;
+
+import com.ai.jira.portal.metrics.Counter;
+import com.ai.jira.portal.metrics.SyncMetrics;
+import org.apache.log4j.Logger;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Remembers events which the synchronizer fires itself, so they are not mirrored back.
+ * <p>
+ * Each token is keyed by event type and subject (issue id or summary) and is consumed by the first check.
+ * Tokens whose echo never arrives expire after {@code portal.sync.echoTtlSeconds} (default: 600) and
+ * the store never keeps more than {@code portal.sync.echoMaxSize} (default: 10000) of them,
+ * the closest to expiry are dropped first.
+ * <p>
+ * All tokens live for the same time, so registration order is expiry order. Tokens are queued in that order
+ * and dropped from the head of the queue, a consumed or registered again token stays in the queue until
+ * it reaches the head and is skipped then.
+ */
+class EchoSuppressionStore {
+    private static final Logger LOG = Logger.getLogger(EchoSuppressionStore.class);
+    private static final long TTL_MILLIS = TimeUnit.SECONDS.toMillis(Long.getLong("portal.sync.echoTtlSeconds", 600));
+    private static final int MAX_SIZE = Integer.getInteger("portal.sync.echoMaxSize", 10000);
+    private static final Counter SUPPRESSED = SyncMetrics.counter("echo.suppressed");
+
+    private final ConcurrentMap<Token, Entry> tokens = new ConcurrentHashMap<>();
+    // entries in registration order, including those already consumed or replaced
+    private final Queue<Entry> expiryQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+    private final long ttlMillis;
+    private final int maxSize;
+
+    EchoSuppressionStore() {
+        this(TTL_MILLIS, MAX_SIZE);
+    }
+
+    EchoSuppressionStore(long ttlMillis, int maxSize) {
+        this.ttlMillis = ttlMillis;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Registers an event which is about to be fired by the synchronizer
+     *
+     * @param eventTypeId - type of expected event
+     * @param subject     - issue id or summary the event will carry
+     */
+    void suppress(Long eventTypeId, String subject) {
+        if (null == subject) {
+            return;
+        }
+        Entry entry = new Entry(new Token(eventTypeId, subject), System.currentTimeMillis() + ttlMillis);
+        tokens.put(entry.token, entry);
+        expiryQueue.add(entry);
+        queued.incrementAndGet();
+        evict();
+    }
+
+    /**
+     * Consumes a token registered by {@link #suppress(Long, String)}
+     *
+     * @return true if event was fired by the synchronizer and must be ignored
+     */
+    boolean consume(Long eventTypeId, String subject) {
+        if (null == subject) {
+            return false;
+        }
+        Entry entry = tokens.remove(new Token(eventTypeId, subject));
+        boolean suppressed = null != entry && entry.deadline >= System.currentTimeMillis();
+        if (suppressed) {
+            SUPPRESSED.increment();
+        }
+        return suppressed;
+    }
+
+    int size() {
+        return tokens.size();
+    }
+
+    /**
+     * Drops expired tokens and the oldest ones beyond the limit from the head of the queue
+     */
+    private void evict() {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long now = System.currentTimeMillis();
+            int dropped = 0;
+            for (Entry head = expiryQueue.peek(); null != head; head = expiryQueue.peek()) {
+                boolean expired = head.deadline < now;
+                if (!expired && queued.get() <= maxSize) {
+                    break;
+                }
+                expiryQueue.poll();
+                queued.decrementAndGet();
+                // removed only if it's still the current entry of its token
+                if (tokens.remove(head.token, head) && !expired) {
+                    dropped++;
+                }
+            }
+            if (dropped > 0) {
+                LOG.warn(dropped + " echo suppression token(s) dropped, store is limited to " + maxSize + " entries");
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    private static final class Entry {
+        private final Token token;
+        private final long deadline;
+
+        Entry(Token token, long deadline) {
+            this.token = token;
+            this.deadline = deadline;
+        }
+    }
+
+    private static final class Token {
+        private final Long eventTypeId;
+        private final String subject;
+
+        Token(Long eventTypeId, String subject) {
+            this.eventTypeId = eventTypeId;
+            this.subject = subject;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Token)) return false;
+            Token token = (Token) o;
+            return eventTypeId.equals(token.eventTypeId) && subject.equals(token.subject);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * eventTypeId.hashCode() + subject.hashCode();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.ai.jira.portal.issue;
+
+import com.atlassian.jira.event.issue.IssueEvent;
+import org.apache.log4j.Logger;
+import org.ofbiz.core.entity.GenericEntityException;
+import org.ofbiz.core.entity.GenericValue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Changes carried by an issue event, read from its change history group.
+ * <p>
+ * System fields are known by their change history names (see constants), custom fields by their names.
+ */
+class IssueChangeLog {
+    private static final Logger LOG = Logger.getLogger(IssueChangeLog.class);
+    private static final String ATTACHMENT_FIELD = "Attachment";
+    private static final String CUSTOM_FIELD_TYPE = "custom";
+    // fields which are synchronized by other means than copying the value
+    private static final Set<String> NOT_COPIED_FIELDS = new HashSet<>(Arrays.asList("status", "WorklogId", "Workflow", "Link", "Key", "project"));
+
+    static final String AFFECTED_VERSIONS = "Version";
+    static final String FIX_VERSIONS = "Fix Version";
+    static final String COMPONENTS = "Component";
+    static final String ASSIGNEE = "assignee";
+    static final String DESCRIPTION = "description";
+    static final String DUE_DATE = "duedate";
+    static final String ENVIRONMENT = "environment";
+    static final String ESTIMATE = "timeestimate";
+    static final String ORIGINAL_ESTIMATE = "timeoriginalestimate";
+    static final String PRIORITY = "priority";
+    static final String LABELS = "labels";
+    static final String ISSUE_TYPE = "issuetype";
+    static final String REPORTER = "reporter";
+    static final String SUMMARY = "summary";
+    static final String TIME_SPENT = "timespent";
+    static final String RESOLUTION = "resolution";
+
+    private final Set<String> systemFields = new HashSet<>();
+    private final Set<String> customFields = new HashSet<>();
+    private final List<Long> addedAttachmentIds = new ArrayList<>();
+    private final List<Long> removedAttachmentIds = new ArrayList<>();
+
+    /**
+     * @return changes of the event, null if event has no change history
+     */
+    static IssueChangeLog of(IssueEvent event) {
+        GenericValue changeLog = event.getChangeLog();
+        if (null == changeLog) {
+            return null;
+        }
+        List<GenericValue> changeItems;
+        try {
+            changeItems = changeLog.getRelated("ChildChangeItem");
+        } catch (GenericEntityException e) {
+            LOG.warn("Change items of change group " + changeLog.getLong("id") + " can't be read", e);
+            return null;
+        }
+        IssueChangeLog changes = new IssueChangeLog();
+        for (GenericValue changeItem : changeItems) {
+            changes.add(changeItem.getString("fieldtype"), changeItem.getString("field"), changeItem.getString("oldvalue"), changeItem.getString("newvalue"));
+        }
+        return changes;
+    }
+
+    /**
+     * Combines changes of consecutive events of one issue, the result covers every field changed by either
+     *
+     * @return null if changes of either event are unknown
+     */
+    static IssueChangeLog merge(IssueChangeLog first, IssueChangeLog second) {
+        if (null == first || null == second) {
+            return null;
+        }
+        IssueChangeLog merged = new IssueChangeLog();
+        for (IssueChangeLog changes : Arrays.asList(first, second)) {
+            merged.systemFields.addAll(changes.systemFields);
+            merged.customFields.addAll(changes.customFields);
+            merged.addedAttachmentIds.addAll(changes.addedAttachmentIds);
+            merged.removedAttachmentIds.addAll(changes.removedAttachmentIds);
+        }
+        return merged;
+    }
+
+    private void add(String fieldType, String field, String oldValue, String newValue) {
+        if (CUSTOM_FIELD_TYPE.equals(fieldType)) {
+            customFields.add(field);
+        } else if (ATTACHMENT_FIELD.equals(field)) {
+            if (null != newValue) {
+                addedAttachmentIds.add(Long.valueOf(newValue));
+            }
+            if (null != oldValue) {
+                removedAttachmentIds.add(Long.valueOf(oldValue));
+            }
+        } else if (!NOT_COPIED_FIELDS.contains(field)) {
+            systemFields.add(field);
+        }
+    }
+
+    /**
+     * @return true if any system or custom field value, which is copied to the mirror, changed
+     */
+    boolean hasFieldChanges() {
+        return !systemFields.isEmpty() || !customFields.isEmpty();
+    }
+
+    /**
+     * @param field - change history name of system field
+     */
+    boolean isChanged(String field) {
+        return systemFields.contains(field);
+    }
+
+    boolean isCustomFieldChanged(String name) {
+        return customFields.contains(name);
+    }
+
+    boolean hasAttachmentChanges() {
+        return !addedAttachmentIds.isEmpty() || !removedAttachmentIds.isEmpty();
+    }
+
+    List<Long> getAddedAttachmentIds() {
+        return Collections.unmodifiableList(addedAttachmentIds);
+    }
+
+    List<Long> getRemovedAttachmentIds() {
+        return Collections.unmodifiableList(removedAttachmentIds);
+    }
+}
@@ -1,7 +1,10 @@
 package com.ai.jira.portal.issue;
 
 import com.ai.jira.portal.ao.project.ProjectExtraFields;
-import com.ai.jira.portal.ao.project.ProjectExtraFieldsService;
+import com.ai.jira.portal.ao.project.ProjectExtraFieldsCache;
+import com.ai.jira.portal.metrics.Counter;
+import com.ai.jira.portal.metrics.SyncMetrics;
+import com.ai.jira.portal.metrics.Timer;
 import com.atlassian.event.api.EventListener;
 import com.atlassian.jira.component.ComponentAccessor;
 import com.atlassian.jira.event.issue.IssueEvent;
@@ -19,8 +22,13 @@ import com.atlassian.jira.user.ApplicationUser;
 import com.atlassian.jira.user.ApplicationUsers;
 import org.apache.log4j.Logger;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import static com.ai.jira.portal.issue.IssueSynchronizer.PORTAL_TAG;
 import static com.ai.jira.project.comment.CommentViewIssueContextProvider.CLIENT_PROJECT_ROLE;
@@ -31,37 +39,179 @@ import static com.atlassian.jira.util.ImportUtils.setIndexIssues;
 public class IssueEventListener {
     private static final Logger LOG = Logger.getLogger(IssueEventListener.class);
     private static final String INTERNAL_PROJECT_ROLE = "Internal Users";
+    private static final Timer QUEUE_WAIT_TIMER = SyncMetrics.timer("sync.queueWait");
+    private static final Counter COALESCED = SyncMetrics.counter("sync.coalesced");
+    private static final long COALESCE_MILLIS = Long.getLong("portal.sync.coalesceMillis", 500);
     private static final IssueManager issueManager = ComponentAccessor.getIssueManager();
-    private final ProjectExtraFieldsService extraFieldsService;
+    private final ProjectExtraFieldsCache projectExtraCache;
     private final IssueSynchronizer synchronizer;
+    private final IssueSyncExecutor syncExecutor;
+    // guarded by itself
+    private final Map<Long, PendingUpdate> pendingUpdates = new HashMap<>();
 
-    public IssueEventListener(ProjectExtraFieldsService extraFieldsService, IssueSynchronizer synchronizer) {
-        this.extraFieldsService = extraFieldsService;
+    public IssueEventListener(ProjectExtraFieldsCache projectExtraCache, IssueSynchronizer synchronizer, IssueSyncExecutor syncExecutor) {
+        this.projectExtraCache = projectExtraCache;
         this.synchronizer = synchronizer;
+        this.syncExecutor = syncExecutor;
     }
 
+    /**
+     * Fixes comment visibility in place and hands the rest of the work to {@link IssueSyncExecutor},
+     * so the thread which dispatched the event is not blocked by mirroring.
+     */
     @EventListener
-    public void onIssueEvent(IssueEvent issueEvent) {
+    public void onIssueEvent(final IssueEvent issueEvent) {
         Long eventTypeId = issueEvent.getEventTypeId();
-        MutableIssue issue = ISSUE_DELETED_ID.equals(eventTypeId) ? (MutableIssue) issueEvent.getIssue() : issueManager.getIssueObject(issueEvent.getIssue().getId());
-        Project project = issue.getProjectObject();
+        Issue eventIssue = issueEvent.getIssue();
         Comment comment = issueEvent.getComment();
-        ProjectExtraFields projectExtra = extraFieldsService.getProjectExtra(project.getId());
-        Project relatedProject = ComponentAccessor.getProjectManager().getProjectObj(projectExtra.getRelatedProjectId());
-        ApplicationUser user = ApplicationUsers.from(issueEvent.getUser());
+        ProjectExtraFields projectExtra = projectExtraCache.getProjectExtra(eventIssue.getProjectObject().getId());
 
-        if (shouldModifyOneProjectPortalComment(eventTypeId, issue, comment, projectExtra)) {
+        if (shouldModifyOneProjectPortalComment(eventTypeId, eventIssue, comment, projectExtra)) {
             modifyOneProjectPortalBunchComment((MutableComment) comment);
         }
 
+        Long issueId = eventIssue.getId();
+        // events of an issue and of its mirror share the lane, so changes of both sides don't race
+        Long laneKey = synchronizer.getPortalIssueId(projectExtra.isPortal(), issueId);
+        if (COALESCE_MILLIS > 0 && ISSUE_UPDATED_ID.equals(eventTypeId)) {
+            coalesceUpdate(issueId, laneKey, issueEvent);
+            return;
+        }
+        // earlier updates of the issue are synchronized before this event
+        PendingUpdate pending;
+        synchronized (pendingUpdates) {
+            pending = pendingUpdates.remove(issueId);
+        }
+        if (null != pending) {
+            submitUpdate(issueId, pending, false);
+        }
+        final long submitted = System.nanoTime();
+        syncExecutor.submit(laneKey, new Runnable() {
+            @Override
+            public void run() {
+                QUEUE_WAIT_TIMER.recordSince(submitted);
+                long start = System.nanoTime();
+                try {
+                    processIssueEvent(issueEvent);
+                } finally {
+                    SyncMetrics.timer("listener." + issueEvent.getEventTypeId()).recordSince(start);
+                }
+            }
+        });
+    }
+
+    /**
+     * Holds the update event for {@code portal.sync.coalesceMillis} (default: 500, 0 turns coalescing off).
+     * Updates of the issue coming meanwhile join it and all of them are synchronized at once with the latest
+     * state of the issue, any other event of the issue submits the held updates right away.
+     * Custom events aren't coalesced, they may transition the mirror.
+     * <p>
+     * When the delay ends the updates are submitted while they are still held and claimed only when they run,
+     * so an event of the issue coming meanwhile either takes them over or is queued behind them in the lane.
+     */
+    private void coalesceUpdate(final Long issueId, Long laneKey, IssueEvent issueEvent) {
+        final PendingUpdate pending;
+        synchronized (pendingUpdates) {
+            PendingUpdate current = pendingUpdates.get(issueId);
+            if (null != current) {
+                current.events.add(issueEvent);
+                COALESCED.increment();
+                return;
+            }
+            pending = new PendingUpdate(laneKey, issueEvent);
+            pendingUpdates.put(issueId, pending);
+        }
+        syncExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                submitUpdate(issueId, pending, true);
+            }
+        }, COALESCE_MILLIS);
+    }
+
+    /**
+     * @param claimOnRun - true if the updates are still held and are taken from {@link #pendingUpdates} when the task runs,
+     *                   false if they were taken already
+     */
+    private void submitUpdate(final Long issueId, final PendingUpdate pending, final boolean claimOnRun) {
+        final long submitted = System.nanoTime();
+        syncExecutor.submit(pending.laneKey, new Runnable() {
+            @Override
+            public void run() {
+                if (claimOnRun && !claim(issueId, pending)) {
+                    // already submitted by another event of the issue
+                    return;
+                }
+                QUEUE_WAIT_TIMER.recordSince(submitted);
+                long start = System.nanoTime();
+                try {
+                    processCoalescedUpdate(pending);
+                } finally {
+                    SyncMetrics.timer("listener." + ISSUE_UPDATED_ID).recordSince(start);
+                }
+            }
+        });
+    }
+
+    private boolean claim(Long issueId, PendingUpdate pending) {
+        synchronized (pendingUpdates) {
+            if (pendingUpdates.get(issueId) != pending) {
+                return false;
+            }
+            pendingUpdates.remove(issueId);
+            return true;
+        }
+    }
+
+    void processCoalescedUpdate(PendingUpdate pending) {
+        IssueEvent latest = pending.events.get(pending.events.size() - 1);
+        MutableIssue issue = issueManager.getIssueObject(latest.getIssue().getId());
+        if (null == issue) {
+            LOG.warn("Issue with id '" + latest.getIssue().getId() + "' doesn't exist anymore, " + pending.events.size() + " update event(s) skipped");
+            return;
+        }
+        IssueChangeLog changes = IssueChangeLog.of(pending.events.get(0));
+        List<Comment> comments = new ArrayList<>();
+        for (int i = 0; i < pending.events.size(); i++) {
+            IssueEvent event = pending.events.get(i);
+            if (i > 0) {
+                changes = IssueChangeLog.merge(changes, IssueChangeLog.of(event));
+            }
+            if (null != event.getComment()) {
+                comments.add(event.getComment());
+            }
+        }
+        Project project = issue.getProjectObject();
+        ProjectExtraFields projectExtra = projectExtraCache.getProjectExtra(project.getId());
+        Project relatedProject = projectExtraCache.getRelatedProject(project.getId());
+        ApplicationUser user = ApplicationUsers.from(latest.getUser());
+        ComponentAccessor.getJiraAuthenticationContext().setLoggedInUser(user);
+
+        processIssueUpdatedEvent(issue, user, relatedProject, comments, projectExtra, changes);
+    }
+
+    private void processIssueEvent(IssueEvent issueEvent) {
+        Long eventTypeId = issueEvent.getEventTypeId();
+        MutableIssue issue = ISSUE_DELETED_ID.equals(eventTypeId) ? (MutableIssue) issueEvent.getIssue() : issueManager.getIssueObject(issueEvent.getIssue().getId());
+        if (null == issue) {
+            LOG.warn("Issue with id '" + issueEvent.getIssue().getId() + "' doesn't exist anymore, event " + eventTypeId + " skipped");
+            return;
+        }
+        Project project = issue.getProjectObject();
+        Comment comment = issueEvent.getComment();
+        ProjectExtraFields projectExtra = projectExtraCache.getProjectExtra(project.getId());
+        Project relatedProject = projectExtraCache.getRelatedProject(project.getId());
+        ApplicationUser user = ApplicationUsers.from(issueEvent.getUser());
+        ComponentAccessor.getJiraAuthenticationContext().setLoggedInUser(user);
+
         if (ISSUE_CREATED_ID.equals(eventTypeId) && shouldCreateMirrorIssue(projectExtra, issue)) {
             processIssueCreatedEvent(issue, user, relatedProject, projectExtra);
         } else if (ISSUE_UPDATED_ID.equals(eventTypeId)) {
-            processIssueUpdatedEvent(issue, user, relatedProject, comment, projectExtra);
+            processIssueUpdatedEvent(issue, user, relatedProject, null == comment ? Collections.<Comment>emptyList() : Collections.singletonList(comment), projectExtra, IssueChangeLog.of(issueEvent));
         } else if (ISSUE_COMMENTED_ID.equals(eventTypeId)) {
             processIssueCommentedEvent(issue, comment, projectExtra);
         } else if (isCustomCreatedEvent(eventTypeId)) {
-            processCustomEvent(issue, user, relatedProject, projectExtra, comment, eventTypeId);
+            processCustomEvent(issue, user, relatedProject, projectExtra, comment, eventTypeId, IssueChangeLog.of(issueEvent));
         } else if (isBasicIssueTransitionEvent(eventTypeId)) {
             processBasicIssueTransitionEvent(issue, user, relatedProject, projectExtra, issueEvent);
         } else if (ISSUE_ASSIGNED_ID.equals(eventTypeId)) {
@@ -93,7 +243,7 @@ public class IssueEventListener {
                 !roleManager.isUserInProjectRole(comment.getAuthorApplicationUser(), roleManager.getProjectRole(CLIENT_PROJECT_ROLE), comment.getIssue().getProjectObject());
     }
 
-    private boolean shouldModifyOneProjectPortalComment(Long eventTypeId, MutableIssue issue, Comment comment, ProjectExtraFields projectExtra) {
+    private boolean shouldModifyOneProjectPortalComment(Long eventTypeId, Issue issue, Comment comment, ProjectExtraFields projectExtra) {
         return projectExtra.isOneProjectPortal() &&
                 !ISSUE_COMMENT_EDITED_ID.equals(eventTypeId) &&
                 !issue.isSubTask() &&
@@ -116,16 +266,17 @@ public class IssueEventListener {
         boolean oldIndexIssuesValue = isIndexIssues();
         setIndexIssues(true);
 
-        if (synchronizer.isProcess(issue, ISSUE_CREATED_ID) && projectExtra.isBidirectional() && null != relatedProject) {
-            if (projectExtra.isPortal() || (!projectExtra.isPortal() && !issue.getIssueTypeObject().isSubTask())) {
-                synchronizer.createMirrorIssue(user, issue, relatedProject);
-            }
+        if (synchronizer.isProcess(issue, ISSUE_CREATED_ID) && null != relatedProject && isMirroredOnCreate(projectExtra, issue)) {
+            synchronizer.createMirrorIssue(user, issue, relatedProject);
         }
 
         setIndexIssues(oldIndexIssuesValue);
     }
 
-    private void processIssueUpdatedEvent(MutableIssue issue, ApplicationUser user, Project relatedProject, Comment comment, ProjectExtraFields projectExtra) {
+    /**
+     * @param comments - comments added by the update events, in event order
+     */
+    private void processIssueUpdatedEvent(MutableIssue issue, ApplicationUser user, Project relatedProject, List<Comment> comments, ProjectExtraFields projectExtra, IssueChangeLog changes) {
         boolean oldIndexIssuesValue = isIndexIssues();
         setIndexIssues(true);
 
@@ -133,7 +284,10 @@ public class IssueEventListener {
             MutableIssue relatedIssue = synchronizer.getRelatedIssue(projectExtra.isPortal(), issue);
             if (null != relatedIssue) {
                 if (projectExtra.isPortal() || !issue.getIssueTypeObject().isSubTask()) {
-                    synchronizer.updateIssue(user, issue, relatedIssue, comment, ISSUE_UPDATED_ID);
+                    synchronizer.updateIssue(user, issue, relatedIssue, comments.isEmpty() ? null : comments.get(0), ISSUE_UPDATED_ID, changes);
+                    for (Comment comment : comments.subList(Math.min(1, comments.size()), comments.size())) {
+                        synchronizer.copyComment(issue, relatedIssue, comment);
+                    }
                 }
             } else {
                 LOG.warn("Related Issue doesn't exist for " + issue);
@@ -174,7 +328,7 @@ public class IssueEventListener {
         setIndexIssues(oldIndexIssuesValue);
     }
 
-    private void processCustomEvent(MutableIssue issue, ApplicationUser user, Project relatedProject, ProjectExtraFields projectExtra, Comment comment, Long eventTypeId) {
+    private void processCustomEvent(MutableIssue issue, ApplicationUser user, Project relatedProject, ProjectExtraFields projectExtra, Comment comment, Long eventTypeId, IssueChangeLog changes) {
         boolean oldIndexIssuesValue = isIndexIssues();
         setIndexIssues(true);
 
@@ -182,7 +336,7 @@ public class IssueEventListener {
             MutableIssue relatedIssue = synchronizer.getRelatedIssue(projectExtra.isPortal(), issue);
             if (null != relatedIssue) {
                 if (projectExtra.isPortal() || !issue.getIssueTypeObject().isSubTask()) {
-                    synchronizer.updateIssue(user, issue, relatedIssue, comment, eventTypeId);
+                    synchronizer.updateIssue(user, issue, relatedIssue, comment, eventTypeId, changes);
                 }
             } else {
                 LOG.warn("Related Issue doesn't exist for " + issue);
@@ -247,7 +401,15 @@ public class IssueEventListener {
         }
     }
 
-    private boolean shouldCreateMirrorIssue(ProjectExtraFields projectExtra, Issue issue) {
+    /**
+     * Rules for issues of bidirectional projects, applied on top of {@link #shouldCreateMirrorIssue}:
+     * internal sub-tasks aren't mirrored
+     */
+    static boolean isMirroredOnCreate(ProjectExtraFields projectExtra, Issue issue) {
+        return projectExtra.isBidirectional() && (projectExtra.isPortal() || !issue.getIssueTypeObject().isSubTask());
+    }
+
+    static boolean shouldCreateMirrorIssue(ProjectExtraFields projectExtra, Issue issue) {
         boolean shouldCreate = true;
         String notMappedIssueTypes = projectExtra.getNotMappedIssueTypeIds();
         if (null != notMappedIssueTypes && !projectExtra.isPortal()) {
@@ -257,4 +419,17 @@ public class IssueEventListener {
 
         return shouldCreate;
     }
+
+    /**
+     * Update events of one issue waiting to be synchronized together, in arrival order
+     */
+    static class PendingUpdate {
+        private final Long laneKey;
+        final List<IssueEvent> events = new ArrayList<>();
+
+        PendingUpdate(Long laneKey, IssueEvent first) {
+            this.laneKey = laneKey;
+            events.add(first);
+        }
+    }
 }
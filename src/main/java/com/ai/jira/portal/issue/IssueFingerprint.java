@@ -0,0 +1,115 @@
+package com.ai.jira.portal.issue;
+
+import com.atlassian.jira.issue.Issue;
+import com.atlassian.jira.issue.customfields.option.Option;
+import com.atlassian.jira.issue.fields.CustomField;
+import com.atlassian.jira.issue.label.Label;
+import com.atlassian.jira.project.version.Version;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 64-bit hash of the fields {@link IssueSynchronizer#updateIssue} copies as they are, equal for an issue and
+ * its mirror when they are in sync.
+ * <p>
+ * Fields which are mapped or set only on one side are left out: priority (mapped for portal projects),
+ * reporter ("As a Client"), components (only those existing in both projects) and "Portal Key".
+ * Multi-valued fields are hashed in sorted order, versions by name.
+ */
+final class IssueFingerprint {
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final String PORTAL_CASE_NUMBER = "Portal Key";
+
+    private long hash = FNV_OFFSET;
+
+    private IssueFingerprint() {
+    }
+
+    /**
+     * @param customFields - custom fields copied between the issue and its mirror
+     */
+    static long of(Issue issue, List<CustomField> customFields) {
+        IssueFingerprint fingerprint = new IssueFingerprint();
+        fingerprint.add(issue.getSummary())
+                .add(issue.getDescription())
+                .add(issue.getEnvironment())
+                .add(issue.getDueDate())
+                .add(issue.getAssigneeId())
+                .add(issue.getEstimate())
+                .add(issue.getOriginalEstimate())
+                .add(issue.getTimeSpent())
+                .add(issue.getResolutionId())
+                .add(issue.getIssueTypeId())
+                .add(sorted(labels(issue.getLabels())))
+                .add(sorted(versions(issue.getAffectedVersions())))
+                .add(sorted(versions(issue.getFixVersions())));
+        for (CustomField customField : customFields) {
+            if (PORTAL_CASE_NUMBER.equals(customField.getName())) continue;
+            fingerprint.add(customField.getId()).add(value(issue.getCustomFieldValue(customField)));
+        }
+        return fingerprint.hash;
+    }
+
+    private IssueFingerprint add(Object value) {
+        String text = null == value ? "\u0000" : value.toString();
+        for (int i = 0; i < text.length(); i++) {
+            hash ^= text.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        // field separator, so "ab" + "c" differs from "a" + "bc"
+        hash ^= 0xff;
+        hash *= FNV_PRIME;
+        return this;
+    }
+
+    private IssueFingerprint add(Date value) {
+        return add(null == value ? null : (Object) value.getTime());
+    }
+
+    private static Object value(Object value) {
+        if (value instanceof Option) {
+            return ((Option) value).getValue();
+        }
+        if (value instanceof Date) {
+            return ((Date) value).getTime();
+        }
+        if (value instanceof Collection) {
+            List<String> values = new ArrayList<>();
+            for (Object element : (Collection<?>) value) {
+                values.add(String.valueOf(value(element)));
+            }
+            return sorted(values);
+        }
+        return value;
+    }
+
+    private static List<String> labels(Collection<Label> labels) {
+        List<String> names = new ArrayList<>();
+        if (null != labels) {
+            for (Label label : labels) {
+                names.add(label.getLabel());
+            }
+        }
+        return names;
+    }
+
+    private static List<String> versions(Collection<Version> versions) {
+        List<String> names = new ArrayList<>();
+        if (null != versions) {
+            for (Version version : versions) {
+                names.add(version.getName());
+            }
+        }
+        return names;
+    }
+
+    private static List<String> sorted(List<String> values) {
+        Collections.sort(values);
+        return values;
+    }
+}
@@ -0,0 +1,169 @@
+package com.ai.jira.portal.issue;
+
+import com.ai.jira.portal.metrics.Counter;
+import com.ai.jira.portal.metrics.Gauge;
+import com.ai.jira.portal.metrics.SyncMetrics;
+import com.ai.jira.portal.metrics.Timer;
+import com.atlassian.jira.component.ComponentAccessor;
+import com.atlassian.jira.issue.Issue;
+import com.atlassian.jira.issue.IssueManager;
+import com.atlassian.jira.issue.index.IndexException;
+import com.atlassian.jira.issue.index.IssueIndexManager;
+import com.atlassian.jira.util.ImportUtils;
+import com.atlassian.jira.util.thread.JiraThreadLocalUtil;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects issues touched by synchronization and reindexes them in batches.
+ * <p>
+ * An issue scheduled several times before the next flush is reindexed once. Flush runs
+ * every {@code portal.reindex.delayMillis} (default: 500) and reindexes at most
+ * {@code portal.reindex.batchSize} (default: 500) issues per index call.
+ * <p>
+ * Bulk operations collect their issues themselves and reindex them with {@link #reindex(Collection)} when they end,
+ * so the periodic flush keeps running for regular synchronization meanwhile.
+ */
+public class IssueReindexQueue implements DisposableBean {
+    private static final Logger LOG = Logger.getLogger(IssueReindexQueue.class);
+    private static final long DELAY_MILLIS = Long.getLong("portal.reindex.delayMillis", 500);
+    private static final int BATCH_SIZE = Integer.getInteger("portal.reindex.batchSize", 500);
+    private static final Timer REINDEX_TIMER = SyncMetrics.timer("reindex.batch");
+    private static final Counter REINDEXED = SyncMetrics.counter("reindex.issues");
+    private static final String PENDING_GAUGE = "reindex.pending";
+
+    private final Set<Long> pending = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+    private final IssueManager issueManager;
+    private final IssueIndexManager issueIndexManager;
+    private final ScheduledExecutorService flusher;
+    private final Gauge pendingGauge = new Gauge() {
+        @Override
+        public long getValue() {
+            return getPendingCount();
+        }
+    };
+
+    public IssueReindexQueue(IssueManager issueManager, IssueIndexManager issueIndexManager) {
+        this.issueManager = issueManager;
+        this.issueIndexManager = issueIndexManager;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "portal-issue-reindex");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.flusher.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                flushInJiraContext();
+            }
+        }, DELAY_MILLIS, DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        SyncMetrics.gauge(PENDING_GAUGE, pendingGauge);
+    }
+
+    public void schedule(Issue issue) {
+        if (null != issue && null != issue.getId()) {
+            pending.add(issue.getId());
+        }
+    }
+
+    public void schedule(Long issueId) {
+        if (null != issueId) {
+            pending.add(issueId);
+        }
+    }
+
+    /**
+     * @return number of issues waiting for reindex
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Reindexes all scheduled issues in the calling thread
+     */
+    public void flush() {
+        reindex(pending.iterator());
+    }
+
+    /**
+     * Reindexes given issues in the calling thread in batches, scheduled issues aren't touched
+     *
+     * @param issueIds - ids of issues collected by a bulk operation
+     */
+    public void reindex(Collection<Long> issueIds) {
+        reindex(new ArrayList<>(issueIds).iterator());
+    }
+
+    private void reindex(Iterator<Long> ids) {
+        List<Issue> batch = new ArrayList<>();
+        while (ids.hasNext()) {
+            Long issueId = ids.next();
+            ids.remove();
+            Issue issue = issueManager.getIssueObject(issueId);
+            if (null != issue) {
+                batch.add(issue);
+            }
+            if (batch.size() >= BATCH_SIZE) {
+                reindex(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            reindex(batch);
+        }
+    }
+
+    private void reindex(List<Issue> issues) {
+        boolean oldIndexIssuesValue = ImportUtils.isIndexIssues();
+        ImportUtils.setIndexIssues(true);
+        long start = System.nanoTime();
+        try {
+            issueIndexManager.reIndexIssueObjects(issues);
+            REINDEXED.add(issues.size());
+        } catch (IndexException e) {
+            LOG.error("Failed to reindex " + issues.size() + " issue(s) ", e);
+        } finally {
+            REINDEX_TIMER.recordSince(start);
+            ImportUtils.setIndexIssues(oldIndexIssuesValue);
+        }
+    }
+
+    private void flushInJiraContext() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        JiraThreadLocalUtil threadLocalUtil = ComponentAccessor.getComponent(JiraThreadLocalUtil.class);
+        threadLocalUtil.preCall();
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            LOG.error("Issue reindex flush failed", e);
+        } finally {
+            threadLocalUtil.postCall(LOG, null);
+        }
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        SyncMetrics.removeGauge(PENDING_GAUGE, pendingGauge);
+        flusher.shutdown();
+        flusher.awaitTermination(30, TimeUnit.SECONDS);
+        flushInJiraContext();
+    }
+}
@@ -0,0 +1,186 @@
+package com.ai.jira.portal.issue;
+
+import com.ai.jira.portal.metrics.Gauge;
+import com.ai.jira.portal.metrics.SyncMetrics;
+import com.atlassian.jira.component.ComponentAccessor;
+import com.atlassian.jira.util.thread.JiraThreadLocalUtil;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs issue synchronization off the Jira event-dispatch thread.
+ * <p>
+ * Work is spread over a fixed number of single-threaded lanes, the lane is picked by the key the task
+ * is submitted with, so all tasks of one key are handled in the order they were submitted while different keys
+ * are handled in parallel. {@link IssueEventListener} uses the portal issue id as the key for both sides
+ * of a link. Amount of queued work is bounded, when the bound is reached the submitting
+ * thread waits for a free slot.
+ * <p>
+ * Tuned with system properties:
+ * <ul>
+ * <li>{@code portal.sync.threads} - number of lanes (default: number of processors)</li>
+ * <li>{@code portal.sync.queueSize} - max queued tasks over all lanes (default: 1000)</li>
+ * </ul>
+ */
+public class IssueSyncExecutor implements DisposableBean {
+    private static final Logger LOG = Logger.getLogger(IssueSyncExecutor.class);
+    private static final int THREADS = Integer.getInteger("portal.sync.threads", Runtime.getRuntime().availableProcessors());
+    private static final int QUEUE_SIZE = Integer.getInteger("portal.sync.queueSize", 1000);
+    private static final long OFFER_WARN_TIMEOUT_SECONDS = 10;
+    private static final ThreadLocal<Boolean> WORKER = new ThreadLocal<>();
+    private static final String QUEUE_DEPTH_GAUGE = "sync.queueDepth";
+
+    private final ExecutorService[] lanes;
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "portal-issue-sync-timer");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+    private final Semaphore capacity;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Gauge queueDepthGauge = new Gauge() {
+        @Override
+        public long getValue() {
+            return getQueueDepth();
+        }
+    };
+
+    public IssueSyncExecutor() {
+        this(THREADS, QUEUE_SIZE);
+        SyncMetrics.gauge(QUEUE_DEPTH_GAUGE, queueDepthGauge);
+    }
+
+    IssueSyncExecutor(int threads, int queueSize) {
+        this.lanes = new ExecutorService[Math.max(1, threads)];
+        this.capacity = new Semaphore(Math.max(1, queueSize));
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = Executors.newSingleThreadExecutor(new LaneThreadFactory(i));
+        }
+    }
+
+    /**
+     * Queues task for the key. Tasks of the same key are executed one by one in submission order.
+     * Blocks while the queue is full, except when called from a sync thread itself (events fired by
+     * mirroring are queued without waiting, otherwise a lane could wait for itself).
+     *
+     * @param issueId - issue which task belongs to, the portal issue for both sides of a link
+     * @param task    - work to do
+     */
+    public void submit(Long issueId, Runnable task) {
+        boolean fromWorker = Boolean.TRUE.equals(WORKER.get());
+        if (!fromWorker) {
+            acquire(issueId);
+        }
+        queued.incrementAndGet();
+        lanes[laneOf(issueId)].execute(new LaneTask(task, !fromWorker));
+    }
+
+    /**
+     * Runs action on the timer thread after the delay, used to submit tasks later. Actions still waiting
+     * when the executor is destroyed are run before lanes stop.
+     */
+    public void schedule(Runnable action, long delayMillis) {
+        timer.schedule(action, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return number of tasks waiting or running
+     */
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        SyncMetrics.removeGauge(QUEUE_DEPTH_GAUGE, queueDepthGauge);
+        timer.shutdown();
+        if (!timer.awaitTermination(30, TimeUnit.SECONDS)) {
+            LOG.warn("Issue sync timer did not finish in time, " + timer.shutdownNow().size() + " action(s) dropped");
+        }
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+        for (ExecutorService lane : lanes) {
+            if (!lane.awaitTermination(30, TimeUnit.SECONDS)) {
+                LOG.warn("Issue sync lane did not finish in time, " + lane.shutdownNow().size() + " task(s) dropped");
+            }
+        }
+    }
+
+    private void acquire(Long issueId) {
+        try {
+            while (!capacity.tryAcquire(OFFER_WARN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                LOG.warn("Issue sync queue is full (" + queued.get() + " tasks), still waiting to queue event of issue " + issueId);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for issue sync queue", e);
+        }
+    }
+
+    private int laneOf(Long issueId) {
+        long id = null == issueId ? 0 : issueId;
+        int hash = (int) (id ^ (id >>> 32));
+        hash ^= (hash >>> 16);
+        return (hash & Integer.MAX_VALUE) % lanes.length;
+    }
+
+    private class LaneTask implements Runnable {
+        private final Runnable task;
+        private final boolean holdsPermit;
+
+        LaneTask(Runnable task, boolean holdsPermit) {
+            this.task = task;
+            this.holdsPermit = holdsPermit;
+        }
+
+        @Override
+        public void run() {
+            JiraThreadLocalUtil threadLocalUtil = ComponentAccessor.getComponent(JiraThreadLocalUtil.class);
+            threadLocalUtil.preCall();
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                LOG.error("Issue synchronization failed", e);
+            } finally {
+                threadLocalUtil.postCall(LOG, null);
+                queued.decrementAndGet();
+                if (holdsPermit) {
+                    capacity.release();
+                }
+            }
+        }
+    }
+
+    private static class LaneThreadFactory implements ThreadFactory {
+        private final int lane;
+
+        LaneThreadFactory(int lane) {
+            this.lane = lane;
+        }
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    WORKER.set(Boolean.TRUE);
+                    runnable.run();
+                }
+            }, "portal-issue-sync-" + lane);
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
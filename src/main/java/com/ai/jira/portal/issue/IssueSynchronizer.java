@@ -1,14 +1,20 @@
 package com.ai.jira.portal.issue;
 
 import com.ai.jira.portal.ActionResolverManager;
+import com.ai.jira.portal.ao.attachment.AttachmentLink;
+import com.ai.jira.portal.ao.attachment.AttachmentLinkManager;
+import com.ai.jira.portal.ao.attachment.AttachmentLinkManager.AttachmentType;
 import com.ai.jira.portal.ao.comment.CommentLink;
 import com.ai.jira.portal.ao.comment.CommentLinkManager;
-import com.ai.jira.portal.ao.issue.CustomIssueLink;
-import com.ai.jira.portal.ao.issue.CustomIssueLinkManager;
+import com.ai.jira.portal.ao.issue.IssueLinkIndex;
 import com.ai.jira.portal.ao.project.ProjectExtraFields;
-import com.ai.jira.portal.ao.project.ProjectExtraFieldsService;
-import com.ai.jira.portal.ao.version.VersionLinkManager;
+import com.ai.jira.portal.ao.project.ProjectExtraFieldsCache;
+import com.ai.jira.portal.ao.version.VersionMappingCache;
 import com.ai.jira.portal.mapping.PriorityMapper;
+import com.ai.jira.portal.mapping.PriorityMapperCache;
+import com.ai.jira.portal.metrics.Gauge;
+import com.ai.jira.portal.metrics.SyncMetrics;
+import com.ai.jira.portal.metrics.Timer;
 import com.atlassian.crowd.embedded.api.User;
 import com.atlassian.jira.bc.issue.IssueService;
 import com.atlassian.jira.bc.project.component.ProjectComponent;
@@ -22,11 +28,9 @@ import com.atlassian.jira.issue.attachment.CreateAttachmentParamsBean;
 import com.atlassian.jira.issue.comments.Comment;
 import com.atlassian.jira.issue.comments.CommentManager;
 import com.atlassian.jira.issue.comments.MutableComment;
-import com.atlassian.jira.issue.customfields.impl.CalculatedCFType;
 import com.atlassian.jira.issue.customfields.option.Option;
 import com.atlassian.jira.issue.fields.CustomField;
-import com.atlassian.jira.issue.index.IndexException;
-import com.atlassian.jira.issue.index.IssueIndexManager;
+import com.atlassian.jira.issue.history.ChangeItemBean;
 import com.atlassian.jira.issue.watchers.WatcherManager;
 import com.atlassian.jira.project.Project;
 import com.atlassian.jira.project.version.Version;
@@ -34,44 +38,77 @@ import com.atlassian.jira.security.roles.ProjectRole;
 import com.atlassian.jira.security.roles.ProjectRoleActors;
 import com.atlassian.jira.security.roles.ProjectRoleManager;
 import com.atlassian.jira.user.ApplicationUser;
-import com.atlassian.jira.util.ImportUtils;
 import com.atlassian.jira.web.util.AttachmentException;
 import com.atlassian.jira.workflow.TransitionOptions;
 import com.opensymphony.workflow.loader.ActionDescriptor;
 import org.apache.log4j.Logger;
+import org.springframework.beans.factory.DisposableBean;
 
 import java.io.File;
+import java.io.IOException;
 import java.sql.Timestamp;
 import java.util.*;
 
+import static com.ai.jira.portal.issue.IssueChangeLog.*;
 import static com.atlassian.jira.event.type.EventDispatchOption.DO_NOT_DISPATCH;
 import static com.atlassian.jira.util.AttachmentUtils.getAttachmentFile;
 
-public class IssueSynchronizer {
+public class IssueSynchronizer implements DisposableBean {
     static final String PORTAL_TAG = "<portal/>";
     private static final Logger LOG = Logger.getLogger(IssueSynchronizer.class);
     private static final String AS_A_CLIENT = "As a Client";
     private static final String PORTAL_CASE_NUMBER = "Portal Key";
+    private static final String BUSINESS_IMPACT = "Business Impact";
+    private static final String URGENCY = "Urgency";
+    private static final Timer CREATE_TIMER = SyncMetrics.timer("sync.create");
+    private static final Timer CLONE_TIMER = SyncMetrics.timer("sync.clone");
+    private static final Timer UPDATE_TIMER = SyncMetrics.timer("sync.update");
+    private static final Timer ATTACHMENTS_TIMER = SyncMetrics.timer("sync.attachments");
+    private static final Timer COMMENT_TIMER = SyncMetrics.timer("sync.comment");
+    private static final Timer TRANSITION_TIMER = SyncMetrics.timer("sync.transition");
+    private static final String ECHO_TOKENS_GAUGE = "echo.tokens";
     private static final UpdateIssueRequest SILENT_ISSUE_UPDATE = UpdateIssueRequest.builder().sendMail(false).eventDispatchOption(DO_NOT_DISPATCH).build();
-    private final Map<Long, List<String>> ignoreEventsFrom = new HashMap<>();
+    private final EchoSuppressionStore echoSuppression = new EchoSuppressionStore();
+    private final Gauge echoTokensGauge = new Gauge() {
+        @Override
+        public long getValue() {
+            return echoSuppression.size();
+        }
+    };
     private final ProjectRoleManager projectRoleManager;
-    private final CustomIssueLinkManager customIssueLinkManager;
-    private final VersionLinkManager versionLinkManager;
+    private final IssueLinkIndex issueLinkIndex;
+    private final VersionMappingCache versionMappingCache;
     private final ActionResolverManager actionResolverManager;
     private final CommentLinkManager commentLinkManager;
-    private final ProjectExtraFieldsService extraFieldsService;
+    private final PriorityMapperCache priorityMappers;
     private final IssueTransitionValidator issueTransitionValidator;
     private final IssueManager issueManager;
+    private final CustomFieldIndex customFieldIndex;
+    private final ProjectExtraFieldsCache projectExtraCache;
+    private final IssueReindexQueue reindexQueue;
+    private final AttachmentLinkManager attachmentLinkManager;
+    private final CustomFieldMappingPlans fieldMappingPlans;
 
-    protected IssueSynchronizer(ProjectRoleManager projectRoleManager, CustomIssueLinkManager customIssueLinkManager, VersionLinkManager versionLinkManager, ActionResolverManager actionResolverManager, CommentLinkManager commentLinkManager, ProjectExtraFieldsService extraFieldsService, IssueTransitionValidator issueTransitionValidator, IssueManager issueManager) {
+    protected IssueSynchronizer(ProjectRoleManager projectRoleManager, IssueLinkIndex issueLinkIndex, VersionMappingCache versionMappingCache, ActionResolverManager actionResolverManager, CommentLinkManager commentLinkManager, PriorityMapperCache priorityMappers, IssueTransitionValidator issueTransitionValidator, IssueManager issueManager, CustomFieldIndex customFieldIndex, ProjectExtraFieldsCache projectExtraCache, IssueReindexQueue reindexQueue, AttachmentLinkManager attachmentLinkManager, CustomFieldMappingPlans fieldMappingPlans) {
         this.projectRoleManager = projectRoleManager;
-        this.customIssueLinkManager = customIssueLinkManager;
-        this.versionLinkManager = versionLinkManager;
+        this.issueLinkIndex = issueLinkIndex;
+        this.versionMappingCache = versionMappingCache;
         this.actionResolverManager = actionResolverManager;
         this.commentLinkManager = commentLinkManager;
-        this.extraFieldsService = extraFieldsService;
+        this.priorityMappers = priorityMappers;
         this.issueTransitionValidator = issueTransitionValidator;
         this.issueManager = issueManager;
+        this.customFieldIndex = customFieldIndex;
+        this.projectExtraCache = projectExtraCache;
+        this.reindexQueue = reindexQueue;
+        this.attachmentLinkManager = attachmentLinkManager;
+        this.fieldMappingPlans = fieldMappingPlans;
+        SyncMetrics.gauge(ECHO_TOKENS_GAUGE, echoTokensGauge);
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        SyncMetrics.removeGauge(ECHO_TOKENS_GAUGE, echoTokensGauge);
     }
 
 
@@ -82,60 +119,47 @@ public class IssueSynchronizer {
      * @param name  - of field to resolve
      * @return CustomField
      */
-    private static CustomField getCustomFieldByName(Issue issue, String name) {
+    private CustomField getCustomFieldByName(Issue issue, String name) {
         //Do not get watchers fields
         if (name.equalsIgnoreCase("watchers")) {
             return null;
         }
-        CustomFieldManager customFieldManager = ComponentAccessor.getCustomFieldManager();
-        List<CustomField> customFields = customFieldManager.getCustomFieldObjects(issue.getProjectObject().getId(), issue.getIssueTypeObject().getId());
-        for (CustomField customField : customFields) {
-            if (customField.getNameKey().equals(name)) {
-                return customField;
-            }
-        }
-        return null;
+        return customFieldIndex.getCustomFieldByName(issue, name);
     }
 
     boolean isProcess(Issue issue, Long eventTypeId) {
-        boolean retVal = true;
-        synchronized (ignoreEventsFrom) {
-            if (ignoreEventsFrom.containsKey(eventTypeId)) {
-                if (ignoreEventsFrom.get(eventTypeId).contains(Long.toString(issue.getId()))) {
-                    ignoreEventsFrom.get(eventTypeId).remove(Long.toString(issue.getId()));
-                    retVal = false;
-                } else if (ignoreEventsFrom.get(eventTypeId).contains(issue.getSummary())) {
-                    ignoreEventsFrom.get(eventTypeId).remove(issue.getSummary());
-                    retVal = false;
-                }
-            }
-        }
-        return retVal;
+        return !echoSuppression.consume(eventTypeId, Long.toString(issue.getId()))
+                && !echoSuppression.consume(eventTypeId, issue.getSummary());
     }
 
     private void doLock(Issue issue, Long eventTypeId) {
-        synchronized (ignoreEventsFrom) {
-            if (!ignoreEventsFrom.containsKey(eventTypeId)) {
-                ignoreEventsFrom.put(eventTypeId, new ArrayList<String>());
-            }
-            if (!ignoreEventsFrom.get(eventTypeId).contains(Long.toString(issue.getId()))) {
-                ignoreEventsFrom.get(eventTypeId).add(Long.toString(issue.getId()));
-            }
-        }
+        echoSuppression.suppress(eventTypeId, Long.toString(issue.getId()));
     }
 
     private void doLockByName(Issue issue, Long eventTypeId) {
-        synchronized (ignoreEventsFrom) {
-            if (!ignoreEventsFrom.containsKey(eventTypeId)) {
-                ignoreEventsFrom.put(eventTypeId, new ArrayList<String>());
-            }
-            if (!ignoreEventsFrom.get(eventTypeId).contains(issue.getSummary())) {
-                ignoreEventsFrom.get(eventTypeId).add(issue.getSummary());
-            }
+        echoSuppression.suppress(eventTypeId, issue.getSummary());
+    }
+
+    MutableIssue createMirrorIssue(ApplicationUser user, MutableIssue issue, Project relatedProject) {
+        return createMirrorIssue(user, issue, relatedProject, null);
+    }
+
+    /**
+     * Creates mirror of the issue, the link between them is saved together with the mirror
+     *
+     * @param reindexIds - collects ids of issues to reindex, null to schedule them on the reindex queue
+     * @return created mirror, null if it can't be created
+     */
+    MutableIssue createMirrorIssue(ApplicationUser user, MutableIssue issue, Project relatedProject, Set<Long> reindexIds) {
+        long start = System.nanoTime();
+        try {
+            return doCreateMirrorIssue(user, issue, relatedProject, reindexIds);
+        } finally {
+            CREATE_TIMER.recordSince(start);
         }
     }
 
-    void createMirrorIssue(ApplicationUser user, MutableIssue issue, Project relatedProject) {
+    private MutableIssue doCreateMirrorIssue(ApplicationUser user, MutableIssue issue, Project relatedProject, Set<Long> reindexIds) {
         doLockByName(issue, EventType.ISSUE_CREATED_ID);
 
         IssueManager issueManager = ComponentAccessor.getIssueManager();
@@ -147,7 +171,7 @@ public class IssueSynchronizer {
         mirrorIssue.setAssignee(issue.getAssignee());
         mirrorIssue.setReporter(reporter);
 
-        if (extraFieldsService.getProjectExtra(relatedProject.getId()).isPortal()) {
+        if (projectExtraCache.getProjectExtra(relatedProject.getId()).isPortal()) {
             CustomField customField = getCustomFieldByName(issue, AS_A_CLIENT);
             if (null != customField) {
                 @SuppressWarnings("unchecked")
@@ -166,11 +190,10 @@ public class IssueSynchronizer {
 
         try {
             mirrorIssue = (MutableIssue) issueManager.createIssueObject(user.getDirectoryUser(), context);
-            syncAttachments(issue, mirrorIssue, user);
-            reindexIssue(mirrorIssue);
+            syncAttachments(issue, mirrorIssue, user, null);
 
-            if (extraFieldsService.getProjectExtra(issue.getProjectObject().getId()).isPortal()) {
-                customIssueLinkManager.save(issue.getId(), mirrorIssue.getId());
+            if (projectExtraCache.getProjectExtra(issue.getProjectObject().getId()).isPortal()) {
+                issueLinkIndex.save(issue.getId(), mirrorIssue.getId());
                 CustomField portalCaseNumber = getCustomFieldByName(mirrorIssue, PORTAL_CASE_NUMBER);
                 if (null != portalCaseNumber) {
                     mirrorIssue.setCustomFieldValue(portalCaseNumber, issue.getKey());
@@ -178,7 +201,7 @@ public class IssueSynchronizer {
                     LOG.warn("Portal Case Number can't be restored");
                 }
             } else {
-                customIssueLinkManager.save(mirrorIssue.getId(), issue.getId());
+                issueLinkIndex.save(mirrorIssue.getId(), issue.getId());
                 CustomField portalCaseNumber = getCustomFieldByName(issue, PORTAL_CASE_NUMBER);
                 if (null != portalCaseNumber) {
                     issue.setCustomFieldValue(portalCaseNumber, mirrorIssue.getKey());
@@ -194,12 +217,17 @@ public class IssueSynchronizer {
             issueManager.updateIssue(user, issue, SILENT_ISSUE_UPDATE);
             issueManager.updateIssue(user, mirrorIssue, SILENT_ISSUE_UPDATE);
             cleanWatchers(mirrorIssue);
-            reindexIssue(issue);
-            reindexIssue(mirrorIssue);
+            if (null != reindexIds) {
+                reindexIds.add(issue.getId());
+                reindexIds.add(mirrorIssue.getId());
+            } else {
+                reindexQueue.schedule(issue);
+                reindexQueue.schedule(mirrorIssue);
+            }
+            return mirrorIssue;
         } catch (CreateException e) {
             LOG.error("Cannot create issue, details ", e);
-        } catch (IndexException e) {
-            LOG.error("Failed to reindex issue ", e);
+            return null;
         }
     }
 
@@ -218,7 +246,7 @@ public class IssueSynchronizer {
     }
 
     void updateComment(MutableIssue issue, Comment comment) {
-        CommentLinkManager.CommentType commentType = extraFieldsService.getProjectExtra(issue.getProjectObject().getId()).isPortal() ? CommentLinkManager.CommentType.INTERNAL : CommentLinkManager.CommentType.PORTAL;
+        CommentLinkManager.CommentType commentType = projectExtraCache.getProjectExtra(issue.getProjectObject().getId()).isPortal() ? CommentLinkManager.CommentType.INTERNAL : CommentLinkManager.CommentType.PORTAL;
         CommentLink commentLink = commentLinkManager.getCommentByTypeAndId(commentType, comment.getId());
         if (null == commentLink) return;
         CommentManager commentManager = ComponentAccessor.getCommentManager();
@@ -243,12 +271,21 @@ public class IssueSynchronizer {
     }
 
     void copyComment(MutableIssue issue, MutableIssue relatedIssue, Comment comment) {
+        long start = System.nanoTime();
+        try {
+            doCopyComment(issue, relatedIssue, comment);
+        } finally {
+            COMMENT_TIMER.recordSince(start);
+        }
+    }
+
+    private void doCopyComment(MutableIssue issue, MutableIssue relatedIssue, Comment comment) {
         if (null == comment) return;
-        Boolean isPortal = extraFieldsService.getProjectExtra(issue.getProjectObject().getId()).isPortal();
+        Boolean isPortal = projectExtraCache.getProjectExtra(issue.getProjectObject().getId()).isPortal();
         if (shouldNotifyPortal(comment) || isPortal) {
             if (null != relatedIssue) {
                 Project project = issue.getProjectObject();
-                Project relatedProject = ComponentAccessor.getProjectManager().getProjectObj(extraFieldsService.getProjectExtra(project.getId()).getRelatedProjectId());
+                Project relatedProject = projectExtraCache.getRelatedProject(project.getId());
                 if (null != relatedProject) {
                     CommentManager commentManager = ComponentAccessor.getCommentManager();
                     Date created = new Date();
@@ -270,6 +307,14 @@ public class IssueSynchronizer {
         }
     }
 
+    /**
+     * @return true if the comment of the issue has a linked copy in the related issue
+     */
+    boolean isCommentCopied(Issue issue, Comment comment) {
+        CommentLinkManager.CommentType commentType = projectExtraCache.getProjectExtra(issue.getProjectObject().getId()).isPortal() ? CommentLinkManager.CommentType.PORTAL : CommentLinkManager.CommentType.INTERNAL;
+        return null != commentLinkManager.getCommentByTypeAndId(commentType, comment.getId());
+    }
+
     private User getOwner(ProjectRoleManager projectRoleManager, Project relatedProject) {
         User retVal = null;
         ProjectRole projectRole = projectRoleManager.getProjectRole("Portal Owner");
@@ -283,116 +328,241 @@ public class IssueSynchronizer {
         return retVal;
     }
 
-    private void reindexIssue(Issue issue) throws IndexException {
-        boolean oldIndexIssuesValue = ImportUtils.isIndexIssues();
-        ImportUtils.setIndexIssues(true);
-        IssueIndexManager issueIndexManager = ComponentAccessor.getIssueIndexManager();
-        issueIndexManager.reIndex(issue);
-        ImportUtils.setIndexIssues(oldIndexIssuesValue);
+    /**
+     * @return id of the portal side of the issue's link, the issue id itself for a portal issue or an issue without link
+     */
+    Long getPortalIssueId(boolean isPortalIssue, Long issueId) {
+        if (isPortalIssue) {
+            return issueId;
+        }
+        Long portalIssueId = issueLinkIndex.getSource(issueId);
+        return null != portalIssueId ? portalIssueId : issueId;
     }
 
     MutableIssue getRelatedIssue(Boolean isPortalIssue, Issue currentIssue) {
-        CustomIssueLink issueLink = isPortalIssue ? customIssueLinkManager.getLinkBySource(currentIssue.getId()) : customIssueLinkManager.getLinkByTarget(currentIssue.getId());
-        if (issueLink != null) {
-            return issueManager.getIssueObject(isPortalIssue ? issueLink.getTarget() : issueLink.getSource());
+        Long relatedIssueId = isPortalIssue ? issueLinkIndex.getTarget(currentIssue.getId()) : issueLinkIndex.getSource(currentIssue.getId());
+        if (relatedIssueId != null) {
+            return issueManager.getIssueObject(relatedIssueId);
         }
         return null;
     }
 
-    void updateIssue(ApplicationUser user, MutableIssue issue, MutableIssue relatedIssue, Comment comment, Long eventTypeId) {
-        relatedIssue.setAffectedVersions(issue.getAffectedVersions());
-        relatedIssue.setFixVersions(issue.getFixVersions());
-        relatedIssue.setAssignee(issue.getAssignee());
-        relatedIssue.setDescription(issue.getDescription());
-        relatedIssue.setDueDate(issue.getDueDate());
-        relatedIssue.setEnvironment(issue.getEnvironment());
-        relatedIssue.setEstimate(issue.getEstimate());
-        relatedIssue.setOriginalEstimate(issue.getOriginalEstimate());
+    /**
+     * Copies issue changes to related issue. When event change history is known only changed fields are copied,
+     * otherwise all fields are.
+     *
+     * @param changes - change history of the event, null if unknown
+     */
+    void updateIssue(ApplicationUser user, MutableIssue issue, MutableIssue relatedIssue, Comment comment, Long eventTypeId, IssueChangeLog changes) {
+        long start = System.nanoTime();
+        try {
+            doUpdateIssue(user, issue, relatedIssue, comment, eventTypeId, changes);
+        } finally {
+            UPDATE_TIMER.recordSince(start);
+        }
+    }
 
-        if (extraFieldsService.getProjectExtra(issue.getProjectObject().getId()).isPortal()) {
-            updatePriority(issue, relatedIssue);
-        } else {
+    private void doUpdateIssue(ApplicationUser user, MutableIssue issue, MutableIssue relatedIssue, Comment comment, Long eventTypeId, IssueChangeLog changes) {
+        if (isChanged(changes, AFFECTED_VERSIONS)) {
+            relatedIssue.setAffectedVersions(issue.getAffectedVersions());
+            correctAffectedVersions(relatedIssue);
+        }
+        if (isChanged(changes, FIX_VERSIONS)) {
+            relatedIssue.setFixVersions(issue.getFixVersions());
+            correctFixVersions(relatedIssue);
+        }
+        if (isChanged(changes, ASSIGNEE)) relatedIssue.setAssignee(issue.getAssignee());
+        if (isChanged(changes, DESCRIPTION)) relatedIssue.setDescription(issue.getDescription());
+        if (isChanged(changes, DUE_DATE)) relatedIssue.setDueDate(issue.getDueDate());
+        if (isChanged(changes, ENVIRONMENT)) relatedIssue.setEnvironment(issue.getEnvironment());
+        if (isChanged(changes, ESTIMATE)) relatedIssue.setEstimate(issue.getEstimate());
+        if (isChanged(changes, ORIGINAL_ESTIMATE)) relatedIssue.setOriginalEstimate(issue.getOriginalEstimate());
+
+        if (projectExtraCache.getProjectExtra(issue.getProjectObject().getId()).isPortal()) {
+            if (isPriorityInputChanged(changes)) {
+                updatePriority(issue, relatedIssue);
+            }
+        } else if (isChanged(changes, PRIORITY)) {
             relatedIssue.setPriorityObject(issue.getPriorityObject());
         }
-        relatedIssue.setLabels(issue.getLabels());
-        relatedIssue.setIssueTypeObject(issue.getIssueTypeObject());
-        relatedIssue.setReporter(issue.getReporter());
-        relatedIssue.setSummary(issue.getSummary());
-        relatedIssue.setTimeSpent(issue.getTimeSpent());
-        relatedIssue.setResolutionObject(issue.getResolutionObject());
-
-        correctVersions(relatedIssue);
-        populateCustomFields(issue, relatedIssue);
+        if (isChanged(changes, LABELS)) relatedIssue.setLabels(issue.getLabels());
+        if (isChanged(changes, ISSUE_TYPE)) relatedIssue.setIssueTypeObject(issue.getIssueTypeObject());
+        if (isChanged(changes, REPORTER)) relatedIssue.setReporter(issue.getReporter());
+        if (isChanged(changes, SUMMARY)) relatedIssue.setSummary(issue.getSummary());
+        if (isChanged(changes, TIME_SPENT)) relatedIssue.setTimeSpent(issue.getTimeSpent());
+        if (isChanged(changes, RESOLUTION)) relatedIssue.setResolutionObject(issue.getResolutionObject());
+
+        if (null == changes) {
+            populateCustomFields(issue, relatedIssue);
+        } else {
+            populateChangedFields(issue, relatedIssue, changes);
+        }
 
-        syncAttachments(issue, relatedIssue, user);
+        syncAttachments(issue, relatedIssue, user, changes);
 
-        issueManager.updateIssue(user, relatedIssue, SILENT_ISSUE_UPDATE);
+        // nothing to store when the event changed only what is synchronized separately (status, attachments, comment)
+        if (null == changes || changes.hasFieldChanges()) {
+            issueManager.updateIssue(user, relatedIssue, SILENT_ISSUE_UPDATE);
+        }
         copyComment(issue, relatedIssue, comment);
 
         if (eventTypeId >= 10000) {
             changeIssueStatus(eventTypeId, issue, relatedIssue, user);
         }
-        try {
-            reindexIssue(issueManager.getIssueObject(relatedIssue.getId()));
-        } catch (IndexException e) {
-            LOG.error(e);
+        if (null == changes || changes.hasFieldChanges() || changes.hasAttachmentChanges()) {
+            reindexQueue.schedule(relatedIssue.getId());
         }
     }
 
+    private static boolean isChanged(IssueChangeLog changes, String field) {
+        return null == changes || changes.isChanged(field);
+    }
+
+    /**
+     * Portal priority and due date are derived from issue type, impact and urgency
+     */
+    private static boolean isPriorityInputChanged(IssueChangeLog changes) {
+        return null == changes || changes.isChanged(PRIORITY) || changes.isChanged(ISSUE_TYPE)
+                || changes.isCustomFieldChanged(BUSINESS_IMPACT) || changes.isCustomFieldChanged(URGENCY);
+    }
+
+    void syncAttachments(MutableIssue issue, MutableIssue relatedIssue, ApplicationUser applicationUser, IssueChangeLog changes) {
+        long start = System.nanoTime();
+        try {
+            doSyncAttachments(issue, relatedIssue, applicationUser, changes);
+        } finally {
+            ATTACHMENTS_TIMER.recordSince(start);
+        }
+    }
 
-    private void syncAttachments(MutableIssue issue, MutableIssue relatedIssue, ApplicationUser applicationUser) {
+    private void doSyncAttachments(MutableIssue issue, MutableIssue relatedIssue, ApplicationUser applicationUser, IssueChangeLog changes) {
         Project project = issue.getProjectObject();
-        Project relatedProject = ComponentAccessor.getProjectManager().getProjectObj(extraFieldsService.getProjectExtra(project.getId()).getRelatedProjectId());
+        Project relatedProject = projectExtraCache.getRelatedProject(project.getId());
         if (null == relatedProject) return;
+        if (null != changes && !changes.hasAttachmentChanges()) return;
 
+        boolean isPortal = projectExtraCache.getProjectExtra(project.getId()).isPortal();
+        AttachmentType attachmentType = isPortal ? AttachmentType.PORTAL : AttachmentType.INTERNAL;
         AttachmentManager attachmentManager = ComponentAccessor.getAttachmentManager();
-        int currentIssueAttachmentsCount = attachmentManager.getAttachments(issue).size();
-        int relatedIssueAttachmentsCount = attachmentManager.getAttachments(relatedIssue).size();
-        //attachment was added
-        if (currentIssueAttachmentsCount > relatedIssueAttachmentsCount) {
-            Set<String> relatedIssueAttachmentKeys = new HashSet<>();
-            for (Attachment attachment : attachmentManager.getAttachments(relatedIssue)) {
-                relatedIssueAttachmentKeys.add(attachment.getFilename() + "||" + attachment.getFilesize());
-            }
+        if (null == changes) {
+            syncAllAttachments(issue, relatedIssue, applicationUser, isPortal, attachmentType, attachmentManager);
+            return;
+        }
 
-            for (Attachment attachment : attachmentManager.getAttachments(issue)) {
-                String currentIssueAttachmentKey = attachment.getFilename() + "||" + attachment.getFilesize();
-                if (!relatedIssueAttachmentKeys.contains(currentIssueAttachmentKey)) {
-                    createAttachment(attachment, relatedIssue, applicationUser);
+        if (!changes.getAddedAttachmentIds().isEmpty()) {
+            Map<Long, Attachment> attachments = attachmentsById(attachmentManager.getAttachments(issue));
+            for (Long attachmentId : changes.getAddedAttachmentIds()) {
+                Attachment attachment = attachments.get(attachmentId);
+                if (null != attachment && null == attachmentLinkManager.getAttachmentByTypeAndId(attachmentType, attachmentId)) {
+                    mirrorAttachment(attachment, issue, relatedIssue, applicationUser, isPortal);
+                }
+            }
+        }
+        if (!changes.getRemovedAttachmentIds().isEmpty()) {
+            Map<Long, Attachment> relatedAttachments = attachmentsById(attachmentManager.getAttachments(relatedIssue));
+            for (Long attachmentId : changes.getRemovedAttachmentIds()) {
+                AttachmentLink link = attachmentLinkManager.getAttachmentByTypeAndId(attachmentType, attachmentId);
+                if (null != link) {
+                    Attachment mirror = relatedAttachments.get(isPortal ? link.getInternalAttachmentId() : link.getPortalAttachmentId());
+                    if (null != mirror) {
+                        removeAttachment(mirror, relatedIssue);
+                    }
+                    attachmentLinkManager.removeByAttachment(attachmentType, attachmentId);
                 }
             }
-        }//attachment was removed.
-        else if (currentIssueAttachmentsCount < relatedIssueAttachmentsCount) {
-            Set<String> currentIssueAttachmentKeys = new HashSet<>();
-            for (Attachment attachment : attachmentManager.getAttachments(issue)) {
-                currentIssueAttachmentKeys.add(attachment.getFilename() + "||" + attachment.getFilesize());
+        }
+    }
+
+    /**
+     * Compares all attachments of both issues using attachment links, used when event has no change history.
+     * Mirrors created before attachments were linked are matched by file name and size and get linked.
+     */
+    private void syncAllAttachments(MutableIssue issue, MutableIssue relatedIssue, ApplicationUser applicationUser, boolean isPortal, AttachmentType attachmentType, AttachmentManager attachmentManager) {
+        Map<Long, Long> mirrorIdsBySourceId = attachmentLinkManager.getLinkedAttachments(attachmentType, issue.getId());
+        Map<Long, Attachment> relatedAttachments = attachmentsById(attachmentManager.getAttachments(relatedIssue));
+        Map<String, Attachment> unlinkedRelatedAttachments = new HashMap<>();
+        for (Attachment attachment : relatedAttachments.values()) {
+            if (!mirrorIdsBySourceId.containsValue(attachment.getId())) {
+                unlinkedRelatedAttachments.put(attachment.getFilename() + "||" + attachment.getFilesize(), attachment);
             }
+        }
 
-            for (Attachment attachment : attachmentManager.getAttachments(relatedIssue)) {
-                String relatedIssueAttachmentKey = attachment.getFilename() + "||" + attachment.getFilesize();
-                if (!currentIssueAttachmentKeys.contains(relatedIssueAttachmentKey)) {
-                    removeAttachment(attachment, relatedIssue);
-                }
+        for (Attachment attachment : attachmentManager.getAttachments(issue)) {
+            Long mirrorId = mirrorIdsBySourceId.remove(attachment.getId());
+            if (null != mirrorId && relatedAttachments.containsKey(mirrorId)) {
+                continue;
             }
+            if (null != mirrorId) {
+                attachmentLinkManager.removeByAttachment(attachmentType, attachment.getId());
+            }
+            Attachment legacyMirror = unlinkedRelatedAttachments.remove(attachment.getFilename() + "||" + attachment.getFilesize());
+            if (null != legacyMirror) {
+                saveAttachmentLink(issue, relatedIssue, attachment.getId(), legacyMirror.getId(), isPortal);
+            } else {
+                mirrorAttachment(attachment, issue, relatedIssue, applicationUser, isPortal);
+            }
+        }
+
+        //attachments which were removed from the issue
+        for (Map.Entry<Long, Long> link : mirrorIdsBySourceId.entrySet()) {
+            Attachment mirror = relatedAttachments.get(link.getValue());
+            if (null != mirror) {
+                removeAttachment(mirror, relatedIssue);
+            }
+            attachmentLinkManager.removeByAttachment(attachmentType, link.getKey());
         }
     }
 
-    private void createAttachment(Attachment attachment, MutableIssue relatedIssue, ApplicationUser applicationUser) {
+    private void mirrorAttachment(Attachment attachment, MutableIssue issue, MutableIssue relatedIssue, ApplicationUser applicationUser, boolean isPortal) {
+        Long mirrorId = createAttachment(attachment, relatedIssue, applicationUser);
+        if (null != mirrorId) {
+            saveAttachmentLink(issue, relatedIssue, attachment.getId(), mirrorId, isPortal);
+        }
+    }
+
+    private void saveAttachmentLink(Issue issue, Issue relatedIssue, Long attachmentId, Long mirrorId, boolean isPortal) {
+        if (isPortal) {
+            attachmentLinkManager.save(issue.getId(), relatedIssue.getId(), attachmentId, mirrorId);
+        } else {
+            attachmentLinkManager.save(relatedIssue.getId(), issue.getId(), mirrorId, attachmentId);
+        }
+    }
+
+    private static Map<Long, Attachment> attachmentsById(List<Attachment> attachments) {
+        Map<Long, Attachment> attachmentsById = new HashMap<>(attachments.size() * 2);
+        for (Attachment attachment : attachments) {
+            attachmentsById.put(attachment.getId(), attachment);
+        }
+        return attachmentsById;
+    }
+
+    /**
+     * @return id of created attachment, null if attachment can't be cloned
+     */
+    Long createAttachment(Attachment attachment, MutableIssue relatedIssue, ApplicationUser applicationUser) {
         AttachmentManager attachmentManager = ComponentAccessor.getAttachmentManager();
         File attachmentFile = getAttachmentFile(attachment);
         if (attachmentFile.exists() && attachmentFile.canRead()) {
+            File replica = null;
             try {
+                // Jira moves the replica into the mirror issue instead of copying the source
+                replica = AttachmentReplicator.replicate(attachmentFile);
                 CreateAttachmentParamsBean.Builder builder = new CreateAttachmentParamsBean.Builder();
-                builder.file(attachmentFile).filename(attachment.getFilename()).contentType(attachment.getMimetype());
+                builder.file(replica).filename(attachment.getFilename()).contentType(attachment.getMimetype());
                 builder.author(applicationUser).issue(relatedIssue).createdTime(new Timestamp(System.currentTimeMillis()));
-                builder.copySourceFile(true);
-                attachmentManager.createAttachment(builder.build());
-            } catch (AttachmentException e) {
+                builder.copySourceFile(false);
+                ChangeItemBean createdAttachment = attachmentManager.createAttachment(builder.build());
+                return Long.valueOf(createdAttachment.getTo());
+            } catch (AttachmentException | IOException e) {
                 LOG.warn((new StringBuilder()).append("Could not clone attachment with id '")
                         .append(attachment.getId()).append("' and file path '")
                         .append(attachmentFile.getAbsolutePath()).append("' for issue with id '")
                         .append(relatedIssue.getId()).append("' and key '")
                         .append(relatedIssue.getKey()).append("'.").toString(), e);
+            } finally {
+                if (null != replica && replica.exists() && !replica.delete()) {
+                    LOG.warn("Attachment replica '" + replica.getAbsolutePath() + "' can't be removed");
+                }
             }
         } else {
             LOG.warn((new StringBuilder())
@@ -402,9 +572,10 @@ public class IssueSynchronizer {
                     .append(relatedIssue.getKey()).append("', ").append("because the file path ")
                     .append(attachmentFile.exists() ? "is not readable." : "does not exist.").toString());
         }
+        return null;
     }
 
-    private void removeAttachment(Attachment attachment, MutableIssue relatedIssue) {
+    void removeAttachment(Attachment attachment, MutableIssue relatedIssue) {
         File attachmentFile = getAttachmentFile(attachment);
         if (attachmentFile.exists() && attachmentFile.canRead()) {
             try {
@@ -432,9 +603,10 @@ public class IssueSynchronizer {
      * @param issue to clean up
      */
     void removeIssueLink(Issue issue) {
-        boolean isPortal = extraFieldsService.getProjectExtra(issue.getProjectObject().getId()).isPortal();
-        customIssueLinkManager.remove(issue.getId(), isPortal);
+        boolean isPortal = projectExtraCache.getProjectExtra(issue.getProjectObject().getId()).isPortal();
+        issueLinkIndex.remove(issue.getId(), isPortal);
         commentLinkManager.remove(issue.getId());
+        attachmentLinkManager.remove(issue.getId());
     }
 
     /**
@@ -459,12 +631,12 @@ public class IssueSynchronizer {
                 retVal.setResolutionId(issue.getResolutionObject().getId());
             }
             if (issue.getFixVersions().size() != 0) {
-                List<Long> fixVersions = new ArrayList<>();
-                for (Version version : issue.getFixVersions()) {
-                    Version v = versionLinkManager.restoreVersion(version.getId(), !extraFields.isPortal());
-                    if (null != v) fixVersions.add(v.getId());
+                List<Version> restoredVersions = versionMappingCache.restoreVersions(issue.getFixVersions(), !extraFields.isPortal());
+                Long[] fixVersions = new Long[restoredVersions.size()];
+                for (int i = 0; i < fixVersions.length; i++) {
+                    fixVersions[i] = restoredVersions.get(i).getId();
                 }
-                retVal.setFixVersionIds(fixVersions.toArray(new Long[fixVersions.size()]));
+                retVal.setFixVersionIds(fixVersions);
             }
             retVal.setDescription(issue.getDescription());
             retVal.setTimeSpent(issue.getTimeSpent());
@@ -489,8 +661,16 @@ public class IssueSynchronizer {
     }
 
     void transitIssue(Long eventTypeId, MutableIssue issue, MutableIssue relatedIssue, ApplicationUser user, Comment comment, ProjectExtraFields extraFields) {
-        ActionDescriptor actionDescriptor = actionResolverManager.getActionId(issue, relatedIssue);
-        Integer id = null != actionDescriptor ? actionDescriptor.getId() : actionResolverManager.resolve(eventTypeId, relatedIssue);
+        long start = System.nanoTime();
+        try {
+            doTransitIssue(eventTypeId, issue, relatedIssue, user, comment, extraFields);
+        } finally {
+            TRANSITION_TIMER.recordSince(start);
+        }
+    }
+
+    private void doTransitIssue(Long eventTypeId, MutableIssue issue, MutableIssue relatedIssue, ApplicationUser user, Comment comment, ProjectExtraFields extraFields) {
+        Integer id = resolveActionId(eventTypeId, issue, relatedIssue);
         IssueInputParameters issueInputParameters = getParamsBasedOnAction(issue, eventTypeId, extraFields);
         IssueService.TransitionValidationResult validationResult = issueTransitionValidator.validateTransition(user, relatedIssue.getId(), id, issueInputParameters, TransitionOptions.defaults());
 
@@ -504,11 +684,27 @@ public class IssueSynchronizer {
         }
     }
 
+    /**
+     * Resolves action of related issue's workflow matching status change or event of the issue
+     */
+    private Integer resolveActionId(Long eventTypeId, Issue issue, Issue relatedIssue) {
+        ActionDescriptor actionDescriptor = actionResolverManager.getActionId(issue, relatedIssue);
+        return null != actionDescriptor ? actionDescriptor.getId() : actionResolverManager.resolve(eventTypeId, relatedIssue);
+    }
+
     private void changeIssueStatus(Long eventTypeId, MutableIssue issue, MutableIssue relatedIssue, ApplicationUser user) {
+        long start = System.nanoTime();
+        try {
+            doChangeIssueStatus(eventTypeId, issue, relatedIssue, user);
+        } finally {
+            TRANSITION_TIMER.recordSince(start);
+        }
+    }
+
+    private void doChangeIssueStatus(Long eventTypeId, MutableIssue issue, MutableIssue relatedIssue, ApplicationUser user) {
         IssueService issueService = ComponentAccessor.getIssueService();
         IssueInputParameters issueInputParameters = ComponentAccessor.getIssueService().newIssueInputParameters();
-        ActionDescriptor actionDescriptor = actionResolverManager.getActionId(issue, relatedIssue);
-        Integer id = actionDescriptor == null ? actionResolverManager.resolve(eventTypeId, relatedIssue) : actionDescriptor.getId();
+        Integer id = resolveActionId(eventTypeId, issue, relatedIssue);
 
         doLock(relatedIssue, eventTypeId);
         IssueService.TransitionValidationResult validationResult = issueTransitionValidator.validateTransition(user, relatedIssue.getId(), id, issueInputParameters, TransitionOptions.defaults());
@@ -520,6 +716,15 @@ public class IssueSynchronizer {
     }
 
     private MutableIssue cloneIssue(Issue issue, Project project) {
+        long start = System.nanoTime();
+        try {
+            return doCloneIssue(issue, project);
+        } finally {
+            CLONE_TIMER.recordSince(start);
+        }
+    }
+
+    private MutableIssue doCloneIssue(Issue issue, Project project) {
         Timestamp time = new Timestamp(new Date().getTime());
         IssueFactory issueFactory = ComponentAccessor.getIssueFactory();
 
@@ -538,25 +743,21 @@ public class IssueSynchronizer {
         return conedIssue;
     }
 
-    private void populateCustomFields(Issue sourceIssue, MutableIssue destinationIssue) {
-        CustomFieldManager customFieldManager = ComponentAccessor.getCustomFieldManager();
+    void populateCustomFields(Issue sourceIssue, MutableIssue destinationIssue) {
         processComponents(sourceIssue, destinationIssue, destinationIssue.getProjectObject());
-        List<CustomField> sourceCustomFields = customFieldManager.getCustomFieldObjects(sourceIssue.getProjectObject().getId(), sourceIssue.getIssueTypeObject().getId());
+        for (CustomField customField : fieldMappingPlans.getPlan(sourceIssue, destinationIssue)) {
+            destinationIssue.setCustomFieldValue(customField, sourceIssue.getCustomFieldValue(customField));
+        }
+    }
 
-        for (CustomField sourceCustomField : sourceCustomFields) {
-            // Do not clone calculated fields
-            if (sourceCustomField.getCustomFieldType() instanceof CalculatedCFType) continue;
-            //Do not clone watchers fields
-            if ((sourceCustomField.getName().equalsIgnoreCase("watchers")) || (sourceCustomField.getNameKey().equalsIgnoreCase("watchers")))
-                continue;
-            // [CWJIRAUTIL-16] Target/Destination issue does not have a value for this field
-            try {
-                destinationIssue.getCustomFieldValue(sourceCustomField);
-            } catch (Exception e) {
-                continue;
+    void populateChangedFields(Issue sourceIssue, MutableIssue destinationIssue, IssueChangeLog changes) {
+        if (changes.isChanged(COMPONENTS)) {
+            processComponents(sourceIssue, destinationIssue, destinationIssue.getProjectObject());
+        }
+        for (CustomField customField : fieldMappingPlans.getPlan(sourceIssue, destinationIssue)) {
+            if (changes.isCustomFieldChanged(customField.getName())) {
+                destinationIssue.setCustomFieldValue(customField, sourceIssue.getCustomFieldValue(customField));
             }
-            Object currentSourceValue = sourceIssue.getCustomFieldValue(sourceCustomField);
-            destinationIssue.setCustomFieldValue(sourceCustomField, currentSourceValue);
         }
     }
 
@@ -573,8 +774,8 @@ public class IssueSynchronizer {
     }
 
     private void updatePriority(MutableIssue issue, MutableIssue mirrorIssue) {
-        CustomField impactField = getCustomFieldByName(issue, "Business Impact");
-        CustomField urgencyField = getCustomFieldByName(issue, "Urgency");
+        CustomField impactField = getCustomFieldByName(issue, BUSINESS_IMPACT);
+        CustomField urgencyField = getCustomFieldByName(issue, URGENCY);
 
         String impact = null;
         String urgency = null;
@@ -583,9 +784,6 @@ public class IssueSynchronizer {
         Integer priority;
         Timestamp dueDate;
 
-        Project portal = issue.getProjectObject();
-        PriorityMapper priorityMapper = new PriorityMapper(portal, extraFieldsService);
-
         if (impactField != null) {
             Object impactValue = issue.getCustomFieldValue(impactField);
             impact = impactValue != null ? impactValue.toString() : null;
@@ -594,7 +792,16 @@ public class IssueSynchronizer {
             Object urgencyValue = issue.getCustomFieldValue(urgencyField);
             urgency = urgencyValue != null ? urgencyValue.toString() : null;
         }
-        PriorityMapper.MappingStructure mapping = priorityMapper.getMapping(type, urgency, impact);
+
+        PriorityMapper priorityMapper = priorityMappers.getMapper(issue.getProjectObject());
+        PriorityMapper.MappingStructure mapping;
+        Date priorityDueDate = null;
+        synchronized (priorityMapper) {
+            mapping = priorityMapper.getMapping(type, urgency, impact);
+            if (null == mapping && null == issue.getDueDate() && null != issue.getPriorityObject()) {
+                priorityDueDate = priorityMapper.getDueDate(issue.getPriorityObject().getName());
+            }
+        }
         if (null != mapping) {
             priority = mapping.getPriority();
             dueDate = new Timestamp(mapping.getDueDate().getTime());
@@ -606,15 +813,14 @@ public class IssueSynchronizer {
             } else {
                 mirrorIssue.setPriorityObject(issue.getPriorityObject());
             }
-        } else if (null == issue.getDueDate() && null != issue.getPriorityObject() && null != priorityMapper.getDueDate(issue.getPriorityObject().getName())) {
-            dueDate = new Timestamp(priorityMapper.getDueDate(issue.getPriorityObject().getName()).getTime());
+        } else if (null != priorityDueDate) {
+            dueDate = new Timestamp(priorityDueDate.getTime());
             mirrorIssue.setDueDate(dueDate);
             issue.setDueDate(dueDate);
         } else {
             mirrorIssue.setPriorityObject(issue.getPriorityObject());
             LOG.error("Can't find priority mapping for issue: [" + issue + "] mirror: [" + mirrorIssue + "]");
         }
-        priorityMapper.clear();
     }
 
     private void correctVersions(MutableIssue issue) {
@@ -623,35 +829,13 @@ public class IssueSynchronizer {
     }
 
     private void correctFixVersions(MutableIssue issue) {
-        Collection<Version> versions = issue.getFixVersions();
-        Collection<Version> mirrorVersionsFromProject = new ArrayList<>();
-
-        Project issueProject = issue.getProjectObject();
-        boolean isPortal = extraFieldsService.getProjectExtra(issueProject.getId()).isPortal();
-        restoreVersions(versions, mirrorVersionsFromProject, isPortal);
-        issue.setFixVersions(mirrorVersionsFromProject);
-    }
-
-    private void restoreVersions(Collection<Version> versions, Collection<Version> mirrorVersionsFromProject, boolean isPortal) {
-        for (Version versionToConvert : versions) {
-            Version restoredVersion = versionLinkManager.restoreVersion(versionToConvert.getId(), isPortal);
-            if (restoredVersion != null) {
-                mirrorVersionsFromProject.add(restoredVersion);
-            } else {
-                LOG.error("Version with id '" + versionToConvert.getId() + "' can't be restored..");
-            }
-        }
+        boolean isPortal = projectExtraCache.getProjectExtra(issue.getProjectObject().getId()).isPortal();
+        issue.setFixVersions(versionMappingCache.restoreVersions(issue.getFixVersions(), isPortal));
     }
 
     private void correctAffectedVersions(MutableIssue issue) {
-        Collection<Version> versions = issue.getAffectedVersions();
-        Collection<Version> mirrorVersionsFromProject = new ArrayList<>();
-
-        Project issueProject = issue.getProjectObject();
-        boolean isPortal = extraFieldsService.getProjectExtra(issueProject.getId()).isPortal();
-
-        restoreVersions(versions, mirrorVersionsFromProject, isPortal);
-        issue.setAffectedVersions(mirrorVersionsFromProject);
+        boolean isPortal = projectExtraCache.getProjectExtra(issue.getProjectObject().getId()).isPortal();
+        issue.setAffectedVersions(versionMappingCache.restoreVersions(issue.getAffectedVersions(), isPortal));
     }
 
     boolean shouldNotifyPortal(Comment comment) {
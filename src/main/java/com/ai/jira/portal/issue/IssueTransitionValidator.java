@@ -1,5 +1,6 @@
 package com.ai.jira.portal.issue;
 
+import com.ai.jira.portal.WorkflowTransitionTable;
 import com.atlassian.jira.bc.issue.DefaultIssueService;
 import com.atlassian.jira.bc.issue.IssueService;
 import com.atlassian.jira.component.ComponentAccessor;
@@ -14,17 +15,14 @@ import com.atlassian.jira.user.ApplicationUser;
 import com.atlassian.jira.util.ErrorCollection;
 import com.atlassian.jira.util.I18nHelper;
 import com.atlassian.jira.util.SimpleErrorCollection;
-import com.atlassian.jira.web.bean.I18nBean;
-import com.atlassian.jira.workflow.JiraWorkflow;
 import com.atlassian.jira.workflow.TransitionOptions;
-import com.atlassian.jira.workflow.WorkflowManager;
 import com.opensymphony.workflow.loader.ActionDescriptor;
-import com.opensymphony.workflow.loader.WorkflowDescriptor;
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 
 import javax.annotation.Nullable;
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Method;
 import java.util.Map;
 
@@ -33,16 +31,49 @@ import java.util.Map;
  */
 public class IssueTransitionValidator {
     private static final Logger LOG = Logger.getLogger(IssueTransitionValidator.class);
+    // DefaultIssueService internals are resolved once, plugin fails to start if their signatures change
+    private static final MethodHandle CLONE_FIELD_VALUES_HOLDER = resolve("cloneFieldValuesHolder", IssueInputParameters.class);
+    private static final MethodHandle VALIDATE_AND_UPDATE_ISSUE_FROM_FIELDS = resolve("validateAndUpdateIssueFromFields",
+            ApplicationUser.class,
+            MutableIssue.class,
+            IssueInputParameters.class,
+            Map.class,
+            ErrorCollection.class,
+            I18nHelper.class,
+            FieldScreenRenderer.class,
+            boolean.class,
+            Integer.class);
+    private static final MethodHandle CREATE_ADDITIONAL_PARAMETERS = resolve("createAdditionalParameters",
+            ApplicationUser.class,
+            Map.class,
+            TransitionOptions.class,
+            HistoryMetadata.class,
+            String.class);
     private final IssueManager issueManager = ComponentAccessor.getIssueManager();
     private final FieldScreenRendererFactory fieldScreenRendererFactory = ComponentAccessor.getFieldScreenRendererFactory();
-    private final WorkflowManager workflowManager = ComponentAccessor.getWorkflowManager();
     private final IssueService issueService = ComponentAccessor.getIssueService();
+    private final I18nHelper.BeanFactory i18nFactory = ComponentAccessor.getI18nHelperFactory();
+    private final WorkflowTransitionTable transitionTable;
+
+    public IssueTransitionValidator(WorkflowTransitionTable transitionTable) {
+        this.transitionTable = transitionTable;
+    }
+
+    private static MethodHandle resolve(String name, Class<?>... parameterTypes) {
+        try {
+            Method method = DefaultIssueService.class.getDeclaredMethod(name, parameterTypes);
+            method.setAccessible(true);
+            return MethodHandles.lookup().unreflect(method);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalStateException("DefaultIssueService." + name + " can't be resolved, transitions can't be validated on this Jira version", e);
+        }
+    }
 
     public IssueService.TransitionValidationResult validateTransition(ApplicationUser user, Long issueId, int actionId, IssueInputParameters issueInputParameters, TransitionOptions transitionOptions) {
         if (issueInputParameters == null) {
             throw new IllegalArgumentException("You must provide a non-null issueInputParameters.");
         }
-        final I18nHelper i18n = new I18nBean(user);
+        final I18nHelper i18n = i18nFactory.getInstance(user);
         final Map<String, Object> fieldValuesHolder = cloneFieldValuesHolder(issueInputParameters);
         final SimpleErrorCollection errors = new SimpleErrorCollection();
         if (issueId == null) {
@@ -86,35 +117,21 @@ public class IssueTransitionValidator {
         return new IssueService.TransitionValidationResult(updatedIssue, errors, fieldValuesHolder, additionalParams, actionId);
     }
 
+    @SuppressWarnings("unchecked")
     private Map<String, Object> cloneFieldValuesHolder(IssueInputParameters issueInputParameters) {
-        Method cloneFieldValuesHolder;
-        try {
-            cloneFieldValuesHolder = DefaultIssueService.class.getDeclaredMethod("cloneFieldValuesHolder", IssueInputParameters.class);
-        } catch (NoSuchMethodException e) {
-            LOG.error(e);
-            return null;
-        }
-        cloneFieldValuesHolder.setAccessible(true);
         Map<String, Object> result = null;
         try {
-            result = (Map<String, Object>) cloneFieldValuesHolder.invoke(issueService, issueInputParameters);
-        } catch (IllegalAccessException | InvocationTargetException e) {
+            result = (Map<String, Object>) CLONE_FIELD_VALUES_HOLDER.invoke(issueService, issueInputParameters);
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
             LOG.error(e);
         }
         return result;
     }
 
     ActionDescriptor getActionDescriptor(Issue issue, int actionId) {
-        final JiraWorkflow workflow = workflowManager.getWorkflow(issue);
-        if (workflow == null) {
-            return null;
-        }
-
-        final WorkflowDescriptor descriptor = workflow.getDescriptor();
-        if (descriptor == null) {
-            return null;
-        }
-        return descriptor.getAction(actionId);
+        return transitionTable.getAction(issue, actionId);
     }
 
     FieldScreenRenderer getTransitionFieldScreenRenderer(Issue issue, ActionDescriptor actionDescriptor) {
@@ -125,56 +142,29 @@ public class IssueTransitionValidator {
     MutableIssue validateAndUpdateIssueFromFields(ApplicationUser user, MutableIssue issue, IssueInputParameters issueInputParameters,
                                                   Map<String, Object> fieldValuesHolder, ErrorCollection errorCollection, I18nHelper i18n,
                                                   final FieldScreenRenderer fieldScreenRenderer, boolean updateComment, @Nullable Integer workflowActionId) {
-        Method validateAndUpdateIssueFromFields;
-        try {
-            validateAndUpdateIssueFromFields = DefaultIssueService.class.getDeclaredMethod("validateAndUpdateIssueFromFields",
-                    ApplicationUser.class,
-                    MutableIssue.class,
-                    IssueInputParameters.class,
-                    Map.class,
-                    ErrorCollection.class,
-                    I18nHelper.class,
-                    FieldScreenRenderer.class,
-                    boolean.class,
-                    Integer.class
-            );
-        } catch (NoSuchMethodException e) {
-            LOG.error(e);
-            return null;
-        }
-        validateAndUpdateIssueFromFields.setAccessible(true);
         MutableIssue mutableIssue = null;
         try {
-            mutableIssue = (MutableIssue) validateAndUpdateIssueFromFields.invoke(issueService, user, issue, issueInputParameters, fieldValuesHolder, errorCollection, i18n, fieldScreenRenderer, updateComment, workflowActionId);
-        } catch (IllegalAccessException | InvocationTargetException e) {
+            mutableIssue = (MutableIssue) VALIDATE_AND_UPDATE_ISSUE_FROM_FIELDS.invoke(issueService, user, issue, issueInputParameters, fieldValuesHolder, errorCollection, i18n, fieldScreenRenderer, updateComment, workflowActionId);
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
             LOG.error(e);
         }
         return mutableIssue;
     }
 
+    @SuppressWarnings("unchecked")
     Map<String, Object> createAdditionalParameters(final ApplicationUser user, final Map<String, Object> fieldValuesHolder, TransitionOptions transitionOptions,
                                                    final HistoryMetadata historyMetadata, final String originalAssigneeId) {
-
-        Method createAdditionalParameters = null;
-
-        try {
-            createAdditionalParameters = DefaultIssueService.class.getDeclaredMethod("createAdditionalParameters",
-                    ApplicationUser.class,
-                    Map.class,
-                    TransitionOptions.class,
-                    HistoryMetadata.class,
-                    String.class);
-        } catch (NoSuchMethodException e) {
-            LOG.error(e);
-        }
-        createAdditionalParameters.setAccessible(true);
         Map<String, Object> additionalParams = null;
         try {
-            additionalParams = (Map<String, Object>) createAdditionalParameters.invoke(issueService, user, fieldValuesHolder, transitionOptions, historyMetadata, originalAssigneeId);
-        } catch (IllegalAccessException | InvocationTargetException e) {
+            additionalParams = (Map<String, Object>) CREATE_ADDITIONAL_PARAMETERS.invoke(issueService, user, fieldValuesHolder, transitionOptions, historyMetadata, originalAssigneeId);
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
             LOG.error(e);
         }
 
         return additionalParams;
     }
-}
\ No newline at end of file
+}
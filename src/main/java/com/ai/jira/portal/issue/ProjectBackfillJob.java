@@ -0,0 +1,308 @@
+package com.ai.jira.portal.issue;
+
+import com.ai.jira.portal.ao.issue.IssueLinkIndex;
+import com.ai.jira.portal.ao.project.ProjectExtraFields;
+import com.ai.jira.portal.ao.project.ProjectExtraFieldsCache;
+import com.atlassian.jira.component.ComponentAccessor;
+import com.atlassian.jira.issue.IssueManager;
+import com.atlassian.jira.issue.MutableIssue;
+import com.atlassian.jira.issue.comments.Comment;
+import com.atlassian.jira.project.Project;
+import com.atlassian.jira.user.ApplicationUser;
+import com.atlassian.jira.util.thread.JiraThreadLocalUtil;
+import org.apache.log4j.Logger;
+import org.ofbiz.core.entity.GenericEntityException;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.ai.jira.portal.issue.IssueEventListener.isMirroredOnCreate;
+import static com.ai.jira.portal.issue.IssueEventListener.shouldCreateMirrorIssue;
+import static com.atlassian.jira.util.ImportUtils.isIndexIssues;
+import static com.atlassian.jira.util.ImportUtils.setIndexIssues;
+
+/**
+ * Mirrors existing issues of a project into its related project, used when a project pair is linked
+ * after issues were created. Comments, versions and attachments are copied the same way as for new issues.
+ * <p>
+ * An interrupted backfill is resumed by starting it again. Issue links are saved with each mirror and comment links
+ * with each copied comment, issues which are already linked get only their comments without a link copied.
+ * Touched issues are collected by the backfill and indexed once when it ends, the shared {@link IssueReindexQueue}
+ * keeps flushing regular changes.
+ * <p>
+ * Every issue is mirrored in its lane of {@link IssueSyncExecutor}, so it's never mirrored concurrently with events
+ * of the issue. At most {@code portal.backfill.inFlight} (default: 8) issues are queued at once, the rest of the queue
+ * is left to events.
+ */
+public class ProjectBackfillJob implements DisposableBean {
+    private static final Logger LOG = Logger.getLogger(ProjectBackfillJob.class);
+    private static final int IN_FLIGHT = Math.max(1, Integer.getInteger("portal.backfill.inFlight", 8));
+
+    private final ConcurrentMap<String, Status> statuses = new ConcurrentHashMap<>();
+    private final IssueSynchronizer synchronizer;
+    private final IssueSyncExecutor syncExecutor;
+    private final IssueLinkIndex issueLinkIndex;
+    private final ProjectExtraFieldsCache projectExtraCache;
+    private final IssueManager issueManager;
+    private final IssueReindexQueue reindexQueue;
+
+    public ProjectBackfillJob(IssueSynchronizer synchronizer, IssueSyncExecutor syncExecutor, IssueLinkIndex issueLinkIndex, ProjectExtraFieldsCache projectExtraCache, IssueManager issueManager, IssueReindexQueue reindexQueue) {
+        this.synchronizer = synchronizer;
+        this.syncExecutor = syncExecutor;
+        this.issueLinkIndex = issueLinkIndex;
+        this.projectExtraCache = projectExtraCache;
+        this.issueManager = issueManager;
+        this.reindexQueue = reindexQueue;
+    }
+
+    /**
+     * Starts backfill of the project in background, does nothing if it's already running
+     *
+     * @param project - project which issues are mirrored
+     * @param user    - user on behalf of which mirrors are created
+     * @return status of the backfill
+     */
+    public Status start(final Project project, final ApplicationUser user) {
+        final Status status = new Status(project.getKey());
+        Status current = statuses.get(project.getKey());
+        if (null != current && current.isRunning()) {
+            return current;
+        }
+        if (null == current ? null != statuses.putIfAbsent(project.getKey(), status) : !statuses.replace(project.getKey(), current, status)) {
+            return statuses.get(project.getKey());
+        }
+        Thread coordinator = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                JiraThreadLocalUtil threadLocalUtil = ComponentAccessor.getComponent(JiraThreadLocalUtil.class);
+                threadLocalUtil.preCall();
+                try {
+                    backfill(project, user, status);
+                } catch (RuntimeException e) {
+                    LOG.error("Backfill of project " + project.getKey() + " failed", e);
+                    status.finish(State.FAILED, e.getMessage());
+                } finally {
+                    threadLocalUtil.postCall(LOG, null);
+                }
+            }
+        }, "portal-backfill-" + project.getKey());
+        coordinator.setDaemon(true);
+        coordinator.start();
+        return status;
+    }
+
+    /**
+     * @return status of the last backfill of the project, null if there was none
+     */
+    public Status getStatus(String projectKey) {
+        return statuses.get(projectKey);
+    }
+
+    /**
+     * Stops the backfill after issues in progress, links of mirrored issues are kept
+     *
+     * @return false if backfill isn't running
+     */
+    public boolean cancel(String projectKey) {
+        Status status = statuses.get(projectKey);
+        if (null == status || !status.isRunning()) {
+            return false;
+        }
+        status.cancelled = true;
+        return true;
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        for (Status status : statuses.values()) {
+            status.cancelled = true;
+        }
+    }
+
+    private void backfill(Project project, final ApplicationUser user, final Status status) {
+        final ProjectExtraFields projectExtra = projectExtraCache.getProjectExtra(project.getId());
+        final Project relatedProject = projectExtraCache.getRelatedProject(project.getId());
+        if (null == projectExtra || null == relatedProject || !projectExtra.isBidirectional()) {
+            status.finish(State.FAILED, "Project " + project.getKey() + " isn't linked to a related project both ways");
+            return;
+        }
+        Collection<Long> issueIds;
+        try {
+            issueIds = issueManager.getIssueIdsForProject(project.getId());
+        } catch (GenericEntityException e) {
+            LOG.error("Issues of project " + project.getKey() + " can't be read", e);
+            status.finish(State.FAILED, e.getMessage());
+            return;
+        }
+        status.total = issueIds.size();
+        LOG.info("Backfill of project " + project.getKey() + " into " + relatedProject.getKey() + " started, " + status.total + " issue(s)");
+
+        final Set<Long> reindexIds = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+        // a permit per issue queued and not done yet
+        final Semaphore capacity = new Semaphore(IN_FLIGHT);
+        try {
+            for (final Long issueId : issueIds) {
+                if (status.cancelled) {
+                    break;
+                }
+                capacity.acquire();
+                try {
+                    syncExecutor.submit(synchronizer.getPortalIssueId(projectExtra.isPortal(), issueId), new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                mirrorInJiraContext(issueId, user, projectExtra, relatedProject, reindexIds, status);
+                            } finally {
+                                capacity.release();
+                            }
+                        }
+                    });
+                } catch (RuntimeException e) {
+                    capacity.release();
+                    throw e;
+                }
+            }
+            while (!capacity.tryAcquire(IN_FLIGHT, 1, TimeUnit.MINUTES)) {
+                LOG.info("Backfill of project " + project.getKey() + ": " + status);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            status.cancelled = true;
+        } finally {
+            reindexQueue.reindex(reindexIds);
+        }
+        status.finish(status.cancelled ? State.CANCELLED : State.COMPLETED, null);
+        LOG.info("Backfill of project " + project.getKey() + " finished: " + status);
+    }
+
+    private void mirrorInJiraContext(Long issueId, ApplicationUser user, ProjectExtraFields projectExtra, Project relatedProject, Set<Long> reindexIds, Status status) {
+        if (status.cancelled) {
+            return;
+        }
+        boolean oldIndexIssuesValue = isIndexIssues();
+        // touched issues are collected in reindexIds and indexed when the backfill ends
+        setIndexIssues(false);
+        try {
+            ComponentAccessor.getJiraAuthenticationContext().setLoggedInUser(user);
+            mirror(issueId, user, projectExtra, relatedProject, reindexIds, status);
+        } catch (RuntimeException e) {
+            LOG.error("Backfill of issue " + issueId + " failed", e);
+            status.failed.incrementAndGet();
+        } finally {
+            setIndexIssues(oldIndexIssuesValue);
+        }
+    }
+
+    private void mirror(Long issueId, ApplicationUser user, ProjectExtraFields projectExtra, Project relatedProject, Set<Long> reindexIds, Status status) {
+        MutableIssue issue = issueManager.getIssueObject(issueId);
+        if (null == issue) {
+            status.skipped.incrementAndGet();
+            return;
+        }
+        if (issueLinkIndex.isLinked(issueId)) {
+            // an interrupted backfill may have left comments of the issue behind
+            MutableIssue mirror = synchronizer.getRelatedIssue(projectExtra.isPortal(), issue);
+            if (null != mirror && copyComments(issue, mirror) > 0) {
+                reindexIds.add(mirror.getId());
+                status.mirrored.incrementAndGet();
+            } else {
+                status.skipped.incrementAndGet();
+            }
+            return;
+        }
+        if (!shouldCreateMirrorIssue(projectExtra, issue) || !isMirroredOnCreate(projectExtra, issue)) {
+            status.skipped.incrementAndGet();
+            return;
+        }
+        MutableIssue mirror = synchronizer.createMirrorIssue(user, issue, relatedProject, reindexIds);
+        if (null == mirror) {
+            status.failed.incrementAndGet();
+            return;
+        }
+        copyComments(issue, mirror);
+        status.mirrored.incrementAndGet();
+    }
+
+    /**
+     * Copies comments which have no linked copy yet, the link is saved with each copy
+     *
+     * @return number of copied comments
+     */
+    private int copyComments(MutableIssue issue, MutableIssue mirror) {
+        int copied = 0;
+        for (Comment comment : ComponentAccessor.getCommentManager().getComments(issue)) {
+            if (!synchronizer.isCommentCopied(issue, comment)) {
+                synchronizer.copyComment(issue, mirror, comment);
+                copied++;
+            }
+        }
+        return copied;
+    }
+
+    public enum State {
+        RUNNING, COMPLETED, CANCELLED, FAILED
+    }
+
+    /**
+     * Progress of one backfill run
+     */
+    public static class Status {
+        private final String projectKey;
+        private final long startedAt = System.currentTimeMillis();
+        private final AtomicInteger mirrored = new AtomicInteger();
+        private final AtomicInteger skipped = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private volatile int total;
+        private volatile State state = State.RUNNING;
+        private volatile String message;
+        private volatile long finishedAt;
+        private volatile boolean cancelled;
+
+        Status(String projectKey) {
+            this.projectKey = projectKey;
+        }
+
+        public boolean isRunning() {
+            return State.RUNNING == state;
+        }
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("projectKey", projectKey);
+            map.put("state", state.name());
+            map.put("total", total);
+            map.put("mirrored", mirrored.get());
+            map.put("skipped", skipped.get());
+            map.put("failed", failed.get());
+            map.put("startedAt", startedAt);
+            if (0 != finishedAt) {
+                map.put("finishedAt", finishedAt);
+            }
+            if (null != message) {
+                map.put("message", message);
+            }
+            return map;
+        }
+
+        void finish(State state, String message) {
+            this.message = message;
+            this.finishedAt = System.currentTimeMillis();
+            this.state = state;
+        }
+
+        @Override
+        public String toString() {
+            return state + ", " + (mirrored.get() + skipped.get() + failed.get()) + " of " + total + " issue(s) done, "
+                    + mirrored.get() + " mirrored, " + skipped.get() + " skipped, " + failed.get() + " failed";
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.ai.jira.portal.mapping;
+
+import com.ai.jira.portal.ao.project.ProjectExtraFieldsChangedEvent;
+import com.ai.jira.portal.ao.project.ProjectExtraFieldsService;
+import com.atlassian.event.api.EventListener;
+import com.atlassian.event.api.EventPublisher;
+import com.atlassian.jira.event.ClearCacheEvent;
+import com.atlassian.jira.event.ProjectDeletedEvent;
+import com.atlassian.jira.event.ProjectUpdatedEvent;
+import com.atlassian.jira.project.Project;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link PriorityMapper} per portal project, so priority mapping configuration is loaded once and not per issue.
+ * <p>
+ * Mappers are dropped on {@link ProjectExtraFieldsChangedEvent} and project update/delete events, and expire
+ * after {@code portal.priorityMapping.ttlSeconds} (default: 300) as a safety net. A mapper isn't known to be
+ * thread-safe, callers synchronize on it.
+ */
+public class PriorityMapperCache implements InitializingBean, DisposableBean {
+    private static final long TTL_MILLIS = TimeUnit.SECONDS.toMillis(Long.getLong("portal.priorityMapping.ttlSeconds", 300));
+
+    private final ConcurrentMap<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final ProjectExtraFieldsService extraFieldsService;
+    private final EventPublisher eventPublisher;
+
+    public PriorityMapperCache(ProjectExtraFieldsService extraFieldsService, EventPublisher eventPublisher) {
+        this.extraFieldsService = extraFieldsService;
+        this.eventPublisher = eventPublisher;
+    }
+
+    public PriorityMapper getMapper(Project portal) {
+        Entry entry = entries.get(portal.getId());
+        if (null == entry || entry.isExpired()) {
+            entry = new Entry(new PriorityMapper(portal, extraFieldsService));
+            entries.put(portal.getId(), entry);
+        }
+        return entry.mapper;
+    }
+
+    public void invalidate(Long projectId) {
+        if (null == projectId) {
+            invalidateAll();
+        } else {
+            entries.remove(projectId);
+        }
+    }
+
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    @EventListener
+    public void onProjectExtraFieldsChanged(ProjectExtraFieldsChangedEvent event) {
+        invalidate(event.getProjectId());
+    }
+
+    @EventListener
+    public void onProjectUpdated(ProjectUpdatedEvent event) {
+        invalidateAll();
+    }
+
+    @EventListener
+    public void onProjectDeleted(ProjectDeletedEvent event) {
+        invalidateAll();
+    }
+
+    @EventListener
+    public void onClearCache(ClearCacheEvent event) {
+        invalidateAll();
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        eventPublisher.register(this);
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        eventPublisher.unregister(this);
+    }
+
+    private static final class Entry {
+        private final PriorityMapper mapper;
+        private final long expiresAt = System.currentTimeMillis() + TTL_MILLIS;
+
+        Entry(PriorityMapper mapper) {
+            this.mapper = mapper;
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() > expiresAt;
+        }
+    }
+}
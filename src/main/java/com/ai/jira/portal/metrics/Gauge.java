@@ -0,0 +1,8 @@
+package com.ai.jira.portal.metrics;
+
+/**
+ * Value of {@link SyncMetrics} read when metrics are requested, e.g. a queue depth.
+ */
+public interface Gauge {
+    long getValue();
+}
@@ -0,0 +1,99 @@
+package com.ai.jira.portal.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Process-wide registry of synchronization metrics: counters, latency timers and gauges, by name.
+ * <p>
+ * Names are dot separated, e.g. {@code sync.create} or {@code webhook.ISSUE_UPDATED}. Metrics are created
+ * on first use, callers on hot paths keep the returned instance in a constant.
+ * Exposed by {@link SyncMetricsExporter} over JMX and by the metrics REST resource.
+ */
+public final class SyncMetrics {
+    private static final ConcurrentMap<String, Counter> COUNTERS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, Timer> TIMERS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, Gauge> GAUGES = new ConcurrentHashMap<>();
+
+    private SyncMetrics() {
+    }
+
+    public static Counter counter(String name) {
+        Counter counter = COUNTERS.get(name);
+        if (null == counter) {
+            COUNTERS.putIfAbsent(name, new Counter());
+            counter = COUNTERS.get(name);
+        }
+        return counter;
+    }
+
+    public static Timer timer(String name) {
+        Timer timer = TIMERS.get(name);
+        if (null == timer) {
+            TIMERS.putIfAbsent(name, new Timer());
+            timer = TIMERS.get(name);
+        }
+        return timer;
+    }
+
+    /**
+     * Registers gauge, replacing the gauge registered under the same name before
+     */
+    public static void gauge(String name, Gauge gauge) {
+        GAUGES.put(name, gauge);
+    }
+
+    public static void removeGauge(String name, Gauge gauge) {
+        GAUGES.remove(name, gauge);
+    }
+
+    public static Map<String, Long> getCounters() {
+        Map<String, Long> counters = new TreeMap<>();
+        for (Map.Entry<String, Counter> counter : COUNTERS.entrySet()) {
+            counters.put(counter.getKey(), counter.getValue().getCount());
+        }
+        return counters;
+    }
+
+    public static Map<String, Long> getGauges() {
+        Map<String, Long> gauges = new TreeMap<>();
+        for (Map.Entry<String, Gauge> gauge : GAUGES.entrySet()) {
+            gauges.put(gauge.getKey(), gauge.getValue().getValue());
+        }
+        return gauges;
+    }
+
+    public static Map<String, Map<String, Long>> getTimers() {
+        Map<String, Map<String, Long>> timers = new TreeMap<>();
+        for (Map.Entry<String, Timer> timer : TIMERS.entrySet()) {
+            timers.put(timer.getKey(), timer.getValue().snapshot());
+        }
+        return timers;
+    }
+
+    /**
+     * @return all metrics: counters, timers and gauges
+     */
+    public static Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("counters", getCounters());
+        snapshot.put("timers", getTimers());
+        snapshot.put("gauges", getGauges());
+        return snapshot;
+    }
+
+    /**
+     * Zeroes counters and timers, gauges are kept
+     */
+    public static void reset() {
+        for (Counter counter : COUNTERS.values()) {
+            counter.reset();
+        }
+        for (Timer timer : TIMERS.values()) {
+            timer.reset();
+        }
+    }
+}
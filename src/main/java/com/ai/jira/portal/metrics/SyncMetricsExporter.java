@@ -0,0 +1,63 @@
+package com.ai.jira.portal.metrics;
+
+import com.atlassian.sal.api.lifecycle.LifecycleAware;
+import org.apache.log4j.Logger;
+import org.springframework.beans.factory.DisposableBean;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+/**
+ * Registers {@link SyncMetrics} in the platform MBean server while the plugin runs.
+ */
+public class SyncMetricsExporter implements SyncMetricsMXBean, LifecycleAware, DisposableBean {
+    private static final Logger LOG = Logger.getLogger(SyncMetricsExporter.class);
+    private static final String OBJECT_NAME = "com.ai.jira.portal:type=SyncMetrics";
+
+    @Override
+    public void onStart() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            // left registered by a previous plugin instance when the plugin was reloaded
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+        } catch (JMException e) {
+            LOG.warn("Sync metrics can't be registered in JMX", e);
+        }
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        if (server.isRegistered(name)) {
+            server.unregisterMBean(name);
+        }
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        return SyncMetrics.getCounters();
+    }
+
+    @Override
+    public Map<String, Long> getGauges() {
+        return SyncMetrics.getGauges();
+    }
+
+    @Override
+    public Map<String, Map<String, Long>> getTimers() {
+        return SyncMetrics.getTimers();
+    }
+
+    @Override
+    public void reset() {
+        SyncMetrics.reset();
+    }
+}
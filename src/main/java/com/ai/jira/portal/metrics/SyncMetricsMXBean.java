@@ -0,0 +1,19 @@
+package com.ai.jira.portal.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link SyncMetrics}, registered as {@code com.ai.jira.portal:type=SyncMetrics}.
+ */
+public interface SyncMetricsMXBean {
+    Map<String, Long> getCounters();
+
+    Map<String, Long> getGauges();
+
+    /**
+     * @return count, mean and percentiles in microseconds by timer name
+     */
+    Map<String, Map<String, Long>> getTimers();
+
+    void reset();
+}
@@ -0,0 +1,80 @@
+package com.ai.jira.portal.rest;
+
+import com.ai.jira.portal.issue.ProjectBackfillJob;
+import com.atlassian.jira.component.ComponentAccessor;
+import com.atlassian.jira.project.Project;
+import com.atlassian.jira.security.Permissions;
+import com.atlassian.jira.user.ApplicationUser;
+
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import static javax.ws.rs.core.Response.Status.ACCEPTED;
+import static javax.ws.rs.core.Response.Status.CONFLICT;
+import static javax.ws.rs.core.Response.Status.FORBIDDEN;
+import static javax.ws.rs.core.Response.Status.NOT_FOUND;
+import static javax.ws.rs.core.Response.ok;
+import static javax.ws.rs.core.Response.status;
+
+/**
+ * Starts, follows and cancels {@link ProjectBackfillJob} of a project. Available to administrators.
+ */
+@Path("/backfill/{projectKey}")
+@Produces(MediaType.APPLICATION_JSON)
+public class BackfillResource {
+    private final ProjectBackfillJob backfillJob;
+
+    public BackfillResource() {
+        this.backfillJob = ComponentAccessor.getComponentOfType(ProjectBackfillJob.class);
+    }
+
+    @POST
+    public Response start(@PathParam("projectKey") String projectKey) {
+        ApplicationUser user = getAdministrator();
+        if (null == user) {
+            return status(FORBIDDEN).build();
+        }
+        Project project = ComponentAccessor.getProjectManager().getProjectObjByKey(projectKey);
+        if (null == project) {
+            return status(NOT_FOUND).build();
+        }
+        return status(ACCEPTED).entity(backfillJob.start(project, user).toMap()).build();
+    }
+
+    @GET
+    public Response getStatus(@PathParam("projectKey") String projectKey) {
+        if (null == getAdministrator()) {
+            return status(FORBIDDEN).build();
+        }
+        ProjectBackfillJob.Status status = backfillJob.getStatus(projectKey);
+        if (null == status) {
+            return status(NOT_FOUND).build();
+        }
+        return ok(status.toMap()).build();
+    }
+
+    @DELETE
+    public Response cancel(@PathParam("projectKey") String projectKey) {
+        if (null == getAdministrator()) {
+            return status(FORBIDDEN).build();
+        }
+        if (!backfillJob.cancel(projectKey)) {
+            return status(CONFLICT).build();
+        }
+        return ok(backfillJob.getStatus(projectKey).toMap()).build();
+    }
+
+    private static ApplicationUser getAdministrator() {
+        ApplicationUser user = ComponentAccessor.getJiraAuthenticationContext().getUser();
+        if (null == user || !ComponentAccessor.getPermissionManager().hasPermission(Permissions.ADMINISTER, user)) {
+            return null;
+        }
+        return user;
+    }
+}
@@ -1,5 +1,9 @@
 package com.ac.jira.cloud;
 
+import com.ac.jira.cloud.event.WebhookDedupeCache;
+import com.ac.jira.cloud.event.WebhookEventLog;
+import com.ac.jira.cloud.journal.JournalRecord;
+import com.ac.jira.cloud.journal.WebhookJournal;
 import com.ac.jira.cloud.rest.CloudListener;
 import com.atlassian.jira.issue.IssueManager;
 import com.atlassian.jira.mock.component.MockComponentWorker;
@@ -9,12 +13,15 @@ import com.atlassian.jira.user.util.UserManager;
 import com.atlassian.jira.util.EmailFormatter;
 import org.glassfish.jersey.server.ResourceConfig;
 import org.glassfish.jersey.test.JerseyTest;
+import org.junit.After;
 import org.junit.Before;
-import org.junit.Ignore;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.core.Application;
+import javax.ws.rs.core.GenericType;
 import javax.ws.rs.core.Response;
 import java.io.IOException;
 import java.net.URISyntaxException;
@@ -22,15 +29,29 @@ import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
 
+import static javax.ws.rs.core.Response.Status.BAD_REQUEST;
 import static javax.ws.rs.core.Response.Status.OK;
+import static javax.ws.rs.core.Response.Status.SERVICE_UNAVAILABLE;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.glassfish.jersey.test.TestProperties.DUMP_ENTITY;
 import static org.glassfish.jersey.test.TestProperties.LOG_TRAFFIC;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 
 public class CloudListenerTest extends JerseyTest {
+    private WebhookJournal journal;
+    private final WebhookEventLog eventLog = new WebhookEventLog();
+
     @Override
     protected Application configure() {
         enable(LOG_TRAFFIC);
@@ -48,15 +69,30 @@ public class CloudListenerTest extends JerseyTest {
         ProjectManager projectManager = mock(ProjectManager.class);
         UserManager userManager = mock(UserManager.class);
         IssueManager issueManager = mock(IssueManager.class);
+        journal = mock(WebhookJournal.class);
+        when(journal.append(any(JournalRecord.class))).thenReturn(1L);
         new MockComponentWorker()
                 .addMock(JiraAuthenticationContext.class, jiraAuthenticationContext)
                 .addMock(EmailFormatter.class, formatter)
                 .addMock(ProjectManager.class, projectManager)
                 .addMock(UserManager.class, userManager)
                 .addMock(IssueManager.class, issueManager)
+                .addMock(WebhookJournal.class, journal)
+                .addMock(WebhookDedupeCache.class, new WebhookDedupeCache())
+                .addMock(WebhookEventLog.class, eventLog)
                 .init();
     }
 
+    @Override
+    @After
+    public void tearDown() throws Exception {
+        try {
+            super.tearDown();
+        } finally {
+            eventLog.destroy();
+        }
+    }
+
     @Test
     public void shouldReturnOKWhenVersionCreatedJsonComesToVersionEventListener() throws Exception {
         String request = readFromResource("events/version_created.json");
@@ -157,7 +193,6 @@ public class CloudListenerTest extends JerseyTest {
     }
 
     @Test
-    @Ignore
     public void shouldReturnOKWhenIssueCreatedJsonComesToIssueCreatedEventListener() throws Exception {
         String request = readFromResource("events/issue_created.json");
 
@@ -180,6 +215,147 @@ public class CloudListenerTest extends JerseyTest {
     }
 
 
+    @Test
+    public void shouldJournalWebhookBeforeReturningOK() throws Exception {
+        String request = readFromResource("events/issue_updated.json");
+
+        Response response = target("/project/IP/issue/IP-1/update")
+                .request()
+                .post(Entity.json(request));
+
+        assertThat(response.getStatus()).isEqualTo(OK.getStatusCode());
+        ArgumentCaptor<JournalRecord> record = ArgumentCaptor.forClass(JournalRecord.class);
+        verify(journal).append(record.capture());
+        verify(journal).awaitDurable(1L);
+        assertThat(record.getValue().getType()).isEqualTo(WebhookEventType.ISSUE_UPDATED.name());
+        assertThat(record.getValue().getProjectKey()).isEqualTo("IP");
+        assertThat(record.getValue().getEntityKey()).isEqualTo("IP-1");
+        assertThat(record.getValue().getBody()).isEqualTo(request);
+    }
+
+    @Test
+    public void shouldReturnServiceUnavailableWhenWebhookCanNotBeJournaled() throws Exception {
+        String request = readFromResource("events/issue_updated.json");
+        doThrow(new IOException("disk full")).when(journal).awaitDurable(anyLong());
+
+        Response response = target("/project/IP/issue/IP-1/update")
+                .request()
+                .post(Entity.json(request));
+
+        assertThat(response.getStatus()).isEqualTo(SERVICE_UNAVAILABLE.getStatusCode());
+    }
+
+    @Test
+    public void shouldAcknowledgeRedeliveredWebhookWithoutJournalingIt() throws Exception {
+        String request = readFromResource("events/issue_created.json");
+
+        Response first = target("/project/IP/issue/IP-1/create")
+                .request()
+                .post(Entity.json(request));
+        Response redelivered = target("/project/IP/issue/IP-1/create")
+                .request()
+                .post(Entity.json(request));
+
+        assertThat(first.getStatus()).isEqualTo(OK.getStatusCode());
+        assertThat(redelivered.getStatus()).isEqualTo(OK.getStatusCode());
+        verify(journal).append(any(JournalRecord.class));
+    }
+
+    @Test
+    public void shouldJournalRedeliveredWebhookWhenFirstDeliveryFailed() throws Exception {
+        String request = readFromResource("events/issue_created.json");
+        doThrow(new IOException("disk full")).doNothing().when(journal).awaitDurable(anyLong());
+
+        Response first = target("/project/IP/issue/IP-1/create")
+                .request()
+                .post(Entity.json(request));
+        Response redelivered = target("/project/IP/issue/IP-1/create")
+                .request()
+                .post(Entity.json(request));
+
+        assertThat(first.getStatus()).isEqualTo(SERVICE_UNAVAILABLE.getStatusCode());
+        assertThat(redelivered.getStatus()).isEqualTo(OK.getStatusCode());
+        verify(journal, times(2)).append(any(JournalRecord.class));
+    }
+
+    @Test
+    public void shouldJournalWebhookRepeatedWithinBatchOnce() throws Exception {
+        String issueUpdated = readFromResource("events/issue_updated.json");
+
+        Response response = target("/project/IP/batch")
+                .request()
+                .post(Entity.json("[" + issueUpdated + "," + issueUpdated + "]"));
+
+        List<Map<String, Object>> results = response.readEntity(new GenericType<List<Map<String, Object>>>() {
+        });
+        assertThat(results).extracting("accepted").containsOnly(OK.getStatusCode());
+        verify(journal).append(any(JournalRecord.class));
+    }
+
+    @Test
+    public void shouldJournalBatchInOrderAndWaitForDiskOnce() throws Exception {
+        String issueUpdated = readFromResource("events/issue_updated.json");
+        String commentCreated = readFromResource("events/comment_created.json");
+        String versionCreated = readFromResource("events/version_created.json");
+        when(journal.append(any(JournalRecord.class))).thenReturn(1L, 2L, 3L);
+
+        Response response = target("/project/IP/batch")
+                .request()
+                .post(Entity.json("[" + issueUpdated + "," + commentCreated + "," + versionCreated + "]"));
+
+        assertThat(response.getStatus()).isEqualTo(OK.getStatusCode());
+        List<Map<String, Object>> results = response.readEntity(new GenericType<List<Map<String, Object>>>() {
+        });
+        assertThat(results).extracting("type").containsExactly("ISSUE_UPDATED", "COMMENT_CREATED", "VERSION");
+        assertThat(results).extracting("accepted").containsOnly(OK.getStatusCode());
+        ArgumentCaptor<JournalRecord> records = ArgumentCaptor.forClass(JournalRecord.class);
+        InOrder inOrder = inOrder(journal);
+        inOrder.verify(journal, times(3)).append(records.capture());
+        inOrder.verify(journal).awaitDurable(3L);
+        assertThat(records.getAllValues()).extracting("type").containsExactly("ISSUE_UPDATED", "COMMENT_CREATED", "VERSION");
+        assertThat(records.getAllValues()).extracting("entityKey").containsExactly("TP-5", "10101", "10000");
+        assertThat(records.getAllValues()).extracting("projectKey").containsOnly("IP");
+    }
+
+    @Test
+    public void shouldRejectOnlyInvalidWebhooksOfBatch() throws Exception {
+        String issueUpdated = readFromResource("events/issue_updated.json");
+
+        Response response = target("/project/IP/batch")
+                .request()
+                .post(Entity.json("[{\"webhookEvent\": \"board_created\"}, " + issueUpdated + ", \"text\"]"));
+
+        assertThat(response.getStatus()).isEqualTo(OK.getStatusCode());
+        List<Map<String, Object>> results = response.readEntity(new GenericType<List<Map<String, Object>>>() {
+        });
+        assertThat(results).extracting("accepted")
+                .containsExactly(BAD_REQUEST.getStatusCode(), OK.getStatusCode(), BAD_REQUEST.getStatusCode());
+        verify(journal).append(any(JournalRecord.class));
+    }
+
+    @Test
+    public void shouldReturnBadRequestWhenBatchIsNotArray() throws Exception {
+        Response response = target("/project/IP/batch")
+                .request()
+                .post(Entity.json(readFromResource("events/issue_updated.json")));
+
+        assertThat(response.getStatus()).isEqualTo(BAD_REQUEST.getStatusCode());
+    }
+
+    @Test
+    public void shouldReturnServiceUnavailableForBatchWebhooksWhichAreNotDurable() throws Exception {
+        String issueUpdated = readFromResource("events/issue_updated.json");
+        doThrow(new IOException("disk full")).when(journal).awaitDurable(anyLong());
+
+        Response response = target("/project/IP/batch")
+                .request()
+                .post(Entity.json("[" + issueUpdated + "," + issueUpdated + "]"));
+
+        List<Map<String, Object>> results = response.readEntity(new GenericType<List<Map<String, Object>>>() {
+        });
+        assertThat(results).extracting("accepted").containsOnly(SERVICE_UNAVAILABLE.getStatusCode());
+    }
+
     private String readFromResource(String resource) throws URISyntaxException, IOException {
         ClassLoader classloader = Thread.currentThread().getContextClassLoader();
         URL url = classloader.getResource(resource);
@@ -0,0 +1,380 @@
+package com.ac.jira.cloud;
+
+import com.ac.jira.cloud.event.WebhookDedupeCache;
+import com.ac.jira.cloud.event.WebhookEventLog;
+import com.ac.jira.cloud.journal.JournalRecord;
+import com.ac.jira.cloud.journal.JournalRecordHandler;
+import com.ac.jira.cloud.journal.TestJournals;
+import com.ac.jira.cloud.journal.WebhookJournal;
+import com.ac.jira.cloud.rest.CloudListener;
+import com.atlassian.jira.mock.component.MockComponentWorker;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.test.JerseyTest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.Application;
+import javax.ws.rs.core.Response;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Replays webhook fixtures against {@link CloudListener} to find the saturation point of the webhook path.
+ * <p>
+ * Skipped unless {@code -Dportal.loadTest=true}. Tuned with system properties:
+ * <ul>
+ * <li>{@code portal.loadTest.concurrency} - number of sending threads (default: 16)</li>
+ * <li>{@code portal.loadTest.rate} - requests per second over all threads, 0 sends as fast as possible (default: 0)</li>
+ * <li>{@code portal.loadTest.durationSeconds} - measured run (default: 30), preceded by
+ * {@code portal.loadTest.warmupSeconds} (default: 5)</li>
+ * <li>{@code portal.loadTest.mix} - fixtures from {@code events/} with weights (default: issue_updated:6,comment_created:2,issue_created:1,worklog_created:1)</li>
+ * <li>{@code portal.loadTest.journal} - {@code disk} journals to a temporary folder with fsync, {@code mock} measures
+ * the HTTP path only (default: disk)</li>
+ * <li>{@code portal.loadTest.report} - JSON report file (default: target/webhook-load-report.json)</li>
+ * </ul>
+ * With a fixed rate latency is measured from the time a request was due, so a saturated server shows up
+ * as growing latency instead of a silently lower rate.
+ */
+public class WebhookLoadTest extends JerseyTest {
+    private static final int CONCURRENCY = Integer.getInteger("portal.loadTest.concurrency", 16);
+    private static final int RATE = Integer.getInteger("portal.loadTest.rate", 0);
+    private static final int DURATION_SECONDS = Integer.getInteger("portal.loadTest.durationSeconds", 30);
+    private static final int WARMUP_SECONDS = Integer.getInteger("portal.loadTest.warmupSeconds", 5);
+    private static final String MIX = System.getProperty("portal.loadTest.mix", "issue_updated:6,comment_created:2,issue_created:1,worklog_created:1");
+    private static final String JOURNAL = System.getProperty("portal.loadTest.journal", "disk");
+    private static final String REPORT = System.getProperty("portal.loadTest.report", "target/webhook-load-report.json");
+    private static final String EXCEPTION = "exception";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicLong applied = new AtomicLong();
+    private WebhookJournal journal;
+    private final WebhookEventLog eventLog = new WebhookEventLog();
+
+    @BeforeClass
+    public static void assumeEnabled() {
+        assumeTrue(Boolean.getBoolean("portal.loadTest"));
+    }
+
+    @Override
+    protected Application configure() {
+        return new ResourceConfig(CloudListener.class);
+    }
+
+    @Override
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+
+        if ("mock".equals(JOURNAL)) {
+            journal = mock(WebhookJournal.class);
+            when(journal.append(any(JournalRecord.class))).thenReturn(1L);
+        } else {
+            journal = TestJournals.start(folder.newFolder("journal"), new JournalRecordHandler() {
+                @Override
+                public boolean handle(JournalRecord record) {
+                    applied.incrementAndGet();
+                    return false;
+                }
+            });
+        }
+        new MockComponentWorker()
+                .addMock(WebhookJournal.class, journal)
+                // fixtures are replayed with the same timestamps, deduplication would skip all but the first
+                .addMock(WebhookDedupeCache.class, new WebhookDedupeCache(0, 0))
+                .addMock(WebhookEventLog.class, eventLog)
+                .init();
+    }
+
+    @Override
+    @After
+    public void tearDown() throws Exception {
+        try {
+            super.tearDown();
+        } finally {
+            if (null != journal) {
+                journal.destroy();
+            }
+            eventLog.destroy();
+        }
+    }
+
+    @Test
+    public void replayFixtures() throws Exception {
+        Fixture[] schedule = schedule(MIX);
+
+        run(schedule, WARMUP_SECONDS);
+        long appliedBefore = applied.get();
+        Run run = run(schedule, DURATION_SECONDS);
+
+        Map<String, Object> report = report(run, applied.get() - appliedBefore);
+        File file = new File(REPORT);
+        if (null != file.getParentFile()) {
+            file.getParentFile().mkdirs();
+        }
+        new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(file, report);
+        System.out.println("Webhook load report written to " + file.getAbsolutePath() + "\n" + report.get("total"));
+
+        assertThat(run.total.requests).isPositive();
+    }
+
+    private Run run(final Fixture[] schedule, int seconds) throws Exception {
+        final long start = System.nanoTime();
+        final long deadline = start + TimeUnit.SECONDS.toNanos(seconds);
+        final AtomicLong tickets = new AtomicLong();
+        final WebTarget root = target();
+        ExecutorService senders = Executors.newFixedThreadPool(CONCURRENCY);
+        List<Future<Map<String, Samples>>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < CONCURRENCY; i++) {
+                results.add(senders.submit(new Callable<Map<String, Samples>>() {
+                    @Override
+                    public Map<String, Samples> call() {
+                        return send(root, schedule, tickets, start, deadline);
+                    }
+                }));
+            }
+            Run run = new Run();
+            for (Future<Map<String, Samples>> result : results) {
+                for (Map.Entry<String, Samples> samples : result.get().entrySet()) {
+                    run.add(samples.getKey(), samples.getValue());
+                }
+            }
+            run.elapsedNanos = System.nanoTime() - start;
+            return run;
+        } finally {
+            senders.shutdownNow();
+        }
+    }
+
+    private Map<String, Samples> send(WebTarget root, Fixture[] schedule, AtomicLong tickets, long start, long deadline) {
+        Map<String, Samples> samples = new TreeMap<>();
+        while (true) {
+            long ticket = tickets.getAndIncrement();
+            long due = System.nanoTime();
+            if (RATE > 0) {
+                due = start + ticket * TimeUnit.SECONDS.toNanos(1) / RATE;
+                for (long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime()) {
+                    LockSupport.parkNanos(wait);
+                }
+            }
+            if (due >= deadline) {
+                return samples;
+            }
+            Fixture fixture = schedule[(int) (ticket % schedule.length)];
+            String status;
+            try {
+                Response response = root.path(fixture.path).request().post(Entity.json(fixture.body));
+                status = Integer.toString(response.getStatus());
+                response.close();
+            } catch (RuntimeException e) {
+                status = EXCEPTION;
+            }
+            Samples fixtureSamples = samples.get(fixture.name);
+            if (null == fixtureSamples) {
+                fixtureSamples = new Samples();
+                samples.put(fixture.name, fixtureSamples);
+            }
+            fixtureSamples.add(System.nanoTime() - due, status);
+        }
+    }
+
+    private Map<String, Object> report(Run run, long appliedRecords) {
+        Map<String, Object> config = new LinkedHashMap<>();
+        config.put("concurrency", CONCURRENCY);
+        config.put("rate", RATE);
+        config.put("durationSeconds", DURATION_SECONDS);
+        config.put("warmupSeconds", WARMUP_SECONDS);
+        config.put("mix", MIX);
+        config.put("journal", JOURNAL);
+
+        Map<String, Object> byFixture = new LinkedHashMap<>();
+        for (Map.Entry<String, Samples> samples : run.byFixture.entrySet()) {
+            byFixture.put(samples.getKey(), samples.getValue().summary(run.elapsedNanos));
+        }
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("config", config);
+        report.put("elapsedMillis", TimeUnit.NANOSECONDS.toMillis(run.elapsedNanos));
+        report.put("total", run.total.summary(run.elapsedNanos));
+        report.put("byFixture", byFixture);
+        if (!"mock".equals(JOURNAL)) {
+            Map<String, Object> journalReport = new LinkedHashMap<>();
+            journalReport.put("appliedRecords", appliedRecords);
+            journalReport.put("backlogBytes", journal.getBacklog());
+            report.put("journal", journalReport);
+        }
+        return report;
+    }
+
+    /**
+     * @return fixtures repeated by weight and shuffled with a fixed seed, so runs send the same sequence
+     */
+    private Fixture[] schedule(String mix) throws IOException, URISyntaxException {
+        List<Fixture> schedule = new ArrayList<>();
+        for (String entry : mix.split(",")) {
+            String[] nameAndWeight = entry.trim().split(":");
+            int weight = nameAndWeight.length > 1 ? Integer.parseInt(nameAndWeight[1].trim()) : 1;
+            Fixture fixture = new Fixture(nameAndWeight[0].trim());
+            for (int i = 0; i < weight; i++) {
+                schedule.add(fixture);
+            }
+        }
+        Collections.shuffle(schedule, new Random(42));
+        return schedule.toArray(new Fixture[schedule.size()]);
+    }
+
+    private static String readFromResource(String resource) throws URISyntaxException, IOException {
+        ClassLoader classloader = Thread.currentThread().getContextClassLoader();
+        URL url = classloader.getResource(resource);
+        if (null == url) {
+            throw new IllegalArgumentException("Unknown fixture " + resource);
+        }
+        return new String(Files.readAllBytes(Paths.get(url.toURI())));
+    }
+
+    private static final class Fixture {
+        private final String name;
+        private final String path;
+        private final String body;
+
+        Fixture(String name) throws IOException, URISyntaxException {
+            this.name = name;
+            this.path = pathOf(name);
+            this.body = readFromResource("events/" + name + ".json");
+        }
+
+        private static String pathOf(String name) {
+            String action = name.substring(name.indexOf('_') + 1).replace("created", "create").replace("updated", "update").replace("deleted", "delete");
+            if (name.startsWith("issue_")) {
+                return "/project/IP/issue/IP-1/" + action;
+            } else if (name.startsWith("comment_")) {
+                return "/project/IP/issue/IP-1/comment/1/" + action;
+            } else if (name.startsWith("worklog_")) {
+                return "/project/IP/worklog/" + action;
+            } else if (name.startsWith("version_")) {
+                return "/project/IP/version/123";
+            }
+            throw new IllegalArgumentException("No endpoint for fixture " + name);
+        }
+    }
+
+    private static final class Run {
+        private final Map<String, Samples> byFixture = new TreeMap<>();
+        private final Samples total = new Samples();
+        private long elapsedNanos;
+
+        void add(String fixture, Samples samples) {
+            Samples fixtureSamples = byFixture.get(fixture);
+            if (null == fixtureSamples) {
+                fixtureSamples = new Samples();
+                byFixture.put(fixture, fixtureSamples);
+            }
+            fixtureSamples.addAll(samples);
+            total.addAll(samples);
+        }
+    }
+
+    private static final class Samples {
+        private long[] latencies = new long[1024];
+        private int requests;
+        private long errors;
+        private final Map<String, Long> statuses = new TreeMap<>();
+
+        void add(long latencyNanos, String status) {
+            if (requests == latencies.length) {
+                latencies = Arrays.copyOf(latencies, requests * 2);
+            }
+            latencies[requests++] = latencyNanos;
+            count(status, 1);
+        }
+
+        void addAll(Samples other) {
+            if (requests + other.requests > latencies.length) {
+                latencies = Arrays.copyOf(latencies, Math.max(latencies.length * 2, requests + other.requests));
+            }
+            System.arraycopy(other.latencies, 0, latencies, requests, other.requests);
+            requests += other.requests;
+            for (Map.Entry<String, Long> status : other.statuses.entrySet()) {
+                count(status.getKey(), status.getValue());
+            }
+        }
+
+        private void count(String status, long count) {
+            Long current = statuses.get(status);
+            statuses.put(status, null == current ? count : current + count);
+            if (EXCEPTION.equals(status) || !status.startsWith("2")) {
+                errors += count;
+            }
+        }
+
+        Map<String, Object> summary(long elapsedNanos) {
+            long[] sorted = Arrays.copyOf(latencies, requests);
+            Arrays.sort(sorted);
+            long sum = 0;
+            for (long latency : sorted) {
+                sum += latency;
+            }
+            Map<String, Object> latency = new LinkedHashMap<>();
+            latency.put("mean", millis(requests == 0 ? 0 : sum / requests));
+            latency.put("p50", millis(percentile(sorted, 0.5)));
+            latency.put("p90", millis(percentile(sorted, 0.9)));
+            latency.put("p99", millis(percentile(sorted, 0.99)));
+            latency.put("p999", millis(percentile(sorted, 0.999)));
+            latency.put("max", millis(requests == 0 ? 0 : sorted[requests - 1]));
+
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("requests", requests);
+            summary.put("errors", errors);
+            summary.put("errorRate", requests == 0 ? 0.0 : (double) errors / requests);
+            summary.put("throughputPerSecond", elapsedNanos == 0 ? 0.0 : requests * 1e9 / elapsedNanos);
+            summary.put("latencyMillis", latency);
+            summary.put("statuses", statuses);
+            return summary;
+        }
+
+        private static long percentile(long[] sorted, double percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile * sorted.length) - 1;
+            return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+        }
+
+        private static double millis(long nanos) {
+            return nanos / 1e6;
+        }
+    }
+}
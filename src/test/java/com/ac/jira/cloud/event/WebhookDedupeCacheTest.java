@@ -0,0 +1,66 @@
+package com.ac.jira.cloud.event;
+
+import org.junit.Test;
+
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import static com.ac.jira.cloud.event.WebhookDedupeCache.State.DONE;
+import static com.ac.jira.cloud.event.WebhookDedupeCache.State.IN_PROGRESS;
+import static com.ac.jira.cloud.event.WebhookDedupeCache.State.NEW;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WebhookDedupeCacheTest {
+
+    @Test
+    public void shouldIdentifyWebhookByTypeEntityAndTimestamp() throws Exception {
+        assertThat(WebhookDedupeCache.key(parse("events/issue_updated.json"))).isEqualTo("jira:issue_updated/10100/1455968657174");
+        assertThat(WebhookDedupeCache.key(parse("events/comment_created.json"))).startsWith("comment_created/10101/");
+        assertThat(WebhookDedupeCache.key(WebhookEventParser.parse("{\"webhookEvent\": \"jira:issue_updated\", \"issue\": {\"id\": \"1\"}}"))).isNull();
+    }
+
+    @Test
+    public void shouldReportEarlierDeliveryUntilReleased() {
+        WebhookDedupeCache cache = new WebhookDedupeCache(10, 60000);
+
+        assertThat(cache.claim("a")).isEqualTo(NEW);
+        assertThat(cache.claim("a")).isEqualTo(IN_PROGRESS);
+        cache.complete("a");
+        assertThat(cache.claim("a")).isEqualTo(DONE);
+        cache.release("a");
+        assertThat(cache.claim("a")).isEqualTo(NEW);
+        assertThat(cache.claim(null)).isEqualTo(NEW);
+        assertThat(cache.claim(null)).isEqualTo(NEW);
+    }
+
+    @Test
+    public void shouldDropOldestEntriesOverLimit() {
+        WebhookDedupeCache cache = new WebhookDedupeCache(2, 60000);
+
+        cache.claim("a");
+        cache.claim("b");
+        cache.claim("c");
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.claim("a")).isEqualTo(NEW);
+        assertThat(cache.claim("c")).isEqualTo(IN_PROGRESS);
+    }
+
+    @Test
+    public void shouldForgetEntriesOutsideWindow() throws Exception {
+        WebhookDedupeCache cache = new WebhookDedupeCache(10, 1);
+
+        cache.claim("a");
+        Thread.sleep(5);
+
+        assertThat(cache.claim("a")).isEqualTo(NEW);
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    private static WebhookEvent parse(String resource) throws Exception {
+        URL url = Thread.currentThread().getContextClassLoader().getResource(resource);
+        assert url != null;
+        return WebhookEventParser.parse(new String(Files.readAllBytes(Paths.get(url.toURI()))));
+    }
+}
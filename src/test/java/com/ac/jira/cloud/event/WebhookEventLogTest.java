@@ -0,0 +1,18 @@
+package com.ac.jira.cloud.event;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WebhookEventLogTest {
+
+    @Test
+    public void shouldCountUtf8BytesOfPayload() {
+        for (String payload : new String[]{"", "{\"a\":1}", "Zażółć", "€100", "😀 ok", "broken \uD83D"}) {
+            assertThat(WebhookEventLog.utf8Length(payload)).as(payload).isEqualTo(payload.getBytes(StandardCharsets.UTF_8).length);
+        }
+        assertThat(WebhookEventLog.utf8Length(null)).isZero();
+    }
+}
@@ -0,0 +1,125 @@
+package com.ac.jira.cloud.event;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class WebhookEventParserTest {
+
+    @Test
+    public void shouldReadIssueAndChangeLogOfIssueUpdatedEvent() throws Exception {
+        WebhookEvent event = WebhookEventParser.parse(readFromResource("events/issue_updated.json"));
+
+        assertThat(event.getTimestamp()).isEqualTo(1455968657174L);
+        assertThat(event.getWebhookEvent()).isEqualTo("jira:issue_updated");
+        assertThat(event.getIssueId()).isEqualTo("10100");
+        assertThat(event.getIssueKey()).isEqualTo("TP-5");
+        assertThat(event.getChangeItems()).hasSize(1);
+        WebhookEvent.ChangeItem item = event.getChangeItems().get(0);
+        assertThat(item.getField()).isEqualTo("Version");
+        assertThat(item.getFieldType()).isEqualTo("jira");
+        assertThat(item.getFrom()).isNull();
+        assertThat(item.getTo()).isEqualTo("10004");
+        assertThat(item.getToString()).isEqualTo("ver2");
+    }
+
+    @Test
+    public void shouldReadAllChangeItemsOfIssueCreatedEvent() throws Exception {
+        WebhookEvent event = WebhookEventParser.parse(readFromResource("events/issue_created.json"));
+
+        assertThat(event.getIssueKey()).isEqualTo("TP-5");
+        assertThat(event.getChangeItems()).extracting("field").containsExactly("timeestimate", "timespent", "WorklogId");
+    }
+
+    @Test
+    public void shouldReadCommentOfCommentCreatedEvent() throws Exception {
+        WebhookEvent event = WebhookEventParser.parse(readFromResource("events/comment_created.json"));
+
+        assertThat(event.getWebhookEvent()).isEqualTo("comment_created");
+        assertThat(event.getCommentId()).isEqualTo("10101");
+        assertThat(event.getCommentBody()).isEqualTo("some comment");
+        assertThat(event.getIssueKey()).isNull();
+    }
+
+    @Test
+    public void shouldReadWorklogOfWorklogUpdatedEvent() throws Exception {
+        WebhookEvent event = WebhookEventParser.parse(readFromResource("events/worklog_updated.json"));
+
+        assertThat(event.getWorklogId()).isEqualTo("10100");
+        assertThat(event.getWorklogIssueId()).isEqualTo("10000");
+    }
+
+    @Test
+    public void shouldReadVersionOfVersionDeletedEvent() throws Exception {
+        WebhookEvent event = WebhookEventParser.parse(readFromResource("events/version_deleted.json"));
+
+        assertThat(event.getWebhookEvent()).isEqualTo("jira:version_deleted");
+        assertThat(event.getVersionId()).isEqualTo("10004");
+    }
+
+    @Test
+    public void shouldSkipUnknownAndNestedValues() throws Exception {
+        WebhookEvent event = WebhookEventParser.parse("{\"extra\":{\"a\":[1,{\"b\":2}]},\"issue\":{\"fields\":{\"key\":\"X-1\"},\"key\":\"TP-1\"},\"timestamp\":null}");
+
+        assertThat(event.getIssueKey()).isEqualTo("TP-1");
+        assertThat(event.getTimestamp()).isNull();
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldRejectPayloadWhichIsNotObject() throws Exception {
+        WebhookEventParser.parse("[1, 2]");
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldRejectTruncatedPayload() throws Exception {
+        WebhookEventParser.parse("{\"webhookEvent\": \"jira:issue_updated\", \"issue\": {");
+    }
+
+    @Test
+    public void shouldSplitBatchIntoWebhooksInOrder() throws Exception {
+        String batch = "[" + readFromResource("events/issue_updated.json") + ", "
+                + readFromResource("events/comment_created.json") + ", 42]";
+
+        List<String> bodies = WebhookEventParser.split(batch);
+
+        assertThat(bodies).hasSize(3);
+        assertThat(WebhookEventParser.parse(bodies.get(0)).getIssueKey()).isEqualTo("TP-5");
+        assertThat(WebhookEventParser.parse(bodies.get(1)).getCommentId()).isEqualTo("10101");
+        assertThat(bodies.get(2)).isEqualTo("42");
+    }
+
+    @Test
+    public void shouldStopSplittingBatchLargerThanAllowed() throws Exception {
+        assertThat(WebhookEventParser.split("[1, 2, 3]", 3)).containsExactly("1", "2", "3");
+        assertThat(WebhookEventParser.split("[1, 2, 3, 4]", 3)).isNull();
+        // elements past the limit aren't read, so a broken tail doesn't matter
+        assertThat(WebhookEventParser.split("[1, 2, 3, 4, {", 3)).isNull();
+    }
+
+    @Test
+    public void shouldRejectBatchWhichIsNotArray() throws Exception {
+        try {
+            WebhookEventParser.split(readFromResource("events/issue_updated.json"));
+            fail("object isn't a batch");
+        } catch (IOException expected) {
+            // expected
+        }
+    }
+
+    private String readFromResource(String resource) throws URISyntaxException, IOException {
+        ClassLoader classloader = Thread.currentThread().getContextClassLoader();
+        URL url = classloader.getResource(resource);
+        assert url != null;
+        Path file = Paths.get(url.toURI());
+        return new String(Files.readAllBytes(file));
+    }
+}
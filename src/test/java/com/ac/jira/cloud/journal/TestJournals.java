@@ -0,0 +1,20 @@
+package com.ac.jira.cloud.journal;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Opens journals for tests outside this package
+ */
+public final class TestJournals {
+    private static final long SEGMENT_BYTES = 64L * 1024 * 1024;
+
+    private TestJournals() {
+    }
+
+    public static WebhookJournal start(File directory, JournalRecordHandler handler) throws IOException {
+        WebhookJournal journal = new WebhookJournal(directory, handler, SEGMENT_BYTES);
+        journal.start();
+        return journal;
+    }
+}
@@ -0,0 +1,297 @@
+package com.ac.jira.cloud.journal;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WebhookJournalTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final int APPLY_ATTEMPTS = 100;
+    private static final long RETRY_MILLIS = 10;
+
+    private final BlockingQueue<JournalRecord> handled = new LinkedBlockingQueue<>();
+    // bodies of records the handler fails on
+    private final Set<String> failing = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final JournalRecordHandler handler = new JournalRecordHandler() {
+        @Override
+        public boolean handle(JournalRecord record) {
+            if (failing.contains(record.getBody())) {
+                throw new IllegalStateException("Jira is down");
+            }
+            handled.add(record);
+            return applies;
+        }
+    };
+    private volatile boolean applies;
+    private File directory;
+    private WebhookJournal journal;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = folder.newFolder("journal");
+        journal = open(1024 * 1024);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        journal.destroy();
+    }
+
+    @Test
+    public void shouldHandAppendedRecordsToHandlerInOrder() throws Exception {
+        append("ISSUE_CREATED", "IP-1", "{\"id\":1}");
+        append("ISSUE_UPDATED", "IP-1", "{\"id\":2}");
+
+        JournalRecord first = next();
+        JournalRecord second = next();
+
+        assertThat(first.getType()).isEqualTo("ISSUE_CREATED");
+        assertThat(first.getProjectKey()).isEqualTo("IP");
+        assertThat(first.getEntityKey()).isEqualTo("IP-1");
+        assertThat(first.getBody()).isEqualTo("{\"id\":1}");
+        assertThat(second.getBody()).isEqualTo("{\"id\":2}");
+    }
+
+    @Test
+    public void shouldKeepNullEntityKey() throws Exception {
+        append("WORKLOG_CREATED", null, "{}");
+
+        assertThat(next().getEntityKey()).isNull();
+    }
+
+    @Test
+    public void shouldResumeAfterConsumedRecordsOnRestart() throws Exception {
+        append("ISSUE_CREATED", "IP-1", "first");
+        next();
+        journal.destroy();
+
+        journal = open(1024 * 1024);
+        append("ISSUE_CREATED", "IP-2", "second");
+
+        assertThat(next().getBody()).isEqualTo("second");
+        assertThat(handled.poll(200, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    @Test
+    public void shouldPersistCursorRightAfterAppliedRecord() throws Exception {
+        applies = true;
+        long position = journal.append(new JournalRecord("ISSUE_CREATED", "IP", "IP-1", "first"));
+        journal.awaitDurable(position);
+        next();
+
+        assertThat(awaitCursor(position)).isEqualTo(position);
+    }
+
+    @Test
+    public void shouldRetryFailedRecordUntilItIsApplied() throws Exception {
+        failing.add("second");
+        append("ISSUE_CREATED", "IP-1", "first");
+        append("ISSUE_CREATED", "IP-2", "second");
+        append("ISSUE_CREATED", "IP-3", "third");
+
+        assertThat(next().getBody()).isEqualTo("first");
+        assertThat(handled.poll(100, TimeUnit.MILLISECONDS)).isNull();
+        failing.clear();
+
+        assertThat(next().getBody()).isEqualTo("second");
+        assertThat(next().getBody()).isEqualTo("third");
+    }
+
+    @Test
+    public void shouldHandFailingRecordOverAgainAfterRestart() throws Exception {
+        failing.add("first");
+        append("ISSUE_CREATED", "IP-1", "first");
+        journal.destroy();
+        failing.clear();
+
+        journal = open(1024 * 1024);
+
+        assertThat(next().getBody()).isEqualTo("first");
+    }
+
+    @Test
+    public void shouldMoveRecordToDeadLettersAndReplayIt() throws Exception {
+        journal.destroy();
+        journal = new WebhookJournal(directory, handler, 1024 * 1024, 2, RETRY_MILLIS);
+        journal.start();
+        failing.add("second");
+        append("ISSUE_CREATED", "IP-1", "first");
+        append("ISSUE_CREATED", "IP-2", "second");
+        append("ISSUE_CREATED", "IP-3", "third");
+
+        assertThat(next().getBody()).isEqualTo("first");
+        assertThat(next().getBody()).isEqualTo("third");
+        File deadLetters = new File(directory, "dead-letters");
+        assertThat(deadLetters).exists();
+
+        failing.clear();
+        assertThat(journal.replayDeadLetters()).isEqualTo(1);
+
+        JournalRecord replayed = next();
+        assertThat(replayed.getBody()).isEqualTo("second");
+        assertThat(replayed.getEntityKey()).isEqualTo("IP-2");
+        assertThat(deadLetters).doesNotExist();
+        assertThat(journal.replayDeadLetters()).isZero();
+    }
+
+    @Test
+    public void shouldTruncateTornTailOnRestart() throws Exception {
+        append("ISSUE_CREATED", "IP-1", "first");
+        next();
+        journal.destroy();
+        try (FileOutputStream out = new FileOutputStream(lastSegment(), true)) {
+            out.write(new byte[]{0, 0, 0, 42, 1, 2, 3});
+        }
+
+        journal = open(1024 * 1024);
+        append("ISSUE_CREATED", "IP-2", "second");
+
+        assertThat(next().getBody()).isEqualTo("second");
+    }
+
+    @Test
+    public void shouldRollAndDeleteConsumedSegments() throws Exception {
+        journal.destroy();
+        journal = open(256);
+
+        List<String> bodies = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            bodies.add("body-" + i);
+            append("ISSUE_UPDATED", "IP-" + i, "body-" + i);
+        }
+        List<String> received = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            received.add(next().getBody());
+        }
+        journal.destroy();
+        journal = open(256);
+
+        assertThat(received).isEqualTo(bodies);
+        assertThat(segments()).hasSize(1);
+    }
+
+    @Test
+    public void shouldRejectAppendsWhileConsumerIsDownAndRecover() throws Exception {
+        // cursor can't be written while its temporary file is blocked by a directory
+        File blocker = new File(directory, "cursor.tmp");
+        assertThat(blocker.mkdir()).isTrue();
+        append("ISSUE_CREATED", "IP-1", "first");
+        next();
+
+        assertThat(awaitAppendRejected(true)).isTrue();
+
+        assertThat(blocker.delete()).isTrue();
+        assertThat(awaitAppendRejected(false)).isFalse();
+        append("ISSUE_CREATED", "IP-2", "second");
+        JournalRecord record;
+        do {
+            // probes accepted while waiting come first
+            record = next();
+        } while (!"second".equals(record.getBody()));
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldRejectAppendWhenClosed() throws Exception {
+        journal.destroy();
+
+        journal.append(new JournalRecord("ISSUE_CREATED", "IP", "IP-1", "{}"));
+    }
+
+    private WebhookJournal open(long segmentBytes) throws IOException {
+        WebhookJournal journal = new WebhookJournal(directory, handler, segmentBytes, APPLY_ATTEMPTS, RETRY_MILLIS);
+        journal.start();
+        return journal;
+    }
+
+    private void append(String type, String entityKey, String body) throws Exception {
+        journal.awaitDurable(journal.append(new JournalRecord(type, "IP", entityKey, body)));
+    }
+
+    /**
+     * Probes the journal with appends until they're rejected or accepted as expected, at most 10 seconds
+     *
+     * @return whether the last probe was rejected
+     */
+    private boolean awaitAppendRejected(boolean expected) throws Exception {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        boolean rejected;
+        do {
+            try {
+                journal.append(new JournalRecord("ISSUE_UPDATED", "IP", "IP-0", "probe"));
+                rejected = false;
+            } catch (IOException e) {
+                rejected = true;
+            }
+            if (rejected != expected) {
+                Thread.sleep(50);
+            }
+        } while (rejected != expected && System.currentTimeMillis() < deadline);
+        return rejected;
+    }
+
+    /**
+     * Reads the persisted cursor until it reaches the position, at most 5 seconds
+     *
+     * @return the last cursor read
+     */
+    private long awaitCursor(long position) throws Exception {
+        File file = new File(directory, "cursor");
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+        long cursor = -1;
+        while (cursor != position && System.currentTimeMillis() < deadline) {
+            if (file.exists()) {
+                cursor = Long.parseLong(new String(Files.readAllBytes(file.toPath()), StandardCharsets.US_ASCII).trim());
+            }
+            if (cursor != position) {
+                Thread.sleep(20);
+            }
+        }
+        return cursor;
+    }
+
+    private JournalRecord next() throws InterruptedException {
+        JournalRecord record = handled.poll(5, TimeUnit.SECONDS);
+        assertThat(record).isNotNull();
+        return record;
+    }
+
+    private File[] segments() {
+        return directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(".log");
+            }
+        });
+    }
+
+    private File lastSegment() {
+        File last = null;
+        for (File segment : segments()) {
+            if (null == last || segment.getName().compareTo(last.getName()) > 0) {
+                last = segment;
+            }
+        }
+        return last;
+    }
+}
@@ -0,0 +1,117 @@
+package com.ai.jira.portal;
+
+import com.atlassian.jira.issue.Issue;
+import com.atlassian.jira.workflow.JiraWorkflow;
+import com.atlassian.jira.workflow.WorkflowManager;
+import com.opensymphony.workflow.loader.ActionDescriptor;
+import com.opensymphony.workflow.loader.StepDescriptor;
+import com.opensymphony.workflow.loader.WorkflowDescriptor;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class WorkflowTransitionTableTest {
+    private final WorkflowManager workflowManager = mock(WorkflowManager.class);
+    private final JiraWorkflow workflow = mock(JiraWorkflow.class);
+    private final WorkflowTransitionTable table = new WorkflowTransitionTable(workflowManager);
+    private final List<StepDescriptor> steps = new ArrayList<>();
+    private final List<ActionDescriptor> globalActions = new ArrayList<>();
+    private final List<ActionDescriptor> initialActions = new ArrayList<>();
+    private WorkflowDescriptor descriptor;
+
+    @Before
+    public void setUp() {
+        when(workflowManager.getWorkflow(any(Issue.class))).thenReturn(workflow);
+        when(workflow.getName()).thenReturn("Support workflow");
+        descriptor();
+    }
+
+    @Test
+    public void shouldLookUpActionsById() {
+        ActionDescriptor resolve = action(11);
+        ActionDescriptor comment = action(31);
+        ActionDescriptor create = action(1);
+        step(resolve);
+        globalActions.add(comment);
+        initialActions.add(create);
+
+        assertThat(table.getAction(issue(), 11)).isSameAs(resolve);
+        assertThat(table.getAction(issue(), 31)).isSameAs(comment);
+        assertThat(table.getAction(issue(), 1)).isSameAs(create);
+    }
+
+    @Test
+    public void shouldLeaveActionsOutOfIndexToDescriptor() {
+        ActionDescriptor common = action(41);
+        when(descriptor.getAction(41)).thenReturn(common);
+        step(action(11));
+
+        assertThat(table.getAction(issue(), 41)).isSameAs(common);
+        assertThat(table.getAction(issue(), 99)).isNull();
+    }
+
+    @Test
+    public void shouldPreferFirstActionOfIdLikeDescriptor() {
+        ActionDescriptor global = action(31);
+        globalActions.add(global);
+        step(action(31));
+
+        assertThat(table.getAction(issue(), 31)).isSameAs(global);
+    }
+
+    @Test
+    public void shouldReturnNullWhenIssueHasNoWorkflow() {
+        when(workflowManager.getWorkflow(any(Issue.class))).thenReturn(null);
+
+        assertThat(table.getAction(issue(), 11)).isNull();
+    }
+
+    @Test
+    public void shouldCompileWorkflowOnceUntilItIsPublished() {
+        step(action(11));
+        table.getAction(issue(), 11);
+        table.getAction(issue(), 11);
+        verify(descriptor, times(1)).getSteps();
+
+        steps.clear();
+        descriptor();
+        ActionDescriptor republished = action(11);
+        step(republished);
+
+        assertThat(table.getAction(issue(), 11)).isSameAs(republished);
+    }
+
+    private void descriptor() {
+        descriptor = mock(WorkflowDescriptor.class);
+        when(descriptor.getSteps()).thenReturn(steps);
+        when(descriptor.getGlobalActions()).thenReturn(globalActions);
+        when(descriptor.getInitialActions()).thenReturn(initialActions);
+        when(workflow.getDescriptor()).thenReturn(descriptor);
+    }
+
+    private void step(ActionDescriptor... actions) {
+        StepDescriptor step = mock(StepDescriptor.class);
+        when(step.getActions()).thenReturn(Arrays.asList(actions));
+        steps.add(step);
+    }
+
+    private static ActionDescriptor action(int id) {
+        ActionDescriptor action = mock(ActionDescriptor.class);
+        when(action.getId()).thenReturn(id);
+        return action;
+    }
+
+    private static Issue issue() {
+        return mock(Issue.class);
+    }
+}
@@ -0,0 +1,62 @@
+package com.ai.jira.portal.ao.attachment;
+
+import com.atlassian.activeobjects.external.ActiveObjects;
+import net.java.ao.Query;
+import org.junit.Test;
+
+import static com.ai.jira.portal.ao.attachment.AttachmentLinkManager.AttachmentType.INTERNAL;
+import static com.ai.jira.portal.ao.attachment.AttachmentLinkManager.AttachmentType.PORTAL;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class AttachmentLinkManagerTest {
+    private final ActiveObjects ao = mock(ActiveObjects.class);
+    private final AttachmentLinkManager manager = new AttachmentLinkManager(ao);
+
+    @Test
+    public void shouldMapPortalAttachmentsToInternalOnes() {
+        links(link(100L, 200L), link(101L, 201L));
+
+        assertThat(manager.getLinkedAttachments(PORTAL, 1L)).containsOnly(entry(100L, 200L), entry(101L, 201L));
+    }
+
+    @Test
+    public void shouldMapInternalAttachmentsToPortalOnes() {
+        links(link(100L, 200L));
+
+        assertThat(manager.getLinkedAttachments(INTERNAL, 2L)).containsOnly(entry(200L, 100L));
+    }
+
+    @Test
+    public void shouldReturnNullWhenAttachmentIsNotLinked() {
+        links();
+
+        assertThat(manager.getAttachmentByTypeAndId(PORTAL, 100L)).isNull();
+        assertThat(manager.getLinkedAttachments(PORTAL, 1L)).isEmpty();
+    }
+
+    @Test
+    public void shouldReturnLinkOfAttachment() {
+        AttachmentLink link = link(100L, 200L);
+        links(link);
+
+        assertThat(manager.getAttachmentByTypeAndId(PORTAL, 100L)).isSameAs(link);
+    }
+
+    private void links(AttachmentLink... links) {
+        when(ao.find(eq(AttachmentLink.class), any(Query.class))).thenReturn(links);
+    }
+
+    private static AttachmentLink link(Long portalAttachmentId, Long internalAttachmentId) {
+        AttachmentLink link = mock(AttachmentLink.class);
+        when(link.getPortalIssueId()).thenReturn(1L);
+        when(link.getInternalIssueId()).thenReturn(2L);
+        when(link.getPortalAttachmentId()).thenReturn(portalAttachmentId);
+        when(link.getInternalAttachmentId()).thenReturn(internalAttachmentId);
+        return link;
+    }
+}
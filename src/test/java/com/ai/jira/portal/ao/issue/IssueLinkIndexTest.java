@@ -0,0 +1,92 @@
+package com.ai.jira.portal.ao.issue;
+
+import com.atlassian.activeobjects.external.ActiveObjects;
+import net.java.ao.EntityStreamCallback;
+import net.java.ao.Query;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class IssueLinkIndexTest {
+    private final CustomIssueLinkManager customIssueLinkManager = mock(CustomIssueLinkManager.class);
+    private final ActiveObjects ao = mock(ActiveObjects.class);
+    private final IssueLinkIndex index = new IssueLinkIndex(customIssueLinkManager, ao);
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() throws Exception {
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                EntityStreamCallback<CustomIssueLink, Integer> callback = (EntityStreamCallback<CustomIssueLink, Integer>) invocation.getArguments()[2];
+                callback.onRowRead(link(10100L, 20100L));
+                return null;
+            }
+        }).when(ao).stream(eq(CustomIssueLink.class), any(Query.class), any(EntityStreamCallback.class));
+        index.onStart();
+        awaitLoaded(10100L);
+    }
+
+    @Test
+    public void shouldLookUpLinkInBothDirections() {
+        assertThat(index.getTarget(10100L)).isEqualTo(20100L);
+        assertThat(index.getSource(20100L)).isEqualTo(10100L);
+        assertThat(index.isLinked(10100L)).isTrue();
+        assertThat(index.isLinked(20200L)).isFalse();
+    }
+
+    @Test
+    public void shouldDropPreviousTargetWhenSourceIsLinkedAgain() {
+        index.save(10100L, 20200L);
+
+        assertThat(index.getTarget(10100L)).isEqualTo(20200L);
+        assertThat(index.getSource(20200L)).isEqualTo(10100L);
+        assertThat(index.getSource(20100L)).isNull();
+        assertThat(index.isLinked(20100L)).isFalse();
+    }
+
+    @Test
+    public void shouldDropPreviousSourceWhenTargetIsLinkedAgain() {
+        index.save(10200L, 20100L);
+
+        assertThat(index.getSource(20100L)).isEqualTo(10200L);
+        assertThat(index.getTarget(10200L)).isEqualTo(20100L);
+        assertThat(index.getTarget(10100L)).isNull();
+        assertThat(index.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldRemoveLinkInBothDirections() {
+        index.remove(20100L, false);
+
+        assertThat(index.getTarget(10100L)).isNull();
+        assertThat(index.getSource(20100L)).isNull();
+        assertThat(index.size()).isZero();
+    }
+
+    private void awaitLoaded(Long source) throws InterruptedException {
+        // until the index is loaded lookups go to the database mock, which knows no links
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+        while (null == index.getTarget(source) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(index.getTarget(source)).isNotNull();
+    }
+
+    private static CustomIssueLink link(Long source, Long target) {
+        CustomIssueLink link = mock(CustomIssueLink.class);
+        when(link.getSource()).thenReturn(source);
+        when(link.getTarget()).thenReturn(target);
+        return link;
+    }
+}
@@ -0,0 +1,62 @@
+package com.ai.jira.portal.ao.issue;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LongLongHashMapTest {
+
+    @Test
+    public void shouldReturnNoValueForMissingKey() {
+        LongLongHashMap map = new LongLongHashMap();
+
+        assertThat(map.get(10100L)).isEqualTo(LongLongHashMap.NO_VALUE);
+        assertThat(map.remove(10100L)).isEqualTo(LongLongHashMap.NO_VALUE);
+        assertThat(map.size()).isZero();
+    }
+
+    @Test
+    public void shouldReplaceValueOfExistingKey() {
+        LongLongHashMap map = new LongLongHashMap();
+
+        assertThat(map.put(10100L, 20100L)).isEqualTo(LongLongHashMap.NO_VALUE);
+        assertThat(map.put(10100L, 20200L)).isEqualTo(20100L);
+
+        assertThat(map.get(10100L)).isEqualTo(20200L);
+        assertThat(map.size()).isEqualTo(1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectZeroKey() {
+        new LongLongHashMap().put(0L, 1L);
+    }
+
+    @Test
+    public void shouldBehaveLikeHashMapUnderRandomPutsAndRemoves() {
+        LongLongHashMap map = new LongLongHashMap();
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 200000; i++) {
+            long key = 1 + random.nextInt(5000);
+            if (random.nextInt(3) == 0) {
+                Long removed = expected.remove(key);
+                assertThat(map.remove(key)).isEqualTo(null == removed ? LongLongHashMap.NO_VALUE : removed);
+            } else {
+                long value = 1 + random.nextInt(Integer.MAX_VALUE);
+                Long previous = expected.put(key, value);
+                assertThat(map.put(key, value)).isEqualTo(null == previous ? LongLongHashMap.NO_VALUE : previous);
+            }
+        }
+
+        assertThat(map.size()).isEqualTo(expected.size());
+        for (long key = 1; key <= 5000; key++) {
+            Long value = expected.get(key);
+            assertThat(map.get(key)).isEqualTo(null == value ? LongLongHashMap.NO_VALUE : value);
+        }
+    }
+}
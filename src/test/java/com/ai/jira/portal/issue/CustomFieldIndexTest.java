@@ -0,0 +1,91 @@
+package com.ai.jira.portal.issue;
+
+import com.atlassian.event.api.EventPublisher;
+import com.atlassian.jira.issue.CustomFieldManager;
+import com.atlassian.jira.issue.Issue;
+import com.atlassian.jira.issue.fields.CustomField;
+import com.atlassian.jira.issue.issuetype.IssueType;
+import com.atlassian.jira.project.Project;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CustomFieldIndexTest {
+    private static final Long PROJECT_ID = 10000L;
+    private static final String ISSUE_TYPE_ID = "1";
+
+    private final CustomFieldManager customFieldManager = mock(CustomFieldManager.class);
+    private final CustomFieldIndex index = new CustomFieldIndex(customFieldManager, mock(EventPublisher.class));
+    private final Issue issue = mock(Issue.class);
+
+    @Before
+    public void setUp() {
+        Project project = mock(Project.class);
+        when(project.getId()).thenReturn(PROJECT_ID);
+        IssueType issueType = mock(IssueType.class);
+        when(issueType.getId()).thenReturn(ISSUE_TYPE_ID);
+        when(issue.getProjectObject()).thenReturn(project);
+        when(issue.getIssueTypeObject()).thenReturn(issueType);
+    }
+
+    @Test
+    public void shouldLoadFieldsOfContextOnce() {
+        CustomField urgency = field("Urgency");
+        when(customFieldManager.getCustomFieldObjects(PROJECT_ID, ISSUE_TYPE_ID)).thenReturn(Collections.singletonList(urgency));
+
+        assertThat(index.getCustomFieldByName(issue, "Urgency")).isSameAs(urgency);
+        assertThat(index.getCustomFieldByName(issue, "Impact")).isNull();
+        verify(customFieldManager, times(1)).getCustomFieldObjects(PROJECT_ID, ISSUE_TYPE_ID);
+    }
+
+    @Test
+    public void shouldLoadFieldsAgainAfterInvalidation() {
+        CustomField urgency = field("Urgency");
+        when(customFieldManager.getCustomFieldObjects(PROJECT_ID, ISSUE_TYPE_ID))
+                .thenReturn(Collections.<CustomField>emptyList(), Collections.singletonList(urgency));
+
+        assertThat(index.getCustomFieldByName(issue, "Urgency")).isNull();
+        index.invalidate();
+
+        assertThat(index.getCustomFieldByName(issue, "Urgency")).isSameAs(urgency);
+    }
+
+    @Test
+    public void shouldNotKeepFieldsLoadedWhileIndexWasInvalidated() {
+        final CustomField urgency = field("Urgency");
+        when(customFieldManager.getCustomFieldObjects(PROJECT_ID, ISSUE_TYPE_ID)).thenAnswer(new Answer<List<CustomField>>() {
+            private boolean loaded;
+
+            @Override
+            public List<CustomField> answer(InvocationOnMock invocation) {
+                if (loaded) {
+                    return Collections.singletonList(urgency);
+                }
+                // configuration changes after the first load read it
+                loaded = true;
+                index.invalidate();
+                return Collections.emptyList();
+            }
+        });
+
+        assertThat(index.getCustomFieldByName(issue, "Urgency")).isNull();
+
+        assertThat(index.getCustomFieldByName(issue, "Urgency")).isSameAs(urgency);
+    }
+
+    private static CustomField field(String name) {
+        CustomField field = mock(CustomField.class);
+        when(field.getNameKey()).thenReturn(name);
+        return field;
+    }
+}
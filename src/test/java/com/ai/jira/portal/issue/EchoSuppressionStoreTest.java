@@ -0,0 +1,93 @@
+package com.ai.jira.portal.issue;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EchoSuppressionStoreTest {
+    private static final Long UPDATED = 2L;
+    private static final Long COMMENTED = 6L;
+    private static final long TTL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    @Test
+    public void shouldConsumeTokenOnce() {
+        EchoSuppressionStore store = new EchoSuppressionStore(TTL_MILLIS, 10);
+        store.suppress(UPDATED, "10000");
+
+        assertThat(store.consume(COMMENTED, "10000")).isFalse();
+        assertThat(store.consume(UPDATED, "10001")).isFalse();
+        assertThat(store.consume(UPDATED, "10000")).isTrue();
+        assertThat(store.consume(UPDATED, "10000")).isFalse();
+        assertThat(store.size()).isZero();
+    }
+
+    @Test
+    public void shouldIgnoreEventsWithoutSubject() {
+        EchoSuppressionStore store = new EchoSuppressionStore(TTL_MILLIS, 10);
+        store.suppress(UPDATED, null);
+
+        assertThat(store.size()).isZero();
+        assertThat(store.consume(UPDATED, null)).isFalse();
+    }
+
+    @Test
+    public void shouldNotSuppressExpiredToken() throws Exception {
+        EchoSuppressionStore store = new EchoSuppressionStore(1, 10);
+        store.suppress(UPDATED, "10000");
+        Thread.sleep(10);
+
+        assertThat(store.consume(UPDATED, "10000")).isFalse();
+    }
+
+    @Test
+    public void shouldDropExpiredTokensWhenNextOneIsRegistered() throws Exception {
+        EchoSuppressionStore store = new EchoSuppressionStore(1, 10);
+        store.suppress(UPDATED, "10000");
+        store.suppress(UPDATED, "10001");
+        Thread.sleep(10);
+
+        store.suppress(UPDATED, "10002");
+
+        assertThat(store.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldDropOldestTokensBeyondMaxSize() {
+        EchoSuppressionStore store = new EchoSuppressionStore(TTL_MILLIS, 2);
+        store.suppress(UPDATED, "10000");
+        store.suppress(UPDATED, "10001");
+        store.suppress(UPDATED, "10002");
+
+        assertThat(store.size()).isEqualTo(2);
+        assertThat(store.consume(UPDATED, "10000")).isFalse();
+        assertThat(store.consume(UPDATED, "10001")).isTrue();
+        assertThat(store.consume(UPDATED, "10002")).isTrue();
+    }
+
+    @Test
+    public void shouldKeepTokenRegisteredAgainInPlaceOfNewerOnes() {
+        EchoSuppressionStore store = new EchoSuppressionStore(TTL_MILLIS, 2);
+        store.suppress(UPDATED, "10000");
+        store.suppress(UPDATED, "10001");
+        store.suppress(UPDATED, "10000");
+        store.suppress(UPDATED, "10002");
+
+        assertThat(store.consume(UPDATED, "10000")).isTrue();
+        assertThat(store.consume(UPDATED, "10001")).isFalse();
+        assertThat(store.consume(UPDATED, "10002")).isTrue();
+    }
+
+    @Test
+    public void shouldNotDropLiveTokensForConsumedOnes() {
+        EchoSuppressionStore store = new EchoSuppressionStore(TTL_MILLIS, 2);
+        store.suppress(UPDATED, "10000");
+        store.consume(UPDATED, "10000");
+        store.suppress(UPDATED, "10001");
+        store.suppress(UPDATED, "10002");
+
+        assertThat(store.consume(UPDATED, "10001")).isTrue();
+        assertThat(store.consume(UPDATED, "10002")).isTrue();
+    }
+}
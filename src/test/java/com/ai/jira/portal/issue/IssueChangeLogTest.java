@@ -0,0 +1,111 @@
+package com.ai.jira.portal.issue;
+
+import com.atlassian.jira.event.issue.IssueEvent;
+import org.junit.Test;
+import org.ofbiz.core.entity.GenericEntityException;
+import org.ofbiz.core.entity.GenericValue;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class IssueChangeLogTest {
+
+    @Test
+    public void shouldReadSystemFieldsByChangeHistoryName() throws Exception {
+        IssueChangeLog changes = TestChangeLogs.of(
+                new String[]{"jira", "summary", "old", "new"},
+                new String[]{"jira", "Fix Version", null, "10100"},
+                new String[]{"jira", "assignee", "admin", "user"});
+
+        assertThat(changes.hasFieldChanges()).isTrue();
+        assertThat(changes.isChanged(IssueChangeLog.SUMMARY)).isTrue();
+        assertThat(changes.isChanged(IssueChangeLog.FIX_VERSIONS)).isTrue();
+        assertThat(changes.isChanged(IssueChangeLog.ASSIGNEE)).isTrue();
+        assertThat(changes.isChanged(IssueChangeLog.DESCRIPTION)).isFalse();
+        assertThat(changes.hasAttachmentChanges()).isFalse();
+    }
+
+    @Test
+    public void shouldReadCustomFieldsByName() throws Exception {
+        IssueChangeLog changes = TestChangeLogs.of(new String[]{"custom", "Business Impact", "Low", "High"});
+
+        assertThat(changes.hasFieldChanges()).isTrue();
+        assertThat(changes.isCustomFieldChanged("Business Impact")).isTrue();
+        assertThat(changes.isCustomFieldChanged("Urgency")).isFalse();
+        assertThat(changes.isChanged("Business Impact")).isFalse();
+    }
+
+    @Test
+    public void shouldKeepSystemAndCustomFieldOfSameNameApart() throws Exception {
+        IssueChangeLog changes = TestChangeLogs.of(new String[]{"custom", "labels", null, "x"});
+
+        assertThat(changes.isCustomFieldChanged("labels")).isTrue();
+        assertThat(changes.isChanged(IssueChangeLog.LABELS)).isFalse();
+    }
+
+    @Test
+    public void shouldReadAddedAndRemovedAttachments() throws Exception {
+        IssueChangeLog changes = TestChangeLogs.of(
+                new String[]{"jira", "Attachment", null, "100"},
+                new String[]{"jira", "Attachment", "101", null});
+
+        assertThat(changes.hasAttachmentChanges()).isTrue();
+        assertThat(changes.hasFieldChanges()).isFalse();
+        assertThat(changes.getAddedAttachmentIds()).containsExactly(100L);
+        assertThat(changes.getRemovedAttachmentIds()).containsExactly(101L);
+    }
+
+    @Test
+    public void shouldIgnoreFieldsSynchronizedByOtherMeans() throws Exception {
+        IssueChangeLog changes = TestChangeLogs.of(
+                new String[]{"jira", "status", "1", "3"},
+                new String[]{"jira", "Link", null, "10200"},
+                new String[]{"jira", "Workflow", "10000", "10001"});
+
+        assertThat(changes.hasFieldChanges()).isFalse();
+        assertThat(changes.isChanged("status")).isFalse();
+    }
+
+    @Test
+    public void shouldMergeChangesOfBothEvents() throws Exception {
+        IssueChangeLog merged = IssueChangeLog.merge(
+                TestChangeLogs.of(
+                        new String[]{"jira", "summary", "a", "b"},
+                        new String[]{"jira", "Attachment", null, "100"}),
+                TestChangeLogs.of(
+                        new String[]{"custom", "Urgency", "Low", "High"},
+                        new String[]{"jira", "Attachment", "101", null}));
+
+        assertThat(merged.isChanged(IssueChangeLog.SUMMARY)).isTrue();
+        assertThat(merged.isCustomFieldChanged("Urgency")).isTrue();
+        assertThat(merged.isChanged(IssueChangeLog.DESCRIPTION)).isFalse();
+        assertThat(merged.getAddedAttachmentIds()).containsExactly(100L);
+        assertThat(merged.getRemovedAttachmentIds()).containsExactly(101L);
+    }
+
+    @Test
+    public void shouldMergeToUnknownChangesWhenEitherIsUnknown() throws Exception {
+        IssueChangeLog changes = TestChangeLogs.of(new String[]{"jira", "summary", "a", "b"});
+
+        assertThat(IssueChangeLog.merge(changes, null)).isNull();
+        assertThat(IssueChangeLog.merge(null, changes)).isNull();
+    }
+
+    @Test
+    public void shouldReturnNullWhenEventHasNoChangeHistory() {
+        IssueEvent event = mock(IssueEvent.class);
+
+        assertThat(IssueChangeLog.of(event)).isNull();
+    }
+
+    @Test
+    public void shouldReturnNullWhenChangeItemsCanNotBeRead() throws Exception {
+        GenericValue changeLog = mock(GenericValue.class);
+        when(changeLog.getRelated("ChildChangeItem")).thenThrow(new GenericEntityException("gone"));
+        IssueEvent event = mock(IssueEvent.class);
+        when(event.getChangeLog()).thenReturn(changeLog);
+
+        assertThat(IssueChangeLog.of(event)).isNull();
+    }
+}
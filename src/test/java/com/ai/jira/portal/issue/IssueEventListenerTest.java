@@ -0,0 +1,125 @@
+package com.ai.jira.portal.issue;
+
+import com.ai.jira.portal.ao.project.ProjectExtraFields;
+import com.ai.jira.portal.ao.project.ProjectExtraFieldsCache;
+import com.atlassian.jira.event.issue.IssueEvent;
+import com.atlassian.jira.issue.Issue;
+import com.atlassian.jira.issue.IssueManager;
+import com.atlassian.jira.issue.MutableIssue;
+import com.atlassian.jira.issue.comments.Comment;
+import com.atlassian.jira.issue.issuetype.IssueType;
+import com.atlassian.jira.mock.component.MockComponentWorker;
+import com.atlassian.jira.project.Project;
+import com.atlassian.jira.security.JiraAuthenticationContext;
+import com.atlassian.jira.user.ApplicationUser;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import static com.atlassian.jira.event.type.EventType.ISSUE_UPDATED_ID;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class IssueEventListenerTest {
+    private static final long ISSUE_ID = 1L;
+    private static final long PORTAL_PROJECT_ID = 10000L;
+    // the listener reads IssueManager once, when its class is initialized
+    private static final IssueManager issueManager = mock(IssueManager.class);
+
+    private final ProjectExtraFieldsCache projectExtraCache = mock(ProjectExtraFieldsCache.class);
+    private final IssueSynchronizer synchronizer = mock(IssueSynchronizer.class);
+    private final MutableIssue issue = mock(MutableIssue.class);
+    private final MutableIssue relatedIssue = mock(MutableIssue.class);
+    private IssueEventListener listener;
+
+    @BeforeClass
+    public static void setUpComponents() {
+        new MockComponentWorker()
+                .addMock(IssueManager.class, issueManager)
+                .addMock(JiraAuthenticationContext.class, mock(JiraAuthenticationContext.class))
+                .init();
+    }
+
+    @Before
+    public void setUp() {
+        reset(issueManager);
+        Project portalProject = mock(Project.class);
+        when(portalProject.getId()).thenReturn(PORTAL_PROJECT_ID);
+        ProjectExtraFields portalExtra = mock(ProjectExtraFields.class);
+        when(portalExtra.isPortal()).thenReturn(true);
+        when(projectExtraCache.getProjectExtra(PORTAL_PROJECT_ID)).thenReturn(portalExtra);
+        when(projectExtraCache.getRelatedProject(PORTAL_PROJECT_ID)).thenReturn(mock(Project.class));
+        when(issue.getId()).thenReturn(ISSUE_ID);
+        when(issue.getProjectObject()).thenReturn(portalProject);
+        when(issue.getIssueTypeObject()).thenReturn(mock(IssueType.class));
+        when(issueManager.getIssueObject(ISSUE_ID)).thenReturn(issue);
+        when(synchronizer.getRelatedIssue(true, issue)).thenReturn(relatedIssue);
+
+        listener = new IssueEventListener(projectExtraCache, synchronizer, mock(IssueSyncExecutor.class));
+    }
+
+    @Test
+    public void shouldSyncCoalescedUpdatesOnceWithMergedChanges() throws Exception {
+        Comment first = mock(Comment.class);
+        Comment second = mock(Comment.class);
+        IssueEvent summaryChanged = event(first, new String[]{"jira", "summary", "a", "b"});
+        IssueEvent impactChanged = event(null, new String[]{"custom", "Business Impact", "Low", "High"});
+        IssueEvent commented = event(second);
+
+        listener.processCoalescedUpdate(pending(summaryChanged, impactChanged, commented));
+
+        ArgumentCaptor<IssueChangeLog> changes = ArgumentCaptor.forClass(IssueChangeLog.class);
+        verify(synchronizer).updateIssue(any(ApplicationUser.class), eq(issue), eq(relatedIssue), eq(first), eq(ISSUE_UPDATED_ID), changes.capture());
+        verify(synchronizer).copyComment(issue, relatedIssue, second);
+        assertThat(changes.getValue().isChanged(IssueChangeLog.SUMMARY)).isTrue();
+        assertThat(changes.getValue().isCustomFieldChanged("Business Impact")).isTrue();
+        assertThat(changes.getValue().isChanged(IssueChangeLog.DESCRIPTION)).isFalse();
+    }
+
+    @Test
+    public void shouldSyncAllFieldsWhenChangesOfAnyUpdateAreUnknown() throws Exception {
+        IssueEvent summaryChanged = event(null, new String[]{"jira", "summary", "a", "b"});
+        IssueEvent withoutChangeLog = mock(IssueEvent.class);
+        when(withoutChangeLog.getIssue()).thenReturn(issue);
+
+        listener.processCoalescedUpdate(pending(summaryChanged, withoutChangeLog));
+
+        verify(synchronizer).updateIssue(any(ApplicationUser.class), eq(issue), eq(relatedIssue), (Comment) isNull(), eq(ISSUE_UPDATED_ID), (IssueChangeLog) isNull());
+    }
+
+    @Test
+    public void shouldSkipUpdatesOfIssueWhichDoesNotExistAnymore() throws Exception {
+        when(issueManager.getIssueObject(ISSUE_ID)).thenReturn(null);
+
+        listener.processCoalescedUpdate(pending(event(null, new String[]{"jira", "summary", "a", "b"})));
+
+        verify(synchronizer, never()).getRelatedIssue(anyBoolean(), any(Issue.class));
+        verify(synchronizer, never()).updateIssue(any(ApplicationUser.class), any(MutableIssue.class), any(MutableIssue.class),
+                any(Comment.class), anyLong(), any(IssueChangeLog.class));
+    }
+
+    private IssueEvent event(Comment comment, String[]... items) throws Exception {
+        IssueEvent event = TestChangeLogs.event(items);
+        when(event.getIssue()).thenReturn(issue);
+        when(event.getComment()).thenReturn(comment);
+        return event;
+    }
+
+    private static IssueEventListener.PendingUpdate pending(IssueEvent first, IssueEvent... next) {
+        IssueEventListener.PendingUpdate pending = new IssueEventListener.PendingUpdate(ISSUE_ID, first);
+        for (IssueEvent event : next) {
+            pending.events.add(event);
+        }
+        return pending;
+    }
+}
@@ -0,0 +1,83 @@
+package com.ai.jira.portal.issue;
+
+import com.atlassian.jira.issue.Issue;
+import com.atlassian.jira.issue.fields.CustomField;
+import com.atlassian.jira.issue.label.Label;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class IssueFingerprintTest {
+    private static final List<CustomField> NO_FIELDS = Collections.emptyList();
+
+    @Test
+    public void shouldBeEqualForIssuesWithSameSyncedFields() {
+        Issue issue = issue("Summary", "Description", "a", "b");
+        Issue mirror = issue("Summary", "Description", "b", "a");
+        when(mirror.getPriorityId()).thenReturn("5");
+
+        assertThat(IssueFingerprint.of(issue, NO_FIELDS)).isEqualTo(IssueFingerprint.of(mirror, NO_FIELDS));
+    }
+
+    @Test
+    public void shouldDifferWhenSyncedFieldDiffers() {
+        Issue issue = issue("Summary", "Description");
+        Issue mirror = issue("Summary", "Other description");
+
+        assertThat(IssueFingerprint.of(issue, NO_FIELDS)).isNotEqualTo(IssueFingerprint.of(mirror, NO_FIELDS));
+    }
+
+    @Test
+    public void shouldNotMixAdjacentFields() {
+        Issue issue = issue("ab", "c");
+        Issue mirror = issue("a", "bc");
+
+        assertThat(IssueFingerprint.of(issue, NO_FIELDS)).isNotEqualTo(IssueFingerprint.of(mirror, NO_FIELDS));
+    }
+
+    @Test
+    public void shouldHashCustomFieldValuesExceptPortalKey() {
+        CustomField urgency = customField("customfield_10000", "Urgency");
+        CustomField portalKey = customField("customfield_10001", "Portal Key");
+        List<CustomField> fields = Arrays.asList(urgency, portalKey);
+        Issue issue = issue("Summary", "Description");
+        Issue mirror = issue("Summary", "Description");
+        when(issue.getCustomFieldValue(urgency)).thenReturn("High");
+        when(mirror.getCustomFieldValue(urgency)).thenReturn("High");
+        when(mirror.getCustomFieldValue(portalKey)).thenReturn("IP-1");
+
+        assertThat(IssueFingerprint.of(issue, fields)).isEqualTo(IssueFingerprint.of(mirror, fields));
+
+        when(mirror.getCustomFieldValue(urgency)).thenReturn("Low");
+
+        assertThat(IssueFingerprint.of(issue, fields)).isNotEqualTo(IssueFingerprint.of(mirror, fields));
+    }
+
+    private static Issue issue(String summary, String description, String... labels) {
+        Issue issue = mock(Issue.class);
+        when(issue.getSummary()).thenReturn(summary);
+        when(issue.getDescription()).thenReturn(description);
+        LinkedHashSet<Label> issueLabels = new LinkedHashSet<>();
+        for (String name : labels) {
+            Label label = mock(Label.class);
+            when(label.getLabel()).thenReturn(name);
+            issueLabels.add(label);
+        }
+        when(issue.getLabels()).thenReturn(issueLabels);
+        return issue;
+    }
+
+    private static CustomField customField(String id, String name) {
+        CustomField customField = mock(CustomField.class);
+        when(customField.getId()).thenReturn(id);
+        when(customField.getName()).thenReturn(name);
+        return customField;
+    }
+}
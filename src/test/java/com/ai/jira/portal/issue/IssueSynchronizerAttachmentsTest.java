@@ -0,0 +1,220 @@
+package com.ai.jira.portal.issue;
+
+import com.ai.jira.portal.ActionResolverManager;
+import com.ai.jira.portal.ao.attachment.AttachmentLink;
+import com.ai.jira.portal.ao.attachment.AttachmentLinkManager;
+import com.ai.jira.portal.ao.comment.CommentLinkManager;
+import com.ai.jira.portal.ao.issue.IssueLinkIndex;
+import com.ai.jira.portal.ao.project.ProjectExtraFields;
+import com.ai.jira.portal.ao.project.ProjectExtraFieldsCache;
+import com.ai.jira.portal.ao.version.VersionMappingCache;
+import com.ai.jira.portal.mapping.PriorityMapperCache;
+import com.atlassian.event.api.EventPublisher;
+import com.atlassian.jira.issue.AttachmentManager;
+import com.atlassian.jira.issue.CustomFieldManager;
+import com.atlassian.jira.issue.IssueManager;
+import com.atlassian.jira.issue.MutableIssue;
+import com.atlassian.jira.issue.attachment.Attachment;
+import com.atlassian.jira.mock.component.MockComponentWorker;
+import com.atlassian.jira.project.Project;
+import com.atlassian.jira.security.roles.ProjectRoleManager;
+import com.atlassian.jira.user.ApplicationUser;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.ai.jira.portal.ao.attachment.AttachmentLinkManager.AttachmentType.PORTAL;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+public class IssueSynchronizerAttachmentsTest {
+    private static final long PORTAL_PROJECT_ID = 10000L;
+    private static final long INTERNAL_PROJECT_ID = 10001L;
+
+    private final AttachmentManager attachmentManager = mock(AttachmentManager.class);
+    private final AttachmentLinkManager attachmentLinkManager = mock(AttachmentLinkManager.class);
+    private final ProjectExtraFieldsCache projectExtraCache = mock(ProjectExtraFieldsCache.class);
+    private final ApplicationUser user = mock(ApplicationUser.class);
+    private MutableIssue issue;
+    private MutableIssue relatedIssue;
+    private IssueSynchronizer synchronizer;
+
+    @Before
+    public void setUp() {
+        new MockComponentWorker()
+                .addMock(AttachmentManager.class, attachmentManager)
+                .init();
+        Project portalProject = project(PORTAL_PROJECT_ID);
+        Project internalProject = project(INTERNAL_PROJECT_ID);
+        issue = issue(1L, portalProject);
+        relatedIssue = issue(2L, internalProject);
+        ProjectExtraFields portalExtra = mock(ProjectExtraFields.class);
+        when(portalExtra.isPortal()).thenReturn(true);
+        when(projectExtraCache.getProjectExtra(PORTAL_PROJECT_ID)).thenReturn(portalExtra);
+        when(projectExtraCache.getRelatedProject(PORTAL_PROJECT_ID)).thenReturn(internalProject);
+        when(attachmentLinkManager.getLinkedAttachments(PORTAL, 1L)).thenReturn(new HashMap<Long, Long>());
+
+        synchronizer = spy(new IssueSynchronizer(mock(ProjectRoleManager.class), mock(IssueLinkIndex.class), mock(VersionMappingCache.class),
+                mock(ActionResolverManager.class), mock(CommentLinkManager.class), mock(PriorityMapperCache.class),
+                mock(IssueTransitionValidator.class), mock(IssueManager.class), mock(CustomFieldIndex.class), projectExtraCache,
+                mock(IssueReindexQueue.class), attachmentLinkManager,
+                new CustomFieldMappingPlans(mock(CustomFieldManager.class), mock(EventPublisher.class))));
+        doNothing().when(synchronizer).removeAttachment(any(Attachment.class), any(MutableIssue.class));
+    }
+
+    @Test
+    public void shouldMirrorAddedAttachmentAndLinkIt() throws Exception {
+        Attachment attachment = attachment(100L, "a.txt", 10L);
+        attachments(issue, attachment);
+        doReturn(200L).when(synchronizer).createAttachment(attachment, relatedIssue, user);
+
+        synchronizer.syncAttachments(issue, relatedIssue, user, TestChangeLogs.of(new String[]{"jira", "Attachment", null, "100"}));
+
+        verify(attachmentLinkManager).save(1L, 2L, 100L, 200L);
+    }
+
+    @Test
+    public void shouldNotMirrorAddedAttachmentWhichIsAlreadyLinked() throws Exception {
+        Attachment attachment = attachment(100L, "a.txt", 10L);
+        attachments(issue, attachment);
+        when(attachmentLinkManager.getAttachmentByTypeAndId(PORTAL, 100L)).thenReturn(link(100L, 200L));
+
+        synchronizer.syncAttachments(issue, relatedIssue, user, TestChangeLogs.of(new String[]{"jira", "Attachment", null, "100"}));
+
+        verify(synchronizer, never()).createAttachment(any(Attachment.class), any(MutableIssue.class), any(ApplicationUser.class));
+        verify(attachmentLinkManager, never()).save(anyLong(), anyLong(), anyLong(), anyLong());
+    }
+
+    @Test
+    public void shouldRemoveMirrorOfRemovedAttachment() throws Exception {
+        Attachment mirror = attachment(200L, "a.txt", 10L);
+        attachments(relatedIssue, mirror);
+        when(attachmentLinkManager.getAttachmentByTypeAndId(PORTAL, 100L)).thenReturn(link(100L, 200L));
+
+        synchronizer.syncAttachments(issue, relatedIssue, user, TestChangeLogs.of(new String[]{"jira", "Attachment", "100", null}));
+
+        verify(synchronizer).removeAttachment(mirror, relatedIssue);
+        verify(attachmentLinkManager).removeByAttachment(PORTAL, 100L);
+    }
+
+    @Test
+    public void shouldSkipEventWithoutAttachmentChanges() throws Exception {
+        synchronizer.syncAttachments(issue, relatedIssue, user, TestChangeLogs.of(new String[]{"jira", "summary", "old", "new"}));
+
+        verifyZeroInteractions(attachmentLinkManager, attachmentManager);
+    }
+
+    @Test
+    public void shouldLinkUnlinkedMirrorWithSameNameAndSizeWhenChangesAreUnknown() {
+        attachments(issue, attachment(100L, "a.txt", 10L));
+        attachments(relatedIssue, attachment(200L, "a.txt", 10L));
+
+        synchronizer.syncAttachments(issue, relatedIssue, user, null);
+
+        verify(attachmentLinkManager).save(1L, 2L, 100L, 200L);
+        verify(synchronizer, never()).createAttachment(any(Attachment.class), any(MutableIssue.class), any(ApplicationUser.class));
+    }
+
+    @Test
+    public void shouldMirrorAttachmentWhenLegacyMirrorDiffersInSize() {
+        Attachment attachment = attachment(100L, "a.txt", 10L);
+        attachments(issue, attachment);
+        attachments(relatedIssue, attachment(200L, "a.txt", 11L));
+        doReturn(300L).when(synchronizer).createAttachment(attachment, relatedIssue, user);
+
+        synchronizer.syncAttachments(issue, relatedIssue, user, null);
+
+        verify(attachmentLinkManager).save(1L, 2L, 100L, 300L);
+        verify(attachmentLinkManager, never()).save(1L, 2L, 100L, 200L);
+    }
+
+    @Test
+    public void shouldKeepLinkedMirrorWhenChangesAreUnknown() {
+        attachments(issue, attachment(100L, "a.txt", 10L));
+        attachments(relatedIssue, attachment(200L, "a.txt", 10L));
+        linkedAttachments(100L, 200L);
+
+        synchronizer.syncAttachments(issue, relatedIssue, user, null);
+
+        verify(synchronizer, never()).createAttachment(any(Attachment.class), any(MutableIssue.class), any(ApplicationUser.class));
+        verify(synchronizer, never()).removeAttachment(any(Attachment.class), any(MutableIssue.class));
+        verify(attachmentLinkManager, never()).removeByAttachment(PORTAL, 100L);
+    }
+
+    @Test
+    public void shouldMirrorAgainWhenLinkedMirrorIsGone() {
+        Attachment attachment = attachment(100L, "a.txt", 10L);
+        attachments(issue, attachment);
+        attachments(relatedIssue);
+        linkedAttachments(100L, 200L);
+        doReturn(300L).when(synchronizer).createAttachment(attachment, relatedIssue, user);
+
+        synchronizer.syncAttachments(issue, relatedIssue, user, null);
+
+        verify(attachmentLinkManager).removeByAttachment(PORTAL, 100L);
+        verify(attachmentLinkManager).save(1L, 2L, 100L, 300L);
+    }
+
+    @Test
+    public void shouldRemoveMirrorOfAttachmentWhichIsGoneWhenChangesAreUnknown() {
+        Attachment mirror = attachment(200L, "a.txt", 10L);
+        attachments(issue);
+        attachments(relatedIssue, mirror);
+        linkedAttachments(100L, 200L);
+
+        synchronizer.syncAttachments(issue, relatedIssue, user, null);
+
+        verify(synchronizer).removeAttachment(mirror, relatedIssue);
+        verify(attachmentLinkManager).removeByAttachment(PORTAL, 100L);
+    }
+
+    private void attachments(MutableIssue issue, Attachment... attachments) {
+        when(attachmentManager.getAttachments(issue)).thenReturn(new ArrayList<>(Arrays.asList(attachments)));
+    }
+
+    private void linkedAttachments(Long attachmentId, Long mirrorId) {
+        Map<Long, Long> linked = new HashMap<>();
+        linked.put(attachmentId, mirrorId);
+        when(attachmentLinkManager.getLinkedAttachments(PORTAL, 1L)).thenReturn(linked);
+    }
+
+    private static AttachmentLink link(Long portalAttachmentId, Long internalAttachmentId) {
+        AttachmentLink link = mock(AttachmentLink.class);
+        when(link.getPortalAttachmentId()).thenReturn(portalAttachmentId);
+        when(link.getInternalAttachmentId()).thenReturn(internalAttachmentId);
+        return link;
+    }
+
+    private static Attachment attachment(Long id, String filename, Long size) {
+        Attachment attachment = mock(Attachment.class);
+        when(attachment.getId()).thenReturn(id);
+        when(attachment.getFilename()).thenReturn(filename);
+        when(attachment.getFilesize()).thenReturn(size);
+        return attachment;
+    }
+
+    private static Project project(long id) {
+        Project project = mock(Project.class);
+        when(project.getId()).thenReturn(id);
+        return project;
+    }
+
+    private static MutableIssue issue(long id, Project project) {
+        MutableIssue issue = mock(MutableIssue.class);
+        when(issue.getId()).thenReturn(id);
+        when(issue.getProjectObject()).thenReturn(project);
+        return issue;
+    }
+}
@@ -0,0 +1,128 @@
+package com.ai.jira.portal.issue;
+
+import com.ai.jira.portal.ActionResolverManager;
+import com.ai.jira.portal.ao.attachment.AttachmentLinkManager;
+import com.ai.jira.portal.ao.comment.CommentLinkManager;
+import com.ai.jira.portal.ao.issue.IssueLinkIndex;
+import com.ai.jira.portal.ao.project.ProjectExtraFieldsCache;
+import com.ai.jira.portal.ao.version.VersionMappingCache;
+import com.ai.jira.portal.mapping.PriorityMapperCache;
+import com.atlassian.event.api.EventPublisher;
+import com.atlassian.jira.bc.project.component.ProjectComponent;
+import com.atlassian.jira.issue.CustomFieldManager;
+import com.atlassian.jira.issue.IssueManager;
+import com.atlassian.jira.issue.MutableIssue;
+import com.atlassian.jira.issue.fields.CustomField;
+import com.atlassian.jira.issue.issuetype.IssueType;
+import com.atlassian.jira.project.Project;
+import com.atlassian.jira.security.roles.ProjectRoleManager;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class IssueSynchronizerChangedFieldsTest {
+    private static final long PORTAL_PROJECT_ID = 10000L;
+    private static final long INTERNAL_PROJECT_ID = 10001L;
+
+    private final CustomFieldManager customFieldManager = mock(CustomFieldManager.class);
+    private final CustomField impact = customField("customfield_10100", "Business Impact");
+    private final CustomField urgency = customField("customfield_10101", "Urgency");
+    private final Project portalProject = project(PORTAL_PROJECT_ID);
+    private final Project internalProject = project(INTERNAL_PROJECT_ID);
+    private final MutableIssue issue = issue(portalProject);
+    private final MutableIssue relatedIssue = issue(internalProject);
+    private IssueSynchronizer synchronizer;
+
+    @Before
+    public void setUp() {
+        when(customFieldManager.getCustomFieldObjects(PORTAL_PROJECT_ID, "1")).thenReturn(Arrays.asList(impact, urgency));
+        when(customFieldManager.getCustomFieldObjects(INTERNAL_PROJECT_ID, "1")).thenReturn(Arrays.asList(impact, urgency));
+        when(issue.getCustomFieldValue(impact)).thenReturn("High");
+        when(issue.getCustomFieldValue(urgency)).thenReturn("Low");
+
+        synchronizer = new IssueSynchronizer(mock(ProjectRoleManager.class), mock(IssueLinkIndex.class), mock(VersionMappingCache.class),
+                mock(ActionResolverManager.class), mock(CommentLinkManager.class), mock(PriorityMapperCache.class),
+                mock(IssueTransitionValidator.class), mock(IssueManager.class), mock(CustomFieldIndex.class), mock(ProjectExtraFieldsCache.class),
+                mock(IssueReindexQueue.class), mock(AttachmentLinkManager.class),
+                new CustomFieldMappingPlans(customFieldManager, mock(EventPublisher.class)));
+    }
+
+    @Test
+    public void shouldCopyOnlyCustomFieldsNamedInChangeLog() throws Exception {
+        synchronizer.populateChangedFields(issue, relatedIssue, TestChangeLogs.of(new String[]{"custom", "Business Impact", "Low", "High"}));
+
+        verify(relatedIssue).setCustomFieldValue(impact, "High");
+        verify(relatedIssue, never()).setCustomFieldValue(urgency, "Low");
+    }
+
+    @Test
+    public void shouldNotMatchCustomFieldsBySystemFieldChanges() throws Exception {
+        synchronizer.populateChangedFields(issue, relatedIssue, TestChangeLogs.of(new String[]{"jira", "Urgency", null, "x"}));
+
+        verify(relatedIssue, never()).setCustomFieldValue(any(CustomField.class), any());
+    }
+
+    @Test
+    public void shouldNotCopyCustomFieldMissingInMirrorContext() throws Exception {
+        when(customFieldManager.getCustomFieldObjects(INTERNAL_PROJECT_ID, "1")).thenReturn(Collections.singletonList(urgency));
+
+        synchronizer.populateChangedFields(issue, relatedIssue, TestChangeLogs.of(
+                new String[]{"custom", "Business Impact", "Low", "High"},
+                new String[]{"custom", "Urgency", "High", "Low"}));
+
+        verify(relatedIssue, never()).setCustomFieldValue(impact, "High");
+        verify(relatedIssue).setCustomFieldValue(urgency, "Low");
+    }
+
+    @Test
+    public void shouldMapComponentsByNameOnlyWhenTheyChanged() throws Exception {
+        ProjectComponent portalComponent = component("Billing");
+        ProjectComponent internalComponent = component("Billing");
+        when(issue.getComponentObjects()).thenReturn(Collections.singletonList(portalComponent));
+        when(internalProject.getProjectComponents()).thenReturn(Arrays.asList(component("Other"), internalComponent));
+
+        synchronizer.populateChangedFields(issue, relatedIssue, TestChangeLogs.of(new String[]{"jira", "summary", "a", "b"}));
+        verify(relatedIssue, never()).setComponentObjects(anyCollectionOf(ProjectComponent.class));
+
+        synchronizer.populateChangedFields(issue, relatedIssue, TestChangeLogs.of(new String[]{"jira", "Component", null, "10300"}));
+        verify(relatedIssue).setComponentObjects(Collections.<ProjectComponent>singletonList(internalComponent));
+    }
+
+    private static CustomField customField(String id, String name) {
+        CustomField customField = mock(CustomField.class);
+        when(customField.getId()).thenReturn(id);
+        when(customField.getName()).thenReturn(name);
+        when(customField.getNameKey()).thenReturn(name);
+        return customField;
+    }
+
+    private static ProjectComponent component(String name) {
+        ProjectComponent component = mock(ProjectComponent.class);
+        when(component.getName()).thenReturn(name);
+        return component;
+    }
+
+    private static Project project(long id) {
+        Project project = mock(Project.class);
+        when(project.getId()).thenReturn(id);
+        return project;
+    }
+
+    private static MutableIssue issue(Project project) {
+        IssueType issueType = mock(IssueType.class);
+        when(issueType.getId()).thenReturn("1");
+        MutableIssue issue = mock(MutableIssue.class);
+        when(issue.getProjectObject()).thenReturn(project);
+        when(issue.getIssueTypeObject()).thenReturn(issueType);
+        return issue;
+    }
+}
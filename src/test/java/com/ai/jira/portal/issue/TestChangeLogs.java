@@ -0,0 +1,47 @@
+package com.ai.jira.portal.issue;
+
+import com.atlassian.jira.event.issue.IssueEvent;
+import org.ofbiz.core.entity.GenericEntityException;
+import org.ofbiz.core.entity.GenericValue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Issue events with change history made of mocked {@code ChildChangeItem} values
+ */
+public final class TestChangeLogs {
+
+    private TestChangeLogs() {
+    }
+
+    /**
+     * @param items - {fieldtype, field, oldvalue, newvalue} of change items
+     */
+    public static IssueChangeLog of(String[]... items) throws GenericEntityException {
+        return IssueChangeLog.of(event(items));
+    }
+
+    /**
+     * @param items - {fieldtype, field, oldvalue, newvalue} of change items
+     */
+    public static IssueEvent event(String[]... items) throws GenericEntityException {
+        List<GenericValue> changeItems = new ArrayList<>();
+        for (String[] item : items) {
+            GenericValue changeItem = mock(GenericValue.class);
+            when(changeItem.getString("fieldtype")).thenReturn(item[0]);
+            when(changeItem.getString("field")).thenReturn(item[1]);
+            when(changeItem.getString("oldvalue")).thenReturn(item[2]);
+            when(changeItem.getString("newvalue")).thenReturn(item[3]);
+            changeItems.add(changeItem);
+        }
+        GenericValue changeLog = mock(GenericValue.class);
+        when(changeLog.getRelated("ChildChangeItem")).thenReturn(changeItems);
+        IssueEvent event = mock(IssueEvent.class);
+        when(event.getChangeLog()).thenReturn(changeLog);
+        return event;
+    }
+}
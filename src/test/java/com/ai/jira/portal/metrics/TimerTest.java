@@ -0,0 +1,51 @@
+package com.ai.jira.portal.metrics;
+
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TimerTest {
+
+    @Test
+    public void shouldReportPercentilesWithinFactorOfTwo() {
+        Timer timer = new Timer();
+        for (int i = 1; i <= 1000; i++) {
+            timer.record(TimeUnit.MICROSECONDS.toNanos(i));
+        }
+
+        assertThat(timer.getCount()).isEqualTo(1000);
+        assertThat(timer.getPercentileMicros(0.5)).isBetween(500L, 1000L);
+        assertThat(timer.getPercentileMicros(0.99)).isBetween(990L, 1000L);
+    }
+
+    @Test
+    public void shouldNeverReportPercentileAboveMax() {
+        Timer timer = new Timer();
+        timer.record(TimeUnit.MICROSECONDS.toNanos(3));
+
+        assertThat(timer.getPercentileMicros(0.5)).isEqualTo(3);
+    }
+
+    @Test
+    public void shouldReportZerosWhenEmpty() {
+        Map<String, Long> snapshot = new Timer().snapshot();
+
+        assertThat(snapshot.get("count")).isEqualTo(0);
+        assertThat(snapshot.get("meanMicros")).isEqualTo(0);
+        assertThat(snapshot.get("p99Micros")).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldZeroOnReset() {
+        Timer timer = new Timer();
+        timer.record(1000000);
+
+        timer.reset();
+
+        assertThat(timer.getCount()).isEqualTo(0);
+        assertThat(timer.snapshot().get("maxMicros")).isEqualTo(0);
+    }
+}